@@ -15,6 +15,7 @@ package org.openmrs.module.muzima;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.javarosa.core.util.externalizable.ExtUtil;
 import org.openmrs.module.ModuleActivator;
 
 /**
@@ -63,6 +64,8 @@ public class MuzimaCoreModuleActivator implements ModuleActivator {
      * @see ModuleActivator#stopped()
      */
     public void stopped() {
+        // the javarosa caches are static, and would otherwise keep classes of the stopped module reachable
+        ExtUtil.clearCaches();
         log.info("Muzima Core Module stopped");
     }
 
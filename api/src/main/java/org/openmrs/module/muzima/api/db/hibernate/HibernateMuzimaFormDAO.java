@@ -2,6 +2,7 @@ package org.openmrs.module.muzima.api.db.hibernate;
 
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.criterion.Disjunction;
@@ -10,6 +11,7 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.openmrs.module.muzima.api.db.MuzimaFormDAO;
 import org.openmrs.module.muzima.model.MuzimaForm;
+import org.openmrs.module.muzima.model.MuzimaFormContent;
 import org.openmrs.module.muzima.model.MuzimaXForm;
 
 import java.util.Date;
@@ -82,6 +84,12 @@ public class HibernateMuzimaFormDAO implements MuzimaFormDAO {
 
     public void saveForm(MuzimaForm form) {
         session().saveOrUpdate(form);
+        // the content shares the muzima_form row, so it is always written as an update once the form has its id
+        MuzimaFormContent content = form.getContent();
+        if (content != null && Hibernate.isInitialized(content)) {
+            content.setId(form.getId());
+            session().saveOrUpdate(content);
+        }
     }
 
     public MuzimaForm getFormById(Integer id) {
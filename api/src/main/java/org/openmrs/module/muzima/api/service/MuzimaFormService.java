@@ -1,5 +1,7 @@
 package org.openmrs.module.muzima.api.service;
 
+import org.javarosa.core.model.FormDef;
+import org.javarosa.xform.parse.SubmissionValidator;
 import org.javarosa.xform.parse.ValidationMessages;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.module.muzima.model.MuzimaForm;
@@ -52,4 +54,33 @@ public interface MuzimaFormService extends OpenmrsService {
     ValidationMessages validateJavaRosa(String xml);
 
     ValidationMessages validateODK(String xml) throws Exception;
+
+    /**
+     * Loads the javarosa form definition stored with the form, without parsing the xform again. Each call returns a
+     * new copy, so callers are free to fill it in.
+     *
+     * @return the form definition, or null if no compiled form was stored for the muzima form
+     */
+    @Transactional(readOnly = true)
+    FormDef getCompiledFormDef(String uuid) throws Exception;
+
+    /**
+     * Checks completed xml submissions of the form against its compiled form definition: required values and
+     * constraints of every relevant question. The form definition is loaded once and the submissions are validated in
+     * parallel; payloads that are not instances of the form are reported as malformed without further work.
+     *
+     * @return one result per submission, in order, or null if no compiled form was stored for the muzima form
+     */
+    @Transactional(readOnly = true)
+    List<SubmissionValidator.Result> validateSubmissions(String uuid, List<String> submissions) throws Exception;
+
+    /**
+     * Checks one completed xml submission the way validateSubmissions does, for the queue handlers to reject it
+     * before it is processed.
+     *
+     * @param formUuid the uuid of the muzima form, or of the OpenMRS form it was built for
+     * @return the errors found, empty if there are none or if no compiled form was stored for the form
+     */
+    @Transactional(readOnly = true)
+    List<String> validateSubmission(String formUuid, String submission) throws Exception;
 }
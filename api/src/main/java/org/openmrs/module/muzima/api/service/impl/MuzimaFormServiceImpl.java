@@ -1,8 +1,14 @@
 package org.openmrs.module.muzima.api.service.impl;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.dom4j.DocumentException;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.model.xform.XFormsModule;
+import org.javarosa.xform.parse.SubmissionValidator;
+import org.javarosa.xform.parse.ValidationMessage;
 import org.javarosa.xform.parse.ValidationMessages;
-import org.javarosa.xform.parse.XFormParser;
+import org.javarosa.xform.parse.XFormParseCache;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.muzima.api.db.MuzimaFormDAO;
@@ -16,16 +22,37 @@ import org.openmrs.module.muzima.xForm2MuzimaTransform.ODK2HTML5Transformer;
 import org.openmrs.module.muzima.xForm2MuzimaTransform.ODK2JavarosaTransformer;
 import org.openmrs.module.muzima.xForm2MuzimaTransform.XForm2Html5Transformer;
 
-import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MuzimaFormServiceImpl extends BaseOpenmrsService implements MuzimaFormService {
+    private static final Log log = LogFactory.getLog(MuzimaFormServiceImpl.class);
+
+    // each validator keeps up to one deserialized FormDef per validation thread, so only a few forms are kept
+    private static final int MAX_VALIDATORS = 10;
+
     private XForm2Html5Transformer html5Transformer;
     private ModelXml2JsonTransformer modelXml2JsonTransformer;
     private ODK2JavarosaTransformer odk2JavarosaTransformer;
     private ODK2HTML5Transformer odk2HTML5Transformer;
     private MuzimaFormDAO dao;
+    private XFormParseCache parseCache = new XFormParseCache();
+    private final Map<String, SubmissionValidator> validators = new LinkedHashMap<String, SubmissionValidator>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SubmissionValidator> eldest) {
+            return size() > MAX_VALIDATORS;
+        }
+    };
+    private int validationThreads = Runtime.getRuntime().availableProcessors();
+    // shared by the validators of every form, created on first use and shut down with the service
+    private ExecutorService validationExecutor;
 
     public MuzimaFormServiceImpl(MuzimaFormDAO dao, XForm2Html5Transformer html5Transformer,
                                  ModelXml2JsonTransformer modelXml2JsonTransformer,
@@ -61,7 +88,9 @@ public class MuzimaFormServiceImpl extends BaseOpenmrsService implements MuzimaF
             CompositeEnketoResult result = (CompositeEnketoResult) modelXml2JsonTransformer.
                     transform(html5Transformer.transform(xformXml).getResult());
 
-            return save(new MuzimaForm(form, discriminator, result.getForm(), result.getModel(), result.getModelAsJson(), null, Context.getFormService().getFormByUuid(form)));
+            MuzimaForm muzimaForm = new MuzimaForm(form, discriminator, result.getForm(), result.getModel(), result.getModelAsJson(), null, Context.getFormService().getFormByUuid(form));
+            muzimaForm.setCompiledForm(compile(parseCache.parse(xformXml)));
+            return save(muzimaForm);
         }
         throw new DocumentException("The file name already Exists !");
     }
@@ -75,6 +104,7 @@ public class MuzimaFormServiceImpl extends BaseOpenmrsService implements MuzimaF
                 retrievedForm.setHtml(result.getForm());
                 retrievedForm.setModelXml(result.getModel());
                 retrievedForm.setModelJson(result.getModelAsJson());
+                retrievedForm.setCompiledForm(compile(parseCache.parse(xformXml)));
             }
             return save(retrievedForm);
         }else{
@@ -101,7 +131,9 @@ public class MuzimaFormServiceImpl extends BaseOpenmrsService implements MuzimaF
         if (!isFormDefinitionExists(form)) {
             CompositeEnketoResult result = (CompositeEnketoResult) modelXml2JsonTransformer.
                     transform(odk2HTML5Transformer.transform(xformXml).getResult());
-            return save(new MuzimaForm(form, discriminator, result.getForm(), result.getModel(), result.getModelAsJson(), null, Context.getFormService().getFormByUuid(form)));
+            MuzimaForm muzimaForm = new MuzimaForm(form, discriminator, result.getForm(), result.getModel(), result.getModelAsJson(), null, Context.getFormService().getFormByUuid(form));
+            muzimaForm.setCompiledForm(compile(parseODK(xformXml)));
+            return save(muzimaForm);
         }
         throw new DocumentException("The file name already Exists !");
     }
@@ -130,16 +162,147 @@ public class MuzimaFormServiceImpl extends BaseOpenmrsService implements MuzimaF
         if(form.getFormDefinition() == null)
             form.setFormDefinition(Context.getFormService().getFormByUuid(form.getForm()));
         dao.saveForm(form);
+        synchronized (validators) {
+            validators.remove(form.getUuid());
+        }
         return form;
     }
 
     public ValidationMessages validateJavaRosa(String xml) {
-        return new XFormParser(new StringReader(xml)).validate();
+        return parseCache.parse(xml).getMessages();
     }
 
     public ValidationMessages validateODK(String xml) throws Exception {
-        String result = odk2JavarosaTransformer.transform(xml).getResult();
-        return new XFormParser(new StringReader(result)).validate();
+        return parseODK(xml).getMessages();
+    }
+
+    public FormDef getCompiledFormDef(String uuid) throws Exception {
+        MuzimaForm form = dao.getFormByUuid(uuid);
+        if (form == null || form.getCompiledForm() == null) {
+            return null;
+        }
+        return XFormsModule.deserialize(form.getCompiledForm());
+    }
+
+    public List<SubmissionValidator.Result> validateSubmissions(String uuid, List<String> submissions) throws Exception {
+        SubmissionValidator validator = getSubmissionValidator(uuid);
+        if (validator == null) {
+            return null;
+        }
+        return validator.validateAll(submissions, getValidationExecutor());
+    }
+
+    public List<String> validateSubmission(String formUuid, String submission) throws Exception {
+        List<String> errors = new ArrayList<String>();
+        MuzimaForm form = dao.getFormByUuid(formUuid);
+        if (form == null) {
+            List<MuzimaForm> forms = dao.getMuzimaFormByForm(formUuid, false);
+            if (forms.isEmpty()) {
+                return errors;
+            }
+            form = forms.get(0);
+        }
+        SubmissionValidator validator = getSubmissionValidator(form.getUuid());
+        if (validator == null) {
+            return errors;
+        }
+        for (ValidationMessage message : validator.validate(submission).getMessages().getList()) {
+            if (message.getType() == ValidationMessage.Type.ERROR) {
+                errors.add(message.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    public synchronized void setValidationThreads(int validationThreads) {
+        this.validationThreads = validationThreads;
+        shutdownValidationExecutor();
+    }
+
+    @Override
+    public synchronized void onShutdown() {
+        shutdownValidationExecutor();
+    }
+
+    private synchronized ExecutorService getValidationExecutor() {
+        if (validationThreads <= 1) {
+            return null;
+        }
+        if (validationExecutor == null) {
+            validationExecutor = Executors.newFixedThreadPool(validationThreads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "muzima-submission-validator-" + count.incrementAndGet());
+                    // never holds up the shutdown of the server
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return validationExecutor;
+    }
+
+    private void shutdownValidationExecutor() {
+        if (validationExecutor != null) {
+            validationExecutor.shutdown();
+            validationExecutor = null;
+        }
+    }
+
+    private SubmissionValidator getSubmissionValidator(String uuid) throws Exception {
+        synchronized (validators) {
+            SubmissionValidator validator = validators.get(uuid);
+            if (validator != null) {
+                return validator;
+            }
+        }
+        MuzimaForm form = dao.getFormByUuid(uuid);
+        if (form == null || form.getCompiledForm() == null) {
+            return null;
+        }
+        SubmissionValidator validator = new SubmissionValidator(form.getCompiledForm());
+        synchronized (validators) {
+            validators.put(uuid, validator);
+        }
+        return validator;
+    }
+
+    private XFormParseCache.ParseResult parseODK(String xml) throws Exception {
+        // keyed on the ODK document as well, so a repeated validation also skips the ODK2jr transform
+        String key = "odk:" + XFormParseCache.hash(xml);
+        XFormParseCache.ParseResult parseResult = parseCache.get(key);
+        if (parseResult == null) {
+            String result = odk2JavarosaTransformer.transform(xml).getResult();
+            parseResult = parseCache.parse(result);
+            parseCache.put(key, parseResult);
+        }
+        return parseResult;
+    }
+
+    private byte[] compile(XFormParseCache.ParseResult parseResult) {
+        FormDef formDef = parseResult.getFormDef();
+        if (formDef == null) {
+            return null;
+        }
+        List<String> errors = new ArrayList<String>();
+        for (ValidationMessage message : parseResult.getMessages().getList()) {
+            if (message.getType() == ValidationMessage.Type.ERROR) {
+                errors.add(message.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            // submissions are not validated against a form the parser found errors in
+            log.warn("Not storing the compiled form definition, as it has errors: " + errors);
+            return null;
+        }
+        try {
+            return XFormsModule.serialize(formDef);
+        } catch (RuntimeException e) {
+            // a form the parser could not fully build is still saved, only without its compiled copy
+            log.warn("Unable to serialize the form definition: " + e.getMessage());
+            return null;
+        }
     }
 
     public MuzimaForm getFormById(Integer id) {
@@ -32,8 +32,6 @@ import org.openmrs.module.muzima.model.handler.QueueDataHandler;
 import org.openmrs.module.muzima.utils.JsonUtils;
 import org.springframework.stereotype.Component;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -43,7 +41,6 @@ import java.util.Date;
 public class DemographicsUpdateQueueDataHandler implements QueueDataHandler {
 
     private static final String DISCRIMINATOR_VALUE = "json-demographics-update";
-    private static final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
     private final Log log = LogFactory.getLog(DemographicsUpdateQueueDataHandler.class);
     private QueueProcessorException queueProcessorException;
     private Patient unsavedPatient;
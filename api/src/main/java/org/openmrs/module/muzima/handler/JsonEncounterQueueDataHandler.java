@@ -20,6 +20,7 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.javarosa.core.model.utils.DateCodec;
 import org.openmrs.*;
 import org.openmrs.annotation.Handler;
 import org.openmrs.api.LocationService;
@@ -37,9 +38,7 @@ import org.openmrs.module.muzima.utils.JsonUtils;
 import org.openmrs.util.OpenmrsUtil;
 import org.springframework.stereotype.Component;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -55,7 +54,6 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
 
     private static final String DISCRIMINATOR_VALUE = "json-encounter";
 
-    private static final DateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy");
 
     private final Log log = LogFactory.getLog(JsonEncounterQueueDataHandler.class);
 
@@ -113,7 +111,7 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
                     for (Visit visit : visits) {
                         Date visitDate = visit.getStartDatetime();
                         Date encounterDate = encounter.getEncounterDatetime();
-                        if ( dateFormat.format(visitDate).equals(dateFormat.format(encounterDate))) {
+                        if ( DateCodec.formatDayMonthYear(visitDate).equals(DateCodec.formatDayMonthYear(encounterDate))) {
                             vs.saveVisit(visit);
                             setVisitOfEncounter(visit, encounter);
                             break;
@@ -392,11 +390,9 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
     }
 
     private Date parseDate(final String dateValue) {
-        Date date = null;
-        try {
-            date = dateFormat.parse(dateValue);
-        } catch (ParseException e) {
-            log.error("Unable to parse date data for encounter!", e);
+        Date date = DateCodec.parseDayMonthYear(dateValue, new ParsePosition(0));
+        if (date == null) {
+            log.error("Unable to parse date data for encounter: " + dateValue);
         }
         return date;
     }
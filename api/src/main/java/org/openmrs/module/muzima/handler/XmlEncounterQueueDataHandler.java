@@ -19,6 +19,7 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.javarosa.core.model.utils.DateCodec;
 import org.openmrs.Concept;
 import org.openmrs.Encounter;
 import org.openmrs.EncounterType;
@@ -49,9 +50,7 @@ import org.xml.sax.InputSource;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.ByteArrayInputStream;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
 import java.util.Date;
 import java.util.List;
 
@@ -63,7 +62,6 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
 
     private static final String DISCRIMINATOR_VALUE = "xml-encounter";
 
-    private static final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 
     private final Log log = LogFactory.getLog(XmlEncounterQueueDataHandler.class);
 
@@ -109,6 +107,11 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
             Element element = document.getDocumentElement();
             element.normalize();
 
+            validateSubmission(document, payload);
+            if (queueProcessorException.anyExceptions()) {
+                return false;
+            }
+
             // we need to get the form id to get the encounter type associated with this form from the form record.
             encounter.setEncounterType(Context.getEncounterService().getEncounterType(1));
 
@@ -132,6 +135,30 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
         return DISCRIMINATOR_VALUE;
     }
 
+    /**
+     * Checks the submission against the compiled definition of the form it names, so one that doesn't fit the form
+     * is rejected before any patient or concept lookups.
+     */
+    private void validateSubmission(final Document document, final String payload) {
+        NodeList formUuidNodes = document.getElementsByTagName("encounter.form_uuid");
+        if (formUuidNodes.getLength() == 0) {
+            return;
+        }
+        String formUuid = formUuidNodes.item(0).getTextContent();
+        MuzimaFormService muzimaFormService = Context.getService(MuzimaFormService.class);
+        List<String> errors;
+        try {
+            errors = muzimaFormService.validateSubmission(formUuid, payload);
+        } catch (Exception e) {
+            // a compiled form that can't be read doesn't hold up the submission; it is processed as before
+            log.warn("Unable to validate the submission against form " + formUuid + ": " + e.getMessage());
+            return;
+        }
+        for (String error : errors) {
+            queueProcessorException.addException(new Exception("Submission does not match form " + formUuid + ": " + error));
+        }
+    }
+
     private void processPatient(final Encounter encounter, final NodeList patientNodeList) throws QueueProcessorException {
         Node patientNode = patientNodeList.item(0);
         NodeList patientElementNodes = patientNode.getChildNodes();
@@ -405,11 +432,9 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
     }
 
     private Date parseDate(final String dateValue) {
-        Date date = null;
-        try {
-            date = dateFormat.parse(dateValue);
-        } catch (ParseException e) {
-            log.error("Unable to parse date data for encounter!", e);
+        Date date = DateCodec.parseDate(dateValue, new ParsePosition(0));
+        if (date == null) {
+            log.error("Unable to parse date data for encounter: " + dateValue);
         }
         return date;
     }
@@ -18,6 +18,7 @@ import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.javarosa.core.model.utils.DateCodec;
 import org.openmrs.Location;
 import org.openmrs.Patient;
 import org.openmrs.PatientIdentifier;
@@ -29,6 +30,7 @@ import org.openmrs.annotation.Handler;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.PersonService;
 import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.api.service.MuzimaFormService;
 import org.openmrs.module.muzima.api.service.RegistrationDataService;
 import org.openmrs.module.muzima.exception.QueueProcessorException;
 import org.openmrs.module.muzima.model.QueueData;
@@ -46,9 +48,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
 import java.util.Date;
 import java.util.List;
 
@@ -60,7 +60,6 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
 
     private static final String DISCRIMINATOR_VALUE = "xml-registration";
 
-    private static final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 
     private final Log log = LogFactory.getLog(XmlRegistrationQueueDataHandler.class);
 
@@ -167,6 +166,30 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
         return DISCRIMINATOR_VALUE;
     }
 
+    /**
+     * Checks the submission against the compiled definition of the form it names, so one that doesn't fit the form
+     * is rejected before any patient or concept lookups.
+     */
+    private void validateSubmission(final Document document, final String payload) {
+        NodeList formUuidNodes = document.getElementsByTagName("encounter.form_uuid");
+        if (formUuidNodes.getLength() == 0) {
+            return;
+        }
+        String formUuid = formUuidNodes.item(0).getTextContent();
+        MuzimaFormService muzimaFormService = Context.getService(MuzimaFormService.class);
+        List<String> errors;
+        try {
+            errors = muzimaFormService.validateSubmission(formUuid, payload);
+        } catch (Exception e) {
+            // a compiled form that can't be read doesn't hold up the submission; it is processed as before
+            log.warn("Unable to validate the submission against form " + formUuid + ": " + e.getMessage());
+            return;
+        }
+        for (String error : errors) {
+            queueProcessorException.addException(new Exception("Submission does not match form " + formUuid + ": " + error));
+        }
+    }
+
     /**
      * Flag whether the current queue data handler can handle the queue data.
      *
@@ -179,11 +202,9 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
     }
 
     private Date parseDate(final String dateValue) {
-        Date date = null;
-        try {
-            date = dateFormat.parse(dateValue);
-        } catch (ParseException e) {
-            log.error("Unable to parse date data for encounter!", e);
+        Date date = DateCodec.parseDate(dateValue, new ParsePosition(0));
+        if (date == null) {
+            log.error("Unable to parse date data for encounter: " + dateValue);
         }
         return date;
     }
@@ -198,6 +219,11 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
             Element element = document.getDocumentElement();
             element.normalize();
 
+            validateSubmission(document, payload);
+            if (queueProcessorException.anyExceptions()) {
+                return unsavedPatient;
+            }
+
             Node patientNode = document.getElementsByTagName("patient").item(0);
             NodeList patientElementNodes = patientNode.getChildNodes();
 
@@ -1,5 +1,6 @@
 package org.openmrs.module.muzima.model;
 
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonIgnoreProperties;
 import org.openmrs.BaseOpenmrsMetadata;
 import org.openmrs.Form;
@@ -12,10 +13,7 @@ import java.util.UUID;
 public class MuzimaForm extends BaseOpenmrsMetadata {
     private Integer id;
     private String discriminator;
-    private String modelXml;
-    private String html;
-    private String modelJson;
-    private String metaJson;
+    private MuzimaFormContent content;
     private String form; ///uuid to form table
     private Set<MuzimaFormTag> tags = new HashSet<MuzimaFormTag>();
     private Form formDefinition;
@@ -32,10 +30,7 @@ public class MuzimaForm extends BaseOpenmrsMetadata {
         this.form = form;
         this.discriminator = discriminator;
         // form structure
-        this.html = html;
-        this.modelXml = modelXml;
-        this.modelJson = modelJson;
-        this.metaJson = metaJson;
+        this.content = new MuzimaFormContent(html, modelXml, modelJson, metaJson);
         this.formDefinition = formDefinition;
     }
 
@@ -64,35 +59,64 @@ public class MuzimaForm extends BaseOpenmrsMetadata {
     }
 
     public String getModelJson() {
-        return modelJson;
+        return content == null ? null : content.getModelJson();
     }
 
     public void setModelJson(String modelJson) {
-        this.modelJson = modelJson;
+        getOrCreateContent().setModelJson(modelJson);
     }
 
     public String getMetaJson() {
-        return metaJson;
+        return content == null ? null : content.getMetaJson();
     }
 
     public void setMetaJson(String metaJson) {
-        this.metaJson = metaJson;
+        getOrCreateContent().setMetaJson(metaJson);
     }
 
     public String getModelXml() {
-        return modelXml;
+        return content == null ? null : content.getModelXml();
     }
 
     public void setModelXml(String modelXml) {
-        this.modelXml = modelXml;
+        getOrCreateContent().setModelXml(modelXml);
     }
 
     public String getHtml() {
-        return html;
+        return content == null ? null : content.getHtml();
     }
 
     public void setHtml(String html) {
-        this.html = html;
+        getOrCreateContent().setHtml(html);
+    }
+
+    @JsonIgnore
+    public byte[] getCompiledForm() {
+        return content == null ? null : content.getCompiledForm();
+    }
+
+    public void setCompiledForm(byte[] compiledForm) {
+        getOrCreateContent().setCompiledForm(compiledForm);
+    }
+
+    /**
+     * The lazily loaded form structure. Hibernate hands out an uninitialized proxy here, so the content columns are
+     * only read when one of the structure getters is called.
+     */
+    @JsonIgnore
+    public MuzimaFormContent getContent() {
+        return content;
+    }
+
+    public void setContent(MuzimaFormContent content) {
+        this.content = content;
+    }
+
+    private MuzimaFormContent getOrCreateContent() {
+        if (content == null) {
+            content = new MuzimaFormContent();
+        }
+        return content;
     }
 
     public Set<MuzimaFormTag> getTags() {
@@ -0,0 +1,76 @@
+package org.openmrs.module.muzima.model;
+
+/**
+ * The large text columns of a muzima form (html, model xml and the json documents). These are mapped as a
+ * separate, lazily loaded entity on the muzima_form table so that listing and searching forms only reads the
+ * metadata columns.
+ */
+public class MuzimaFormContent {
+    private Integer id;
+    private String modelXml;
+    private String html;
+    private String modelJson;
+    private String metaJson;
+    private byte[] compiledForm;
+
+    public MuzimaFormContent() {
+    }    // used by hibernate
+
+    public MuzimaFormContent(String html, String modelXml, String modelJson, String metaJson) {
+        this.html = html;
+        this.modelXml = modelXml;
+        this.modelJson = modelJson;
+        this.metaJson = metaJson;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getModelXml() {
+        return modelXml;
+    }
+
+    public void setModelXml(String modelXml) {
+        this.modelXml = modelXml;
+    }
+
+    public String getHtml() {
+        return html;
+    }
+
+    public void setHtml(String html) {
+        this.html = html;
+    }
+
+    public String getModelJson() {
+        return modelJson;
+    }
+
+    public void setModelJson(String modelJson) {
+        this.modelJson = modelJson;
+    }
+
+    public String getMetaJson() {
+        return metaJson;
+    }
+
+    public void setMetaJson(String metaJson) {
+        this.metaJson = metaJson;
+    }
+
+    /**
+     * @return the ExtUtil serialization of the javarosa FormDef, or null for forms without an xform
+     */
+    public byte[] getCompiledForm() {
+        return compiledForm;
+    }
+
+    public void setCompiledForm(byte[] compiledForm) {
+        this.compiledForm = compiledForm;
+    }
+}
@@ -0,0 +1,171 @@
+package org.openmrs.module.muzima.xForm2MuzimaTransform;
+
+import org.dom4j.DocumentException;
+import org.javarosa.core.util.SHA1;
+import org.openmrs.module.muzima.model.EnketoResult;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs transforms of another {@link XForm2Html5Transformer} (an {@link EnketoHttpClient} or an
+ * {@link EnketoXslTransformer}) on a bounded worker pool. Results are cached by the content hash of the xform, and
+ * concurrent requests for the same xform share a single transform.
+ * <p/>
+ * The pool is shut down by {@link #shutdown()}, which the module's application context calls when it is closed.
+ */
+public class AsyncEnketoTransformer extends XForm2Html5Transformer {
+    public static final int DEFAULT_CACHE_SIZE = 100;
+
+    private final XForm2Html5Transformer transformer;
+    private final ExecutorService executor;
+    private final Map<String, String> cache;
+    private final ConcurrentHashMap<String, Future<String>> inFlight = new ConcurrentHashMap<String, Future<String>>();
+
+    public AsyncEnketoTransformer(XForm2Html5Transformer transformer, int maxConcurrency, int maxQueued, final int cacheSize) {
+        this.transformer = transformer;
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(maxQueued), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "muzima-enketo-transformer-" + count.incrementAndGet());
+                        // never holds up the shutdown of the server
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new RejectedExecutionHandler() {
+                    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException("The transformer has been shut down");
+                        }
+                        // a full queue makes the submitting thread run the transform itself, which throttles bulk
+                        // rollouts
+                        runnable.run();
+                    }
+                });
+        // idle workers go away, so an unused transformer holds no threads
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+        this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public AsyncEnketoTransformer(XForm2Html5Transformer transformer, int maxConcurrency) {
+        this(transformer, maxConcurrency, maxConcurrency * 10, DEFAULT_CACHE_SIZE);
+    }
+
+    public EnketoResult transform(String xformXml) throws IOException, TransformerException, ParserConfigurationException, DocumentException {
+        return toEnketoResult(transformAsync(xformXml));
+    }
+
+    public Future<String> transformAsync(final String xformXml) {
+        final String key = hash(xformXml);
+        String cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            FutureTask<String> done = new FutureTask<String>(new Runnable() {
+                public void run() {
+                }
+            }, cached);
+            done.run();
+            return done;
+        }
+
+        FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+            public String call() throws Exception {
+                try {
+                    String result = transformer.transform(xformXml).getResult();
+                    synchronized (cache) {
+                        cache.put(key, result);
+                    }
+                    return result;
+                } finally {
+                    inFlight.remove(key);
+                }
+            }
+        });
+        Future<String> existing = inFlight.putIfAbsent(key, task);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, task);
+            throw e;
+        }
+        return task;
+    }
+
+    /**
+     * Submits all the xforms before waiting on any of them, so the remote round trips overlap.
+     */
+    public List<EnketoResult> transformAll(List<String> xformXmls) throws IOException, TransformerException, ParserConfigurationException, DocumentException {
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+        for (String xformXml : xformXmls) {
+            futures.add(transformAsync(xformXml));
+        }
+        List<EnketoResult> results = new ArrayList<EnketoResult>();
+        for (Future<String> future : futures) {
+            results.add(toEnketoResult(future));
+        }
+        return results;
+    }
+
+    /**
+     * Stops the worker pool and empties the cache. Transforms already submitted still complete, and transforms asked
+     * for afterwards fail.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private EnketoResult toEnketoResult(Future<String> future) throws IOException, TransformerException, ParserConfigurationException, DocumentException {
+        try {
+            return new EnketoResult(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the transform: " + e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof TransformerException) throw (TransformerException) cause;
+            if (cause instanceof ParserConfigurationException) throw (ParserConfigurationException) cause;
+            if (cause instanceof DocumentException) throw (DocumentException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("Transform failed: " + cause);
+        }
+    }
+
+    static String hash(String content) {
+        return SHA1.encodeHex(content);
+    }
+}
@@ -1,40 +1,112 @@
 package org.openmrs.module.muzima.xForm2MuzimaTransform;
 
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.mime.MultipartEntity;
-import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.entity.mime.content.ByteArrayBody;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.util.EntityUtils;
 import org.dom4j.DocumentException;
 import org.openmrs.module.muzima.model.EnketoResult;
 
 import javax.xml.parsers.ParserConfigurationException;
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 
 public class EnketoHttpClient extends XForm2Html5Transformer {
+    private static final Log log = LogFactory.getLog(EnketoHttpClient.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 10;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_SOCKET_TIMEOUT = 60000;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+
     String enketoServiceUri;
     HttpClient httpClient;
+    int maxRetries = DEFAULT_MAX_RETRIES;
 
     public EnketoHttpClient(String enketoServiceUri, HttpClient defaultHttpClient) {
         this.enketoServiceUri = enketoServiceUri;
         this.httpClient = defaultHttpClient;
     }
 
+    /**
+     * Creates a client backed by a pooled connection manager, so concurrent transforms reuse connections instead of
+     * serializing on a single one.
+     */
+    public EnketoHttpClient(String enketoServiceUri, int maxConnections, int connectTimeout, int socketTimeout) {
+        this(enketoServiceUri, createPooledHttpClient(maxConnections, connectTimeout, socketTimeout));
+    }
+
+    public EnketoHttpClient(String enketoServiceUri) {
+        this(enketoServiceUri, DEFAULT_MAX_CONNECTIONS, DEFAULT_CONNECT_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+    }
+
+    public static HttpClient createPooledHttpClient(int maxConnections, int connectTimeout, int socketTimeout) {
+        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, connectTimeout);
+        HttpConnectionParams.setSoTimeout(params, socketTimeout);
+        return new DefaultHttpClient(connectionManager, params);
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
     public EnketoResult transform(String xformXml) throws IOException, ParserConfigurationException, DocumentException {
-        File file = createTempFile(xformXml);
-        HttpPost post = createPost(file);
-        InputStream response = httpClient.execute(post).getEntity().getContent();
-        file.delete();
-        return new EnketoResult(IOUtils.toString(response));
+        byte[] content = xformXml.getBytes("UTF-8");
+        IOException lastException = null;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            try {
+                return new EnketoResult(execute(createPost(content)));
+            } catch (HttpResponseException e) {
+                if (e.getStatusCode() < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                    // the service refused the request itself, which sending it again won't change
+                    throw e;
+                }
+                lastException = e;
+                log.warn("Enketo transform attempt " + (attempt + 1) + " failed: " + e.getMessage());
+            } catch (IOException e) {
+                lastException = e;
+                log.warn("Enketo transform attempt " + (attempt + 1) + " failed: " + e.getMessage());
+            }
+        }
+        throw lastException;
+    }
+
+    private String execute(HttpPost post) throws IOException {
+        HttpResponse response = httpClient.execute(post);
+        HttpEntity entity = response.getEntity();
+        try {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_OK) {
+                throw new HttpResponseException(statusCode, "Enketo service returned " + response.getStatusLine());
+            }
+            return entity == null ? "" : EntityUtils.toString(entity, "UTF-8");
+        } finally {
+            // hands the connection back to the pool even when the response was not read
+            EntityUtils.consume(entity);
+        }
     }
 
-    private HttpPost createPost(File file) {
+    private HttpPost createPost(byte[] content) {
         HttpPost post = new HttpPost(enketoServiceUri);
         MultipartEntity entity = new MultipartEntity();
-        entity.addPart("xml_file", new FileBody(file));
+        entity.addPart("xml_file", new ByteArrayBody(content, "text/xml", "xform.xml"));
         post.setEntity(entity);
         return post;
     }
@@ -133,4 +133,21 @@ public class MuzimaFormDAOTest extends BaseModuleContextSensitiveTest {
         List<MuzimaFormTag> tags = tagService.getAll();
         assertThat(tags, hasItem(newTag));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void saveForm_shouldSaveTheFormStructureWithTheForm() {
+        MuzimaForm form = muzimaform()
+                .withForm("c0c579b0-8e59-401d-8a4a-976a0b183522")
+                .withFormDefinition(Context.getFormService().getFormByUuid("c0c579b0-8e59-401d-8a4a-976a0b183522"))
+                .instance();
+        form.setHtml("<form/>");
+        form.setModelXml("<model/>");
+        dao.saveForm(form);
+        Context.flushSession();
+        Context.clearSession();
+
+        MuzimaForm savedForm = dao.getFormById(form.getId());
+        assertThat(savedForm.getHtml(), is("<form/>"));
+        assertThat(savedForm.getModelXml(), is("<model/>"));
+    }
+}
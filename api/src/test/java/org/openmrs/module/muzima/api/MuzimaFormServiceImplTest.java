@@ -234,6 +234,34 @@ public class MuzimaFormServiceImplTest extends BaseModuleContextSensitiveTest {
         assertThat(messages.getList().get(0).getMessage(), is("Document has no root element!"));
     }
 
+    @Test
+    public void validateODK_shouldTransformAndParseTheSameDocumentOnlyOnce() throws Exception {
+        when(odk2JavarosaTransformer.transform("odk")).thenReturn(new EnketoResult("xml"));
+
+        ValidationMessages first = service.validateODK("odk");
+        ValidationMessages second = service.validateODK("odk");
+
+        verify(odk2JavarosaTransformer, times(1)).transform("odk");
+        assertThat(second, is(first));
+    }
+
+    @Test
+    public void getCompiledFormDef_shouldReturnNullIfNoCompiledFormWasStored() throws Exception {
+        when(dao.getFormByUuid("foo")).thenReturn(muzimaform().withId(1).withUuid("foo").instance());
+
+        assertThat(service.getCompiledFormDef("foo"), is((Object) null));
+    }
+
+    @Test
+    public void validateSubmission_shouldFindTheFormByItsDefinitionAndSkipItWithoutACompiledForm() throws Exception {
+        MuzimaForm form = muzimaform().withId(1).withUuid("foo").withForm("bar").instance();
+        when(dao.getMuzimaFormByForm("bar", false)).thenReturn(asList(form));
+        when(dao.getFormByUuid("foo")).thenReturn(form);
+
+        assertThat(service.validateSubmission("bar", "<data/>").isEmpty(), is(true));
+        verify(dao).getMuzimaFormByForm("bar", false);
+    }
+
     @Ignore
     @Test(expected = DocumentException.class)
     public void shouldNotCreateFormIfTheNameAlreadyExists() throws ParserConfigurationException, TransformerException, DocumentException, IOException {
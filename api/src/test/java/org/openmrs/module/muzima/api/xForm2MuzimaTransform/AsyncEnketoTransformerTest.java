@@ -0,0 +1,85 @@
+package org.openmrs.module.muzima.api.xForm2MuzimaTransform;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.muzima.model.EnketoResult;
+import org.openmrs.module.muzima.xForm2MuzimaTransform.AsyncEnketoTransformer;
+import org.openmrs.module.muzima.xForm2MuzimaTransform.EnketoHttpClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AsyncEnketoTransformerTest {
+    private static final String RESULT = "<root><form/><model/></root>";
+
+    private HttpServer server;
+    private AtomicInteger requests = new AtomicInteger();
+    private AsyncEnketoTransformer transformer;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/transform/get_html_form", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toString(exchange.getRequestBody());
+                int count = requests.incrementAndGet();
+                byte[] body = RESULT.getBytes("UTF-8");
+                // the first call fails so the retry path is exercised
+                exchange.sendResponseHeaders(count == 1 ? 503 : 200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+
+        String uri = "http://127.0.0.1:" + server.getAddress().getPort() + "/transform/get_html_form";
+        transformer = new AsyncEnketoTransformer(new EnketoHttpClient(uri, 4, 1000, 5000), 4);
+    }
+
+    @After
+    public void tearDown() {
+        transformer.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void transform_shouldRetryFailedCallsAndCacheByContent() throws Exception {
+        EnketoResult result = transformer.transform("<h:html/>");
+        assertThat(result.getResult(), is(RESULT));
+        assertThat(requests.get(), is(2));
+
+        transformer.transform("<h:html/>");
+        assertThat(requests.get(), is(2));
+    }
+
+    @Test
+    public void transformAll_shouldTransformEveryDistinctXFormOnce() throws Exception {
+        List<EnketoResult> results = transformer.transformAll(Arrays.asList("<a/>", "<b/>", "<a/>", "<c/>"));
+        assertThat(results.size(), is(4));
+        for (EnketoResult result : results) {
+            assertThat(result.getResult(), is(RESULT));
+        }
+        // three distinct xforms plus the one failed first call
+        assertThat(requests.get(), is(4));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void transform_shouldFailOnceShutDown() throws Exception {
+        transformer.shutdown();
+        transformer.transform("<h:html/>");
+    }
+}
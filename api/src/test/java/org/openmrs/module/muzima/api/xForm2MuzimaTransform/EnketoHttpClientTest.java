@@ -1,8 +1,12 @@
 package org.openmrs.module.muzima.api.xForm2MuzimaTransform;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.ProtocolVersion;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.BasicHttpEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
@@ -21,14 +25,22 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathExpressionException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class EnketoHttpClientTest {
+    private static final String RESULT = "<root><form/><model/></root>";
+
+    private AtomicInteger requests = new AtomicInteger();
+
     @Test
     public void transform_shouldCallEnketoServer() throws IOException, ParserConfigurationException, XPathExpressionException, DocumentException, SAXException {
         HttpClient httpClient = mock(HttpClient.class);
@@ -39,6 +51,32 @@ public class EnketoHttpClientTest {
         assertThat(result.getResult(), is(IOUtils.toString(getConvertedXForm())));
     }
 
+    @Test
+    public void transform_shouldRetryServerErrors() throws Exception {
+        HttpServer server = startServer(503, 200);
+        try {
+            EnketoResult result = new EnketoHttpClient(uriOf(server), 4, 1000, 5000).transform("<h:html/>");
+            assertThat(result.getResult(), is(RESULT));
+            assertThat(requests.get(), is(2));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void transform_shouldNotRetryClientErrors() throws Exception {
+        HttpServer server = startServer(400, 200);
+        try {
+            new EnketoHttpClient(uriOf(server), 4, 1000, 5000).transform("<h:html/>");
+            fail("the service refused the request");
+        } catch (HttpResponseException e) {
+            assertThat(e.getStatusCode(), is(400));
+            assertThat(requests.get(), is(1));
+        } finally {
+            server.stop(0);
+        }
+    }
+
     @Test
     @Ignore
     public void transform_integrationTest() throws IOException, ParserConfigurationException, DocumentException {
@@ -47,6 +85,30 @@ public class EnketoHttpClientTest {
         EnketoResult result = enketoHttpClient.transform(getTestXForm());
     }
 
+    /**
+     * Starts a stub enketo service that answers the first request with firstStatus and the rest with thenStatus.
+     */
+    private HttpServer startServer(final int firstStatus, final int thenStatus) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/transform/get_html_form", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toString(exchange.getRequestBody());
+                int count = requests.incrementAndGet();
+                byte[] body = RESULT.getBytes("UTF-8");
+                exchange.sendResponseHeaders(count == 1 ? firstStatus : thenStatus, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private String uriOf(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/transform/get_html_form";
+    }
+
     private BasicHttpResponse getBasicHttpResponse() throws IOException {
         BasicHttpResponse response = new BasicHttpResponse(
                 new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
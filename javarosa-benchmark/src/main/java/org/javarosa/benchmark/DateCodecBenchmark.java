@@ -0,0 +1,60 @@
+package org.javarosa.benchmark;
+
+import org.javarosa.core.model.utils.DateCodec;
+import org.javarosa.core.model.utils.DateUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and formatting a date answer and a sync date, with the shared codec and with a SimpleDateFormat created per
+ * call, which is what the REST resources and queue handlers did.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateCodecBenchmark {
+    private static final String DATE = "2014-03-05";
+    private static final String DATE_TIME = "2014-03-05T10:15:30.123+03:00";
+
+    private final Date date = new Date(1394003730123L);
+
+    @Benchmark
+    public Date parseDateAnswer() {
+        return DateUtils.parseDate(DATE);
+    }
+
+    @Benchmark
+    public Date parseDateTime() {
+        return DateCodec.parseDateTime(DATE_TIME);
+    }
+
+    @Benchmark
+    public Date parseDateTimeWithSimpleDateFormat() throws ParseException {
+        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse(DATE_TIME.substring(0, 26) + DATE_TIME.substring(27));
+    }
+
+    @Benchmark
+    public String formatDateTime() {
+        return DateCodec.formatDateTime(date);
+    }
+
+    @Benchmark
+    public String formatDateTimeWithSimpleDateFormat() {
+        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(date);
+    }
+}
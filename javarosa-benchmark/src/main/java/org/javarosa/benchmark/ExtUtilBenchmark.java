@@ -0,0 +1,79 @@
+package org.javarosa.benchmark;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.util.externalizable.DeserializationException;
+import org.javarosa.model.xform.XFormsModule;
+import org.javarosa.xform.parse.XFormParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExtUtil serialization round trip of a parsed FormDef, as used by the compiled form store, in the stored format and
+ * in the compact string-table format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtUtilBenchmark {
+    @Param({FormCorpus.SMALL, FormCorpus.MEDIUM, FormCorpus.HUGE})
+    public String form;
+
+    private FormDef formDef;
+    private byte[] serialized;
+    private byte[] serializedCompact;
+
+    @Setup
+    public void setUp() throws IOException {
+        XFormParser parser = new XFormParser(new StringReader(FormCorpus.load(form)));
+        parser.validate();
+        formDef = parser.getFormDef();
+        serialized = XFormsModule.serialize(formDef);
+        serializedCompact = XFormsModule.serializeCompact(formDef);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return XFormsModule.serialize(formDef);
+    }
+
+    @Benchmark
+    public FormDef deserialize() throws DeserializationException {
+        return XFormsModule.deserialize(serialized);
+    }
+
+    @Benchmark
+    public FormDef roundTrip() throws DeserializationException {
+        return XFormsModule.deserialize(XFormsModule.serialize(formDef));
+    }
+
+    @Benchmark
+    public byte[] serializeCompact() {
+        return XFormsModule.serializeCompact(formDef);
+    }
+
+    @Benchmark
+    public FormDef deserializeCompact() throws DeserializationException {
+        return XFormsModule.deserializeCompact(serializedCompact);
+    }
+
+    @Benchmark
+    public FormDef roundTripCompact() throws DeserializationException {
+        return XFormsModule.deserializeCompact(XFormsModule.serializeCompact(formDef));
+    }
+}
@@ -0,0 +1,151 @@
+package org.javarosa.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * The xforms used by the benchmarks. The corpus is generated, so every run parses exactly the same documents; the
+ * generated files are also checked in under corpus/ and can be rewritten with {@link #main(String[])}.
+ * <p/>
+ * Each section has one driver question, a chain of calculates where every calculate depends on the previous one, and
+ * questions that are relevant only when the driver is set, so a single answer change cascades through the section.
+ * Sections may also carry a repeat with a nested repeat inside it.
+ */
+public class FormCorpus {
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+    public static final String HUGE = "huge";
+
+    public static String generate(String size) {
+        if (SMALL.equals(size)) {
+            return generate(1, 10, false);
+        } else if (MEDIUM.equals(size)) {
+            return generate(5, 20, true);
+        } else if (HUGE.equals(size)) {
+            return generate(20, 50, true);
+        }
+        throw new IllegalArgumentException("Unknown corpus form: " + size);
+    }
+
+    public static String load(String size) throws IOException {
+        InputStream in = FormCorpus.class.getResourceAsStream("/corpus/" + size + ".xml");
+        if (in == null) {
+            return generate(size);
+        }
+        Reader reader = new InputStreamReader(in, "UTF-8");
+        try {
+            StringBuilder builder = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                builder.append(buffer, 0, read);
+            }
+            return builder.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The reference of the question that drives the calculate chain of the given section.
+     */
+    public static String driverRef(int section) {
+        return "/data/s" + section + "/q" + section + "_0";
+    }
+
+    static String generate(int sections, int questionsPerSection, boolean repeats) {
+        StringBuilder instance = new StringBuilder();
+        StringBuilder binds = new StringBuilder();
+        StringBuilder body = new StringBuilder();
+
+        for (int s = 0; s < sections; s++) {
+            String section = "/data/s" + s;
+            instance.append("        <s").append(s).append(">\n");
+            body.append("    <group>\n      <label>Section ").append(s).append("</label>\n");
+            for (int q = 0; q < questionsPerSection; q++) {
+                String name = "q" + s + "_" + q;
+                String calc = "c" + s + "_" + q;
+                instance.append("          <").append(name).append("/>\n");
+                instance.append("          <").append(calc).append("/>\n");
+
+                String ref = section + "/" + name;
+                binds.append("      <bind nodeset=\"").append(ref).append("\" type=\"int\"");
+                if (q > 0) {
+                    binds.append(" relevant=\"").append(driverRef(s)).append(" &gt; ").append(q % 10).append("\"");
+                }
+                if (q % 5 == 4) {
+                    binds.append(" constraint=\"regex(., '^[0-9]{1,4}$')\"");
+                }
+                binds.append("/>\n");
+
+                String previous = q == 0 ? driverRef(s) : section + "/c" + s + "_" + (q - 1);
+                binds.append("      <bind nodeset=\"").append(section).append("/").append(calc)
+                        .append("\" type=\"int\" calculate=\"").append(previous).append(" + 1\"/>\n");
+
+                body.append("      <input ref=\"").append(ref).append("\">\n        <label>Question ")
+                        .append(s).append(".").append(q).append("</label>\n      </input>\n");
+            }
+            if (repeats) {
+                String repeat = section + "/r" + s;
+                instance.append("          <r").append(s).append(" jr:template=\"\">\n");
+                instance.append("            <name/>\n            <age/>\n");
+                instance.append("            <n").append(s).append(" jr:template=\"\">\n");
+                instance.append("              <visit/>\n            </n").append(s).append(">\n");
+                instance.append("          </r").append(s).append(">\n");
+
+                binds.append("      <bind nodeset=\"").append(repeat).append("/name\" type=\"string\"/>\n");
+                binds.append("      <bind nodeset=\"").append(repeat).append("/age\" type=\"int\" relevant=\"")
+                        .append(driverRef(s)).append(" &gt; 0\"/>\n");
+                binds.append("      <bind nodeset=\"").append(repeat).append("/n").append(s)
+                        .append("/visit\" type=\"date\"/>\n");
+
+                body.append("      <repeat nodeset=\"").append(repeat).append("\">\n");
+                body.append("        <input ref=\"").append(repeat).append("/name\">\n          <label>Name</label>\n        </input>\n");
+                body.append("        <input ref=\"").append(repeat).append("/age\">\n          <label>Age</label>\n        </input>\n");
+                body.append("        <repeat nodeset=\"").append(repeat).append("/n").append(s).append("\">\n");
+                body.append("          <input ref=\"").append(repeat).append("/n").append(s)
+                        .append("/visit\">\n            <label>Visit</label>\n          </input>\n");
+                body.append("        </repeat>\n      </repeat>\n");
+            }
+            instance.append("        </s").append(s).append(">\n");
+            body.append("    </group>\n");
+        }
+
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<h:html xmlns=\"http://www.w3.org/2002/xforms\" xmlns:h=\"http://www.w3.org/1999/xhtml\"\n");
+        xml.append("        xmlns:jr=\"http://openrosa.org/javarosa\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">\n");
+        xml.append("  <h:head>\n    <h:title>Benchmark ").append(sections).append("x").append(questionsPerSection)
+                .append("</h:title>\n");
+        xml.append("    <model>\n      <instance>\n        <data>\n");
+        xml.append(instance);
+        xml.append("        </data>\n      </instance>\n");
+        xml.append(binds);
+        xml.append("    </model>\n  </h:head>\n  <h:body>\n");
+        xml.append(body);
+        xml.append("  </h:body>\n</h:html>\n");
+        return xml.toString();
+    }
+
+    /**
+     * Writes the generated corpus into the given directory.
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "src/main/resources/corpus");
+        directory.mkdirs();
+        for (String size : new String[]{SMALL, MEDIUM, HUGE}) {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(new File(directory, size + ".xml")), "UTF-8");
+            try {
+                writer.write(generate(size));
+            } finally {
+                writer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.javarosa.benchmark;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.model.xform.XPathReference;
+import org.javarosa.xform.parse.XFormParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Triggerable evaluation on a parsed form: an answer change that cascades through a chain of calculates and
+ * relevances, and the dependency sort done by finalizeTriggerables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormDefBenchmark {
+    @Param({FormCorpus.MEDIUM, FormCorpus.HUGE})
+    public String form;
+
+    private FormDef formDef;
+    private TreeReference driver;
+    private int answer;
+
+    @Setup
+    public void setUp() throws IOException {
+        XFormParser parser = new XFormParser(new StringReader(FormCorpus.load(form)));
+        parser.validate();
+        formDef = parser.getFormDef();
+        formDef.initialize(true);
+        driver = FormInstance.unpackReference(new XPathReference(FormCorpus.driverRef(0)));
+    }
+
+    @Benchmark
+    public FormDef setAnswerCascade() {
+        // alternate the value so relevance actually flips on every call
+        formDef.setValue(new IntegerData(answer++ % 10), driver);
+        return formDef;
+    }
+
+    @Benchmark
+    public FormDef finalizeTriggerables() {
+        formDef.finalizeTriggerables();
+        return formDef;
+    }
+}
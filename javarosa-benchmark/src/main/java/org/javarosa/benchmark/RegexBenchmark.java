@@ -0,0 +1,90 @@
+package org.javarosa.benchmark;
+
+import org.apache.regexp.RE;
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.model.xform.XPathReference;
+import org.javarosa.xform.parse.XFormParser;
+import org.javarosa.xpath.expr.RegexCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The xpath regex() function: checking every regex constraint of the huge corpus form, which is what validating a
+ * submission does, and a single match with and without the compiled pattern cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegexBenchmark {
+    private static final String PHONE = "^[0-9]{10}$";
+
+    @Param({"jakarta", "java"})
+    public String engine;
+
+    private FormDef formDef;
+    private List<TreeReference> constrained = new ArrayList<TreeReference>();
+    private IntegerData answer = new IntegerData(123);
+
+    @Setup
+    public void setUp() throws IOException {
+        RegexCache.getShared().setUseJavaRegex("java".equals(engine));
+        XFormParser parser = new XFormParser(new StringReader(FormCorpus.load(FormCorpus.HUGE)));
+        parser.validate();
+        formDef = parser.getFormDef();
+        formDef.initialize(true);
+        // the corpus puts a regex constraint on every fifth question
+        for (int s = 0; s < 20; s++) {
+            for (int q = 4; q < 50; q += 5) {
+                constrained.add(FormInstance.unpackReference(new XPathReference("/data/s" + s + "/q" + s + "_" + q)));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        RegexCache.getShared().setUseJavaRegex(false);
+    }
+
+    @Benchmark
+    public int validateConstraints() {
+        int valid = 0;
+        for (TreeReference ref : constrained) {
+            if (formDef.evaluateConstraint(ref, answer)) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public boolean matchCached() {
+        return RegexCache.getShared().matches(PHONE, "0712345678");
+    }
+
+    @Benchmark
+    public boolean matchCompiledEveryTime() {
+        return new RE(PHONE).match("0712345678");
+    }
+}
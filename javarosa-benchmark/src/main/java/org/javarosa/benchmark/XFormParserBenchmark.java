@@ -0,0 +1,55 @@
+package org.javarosa.benchmark;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.xform.parse.XFormParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full parse of an xform into a FormDef: element handlers, binds and finalizeTriggerables, driven straight from the
+ * pull parser or from a kXML Document built first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XFormParserBenchmark {
+    @Param({FormCorpus.SMALL, FormCorpus.MEDIUM, FormCorpus.HUGE})
+    public String form;
+
+    private String xml;
+
+    @Setup
+    public void setUp() throws IOException {
+        xml = FormCorpus.load(form);
+    }
+
+    @Benchmark
+    public FormDef parse() {
+        XFormParser parser = new XFormParser(new StringReader(xml));
+        parser.validate();
+        return parser.getFormDef();
+    }
+
+    @Benchmark
+    public FormDef parseFromDocument() {
+        XFormParser parser = new XFormParser(XFormParser.getXMLDocument(new StringReader(xml)));
+        parser.validate();
+        return parser.getFormDef();
+    }
+}
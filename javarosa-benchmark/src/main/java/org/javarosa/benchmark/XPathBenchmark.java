@@ -0,0 +1,83 @@
+package org.javarosa.benchmark;
+
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xpath.XPathParseTool;
+import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XPathFuncExpr evaluation over large nodesets, e.g. sums and counts over a big repeat, and a scalar
+ * arithmetic/comparison expression of the kind used by calculates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XPathBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int nodes;
+
+    private FormInstance instance;
+    private EvaluationContext context;
+    private XPathExpression sum;
+    private XPathExpression count;
+    private XPathExpression arithmetic;
+
+    @Setup
+    public void setUp() throws XPathSyntaxException {
+        TreeElement data = new TreeElement("data");
+        for (int i = 0; i < nodes; i++) {
+            TreeElement item = new TreeElement("item", i);
+            TreeElement value = new TreeElement("value");
+            value.setValue(new IntegerData(i % 1000));
+            item.addChild(value);
+            data.addChild(item);
+        }
+        TreeElement a = new TreeElement("a");
+        a.setValue(new IntegerData(42));
+        data.addChild(a);
+        TreeElement b = new TreeElement("b");
+        b.setValue(new IntegerData(7));
+        data.addChild(b);
+        instance = new FormInstance(data);
+        context = new EvaluationContext(new EvaluationContext(), TreeReference.rootRef());
+
+        sum = XPathParseTool.parseXPath("sum(/data/item/value)");
+        count = XPathParseTool.parseXPath("count(/data/item/value)");
+        arithmetic = XPathParseTool.parseXPath("(/data/a + 3) * 2 div 7 > 1 and /data/b != 5");
+    }
+
+    @Benchmark
+    public Object sum() {
+        return sum.eval(instance, context);
+    }
+
+    @Benchmark
+    public Object count() {
+        return count.eval(instance, context);
+    }
+
+    @Benchmark
+    public Object arithmetic() {
+        return arithmetic.eval(instance, context);
+    }
+}
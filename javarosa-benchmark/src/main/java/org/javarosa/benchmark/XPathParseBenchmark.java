@@ -0,0 +1,47 @@
+package org.javarosa.benchmark;
+
+import org.javarosa.xpath.XPathExpressionCache;
+import org.javarosa.xpath.XPathParseTool;
+import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.parser.Lexer;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexing and parsing a typical relevance condition, with and without the shared expression cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XPathParseBenchmark {
+    private static final String RELEVANT = "/data/s3/driver > 5 and selected(/data/s3/q3_1, 'yes') or /data/s3/q3_2 != ''";
+
+    @Benchmark
+    public Vector lex() throws XPathSyntaxException {
+        return Lexer.lex(RELEVANT);
+    }
+
+    @Benchmark
+    public XPathExpression parse() throws XPathSyntaxException {
+        return XPathExpressionCache.parse(RELEVANT);
+    }
+
+    @Benchmark
+    public XPathExpression parseCached() throws XPathSyntaxException {
+        return XPathParseTool.parseXPath(RELEVANT);
+    }
+}
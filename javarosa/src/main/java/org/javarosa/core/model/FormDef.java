@@ -38,6 +38,7 @@ import org.javarosa.model.xform.XPathReference;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.NoSuchElementException;
@@ -69,7 +70,7 @@ public class FormDef implements IFormElement, Localizable, Persistable, IMetaDat
 	private Localizer localizer;
 	public Vector triggerables; // <Triggerable>; this list is topologically ordered, meaning for any tA and tB in
 	//the list, where tA comes before tB, evaluating tA cannot depend on any result from evaluating tB
-	private boolean triggerablesInOrder; //true if triggerables has been ordered topologically (DON'T DELETE ME EVEN THOUGH I'M UNUSED)
+	private boolean triggerablesInOrder; //true if triggerables has been ordered topologically and the dependency graph below is current
 	
 	private FormInstance instance;
 	private Vector outputFragments; // <IConditionExpr> contents of <output>
@@ -77,6 +78,9 @@ public class FormDef implements IFormElement, Localizable, Persistable, IMetaDat
 	// arguments to captions
 
 	public Hashtable triggerIndex; // <TreeReference, Vector<Triggerable>>
+	// dependency graph built by finalizeTriggerables(); a triggerable's rank is its position in 'triggerables'
+	private int[][] triggerableDependents; // rank -> ranks of the triggerables that read its targets
+	private Hashtable triggerRankIndex; // <TreeReference, int[]>; ranks of the triggerables fired by a generic ref
 	private Hashtable conditionRepeatTargetIndex; // <TreeReference, Condition>;
 	// associates repeatable
 	// nodes with the Condition
@@ -177,7 +181,7 @@ public class FormDef implements IFormElement, Localizable, Persistable, IMetaDat
 		for (int i = 0; i < ref.size(); i++) {
 			//There has to be a better way to encapsulate this
 			if(ref.getMultiplicity(i) != TreeReference.INDEX_ATTRIBUTE) {
-				ref.setMultiplicity(i, 0);
+				ref = ref.withMultiplicity(i, 0);
 			}
 		}
 
@@ -188,7 +192,7 @@ public class FormDef implements IFormElement, Localizable, Persistable, IMetaDat
 				TreeReference repRef = FormInstance.unpackReference(temp.getBind());
 				if (repRef.isParentOf(ref, false)) {
 					int repMult = ((Integer) multiplicities.elementAt(i)).intValue();
-					ref.setMultiplicity(repRef.size() - 1, repMult);
+					ref = ref.withMultiplicity(repRef.size() - 1, repMult);
 				} else {
 					return null; // question/repeat hierarchy is not consistent
 					// with instance instance and bindings
@@ -447,64 +451,66 @@ public class FormDef implements IFormElement, Localizable, Persistable, IMetaDat
 		//trigbles come only after the trigbles they depend on
 		//
 		
-		Vector partialOrdering = new Vector();
-		for (int i = 0; i < triggerables.size(); i++) {
-			Triggerable t = (Triggerable)triggerables.elementAt(i);
-			Vector deps = new Vector();
-			
-			if (t.canCascade()) {
-				for (int j = 0; j < t.getTargets().size(); j++) {
-					TreeReference target = (TreeReference)t.getTargets().elementAt(j);
-					Vector triggered = (Vector)triggerIndex.get(target);
-					if (triggered != null) {
-						for (int k = 0; k < triggered.size(); k++) {
-							Triggerable u = (Triggerable)triggered.elementAt(k);
-							if (!deps.contains(u))
-								deps.addElement(u);
-						}
+		int n = triggerables.size();
+		Hashtable positions = rankTable(triggerables);
+		int[][] dependents = buildDependents(positions);
+		
+		int[] inDegree = new int[n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < dependents[i].length; j++) {
+				inDegree[dependents[i][j]]++;
+			}
+		}
+		
+		//peel off the roots one layer at a time, keeping the original order within a layer
+		int[] order = new int[n];
+		int ordered = 0;
+		for (int i = 0; i < n; i++) {
+			if (inDegree[i] == 0) {
+				order[ordered++] = i;
+			}
+		}
+		int layerStart = 0;
+		while (layerStart < ordered) {
+			int layerEnd = ordered;
+			for (int i = layerStart; i < layerEnd; i++) {
+				int[] deps = dependents[order[i]];
+				for (int j = 0; j < deps.length; j++) {
+					if (--inDegree[deps[j]] == 0) {
+						order[ordered++] = deps[j];
 					}
 				}
 			}
-			
-			for (int j = 0; j < deps.size(); j++) {
-				Triggerable u = (Triggerable)deps.elementAt(j);
-				Triggerable[] edge = {t, u};
-				partialOrdering.addElement(edge);
-			}
+			Arrays.sort(order, layerEnd, ordered);
+			layerStart = layerEnd;
+		}
+		
+		//if there are nodes left that never became roots, the graph has cycles
+		if (ordered < n) {
+			throw new RuntimeException("Cannot create partial ordering of triggerables due to dependency cycle. Why wasn't this caught during parsing?");
 		}
 		
-		Vector vertices = new Vector();
-		for (int i = 0; i < triggerables.size(); i++)
-			vertices.addElement(triggerables.elementAt(i));
+		Vector sorted = new Vector(n);
+		for (int i = 0; i < n; i++) {
+			sorted.addElement(triggerables.elementAt(order[i]));
+		}
 		triggerables.removeAllElements();
+		for (int i = 0; i < n; i++) {
+			triggerables.addElement(sorted.elementAt(i));
+		}
 		
-		while (vertices.size() > 0) {
-			//determine root nodes
-			Vector roots = new Vector();
-			for (int i = 0; i < vertices.size(); i++) {
-				roots.addElement(vertices.elementAt(i));
-			}
-			for (int i = 0; i < partialOrdering.size(); i++) {
-				Triggerable[] edge = (Triggerable[])partialOrdering.elementAt(i);
-				roots.removeElement(edge[1]);
-			}
-			
-			//if no root nodes while graph still has nodes, graph has cycles
-			if (roots.size() == 0) {
-				throw new RuntimeException("Cannot create partial ordering of triggerables due to dependency cycle. Why wasn't this caught during parsing?");
-			}
-
-			//remove root nodes and edges originating from them
-			for (int i = 0; i < roots.size(); i++) {
-				Triggerable root = (Triggerable)roots.elementAt(i);
-				triggerables.addElement(root);
-				vertices.removeElement(root);
-			}			
-			for (int i = partialOrdering.size() - 1; i >= 0; i--) {
-				Triggerable[] edge = (Triggerable[])partialOrdering.elementAt(i);
-				if (roots.contains(edge[0]))
-					partialOrdering.removeElementAt(i);
+		//index the graph by rank
+		positions = rankTable(triggerables);
+		triggerableDependents = buildDependents(positions);
+		triggerRankIndex = new Hashtable();
+		for (Enumeration e = triggerIndex.keys(); e.hasMoreElements(); ) {
+			TreeReference trigger = (TreeReference) e.nextElement();
+			Vector triggered = (Vector) triggerIndex.get(trigger);
+			int[] ranks = new int[triggered.size()];
+			for (int i = 0; i < ranks.length; i++) {
+				ranks[i] = ((Integer) positions.get(triggered.elementAt(i))).intValue();
 			}
+			triggerRankIndex.put(trigger, ranks);
 		}
 		
 		triggerablesInOrder = true;
@@ -529,6 +535,47 @@ public class FormDef implements IFormElement, Localizable, Persistable, IMetaDat
 
 	}
 		
+	// <Triggerable, Integer>; triggerables are unique and don't override hashCode(), so this is an identity map
+	private static Hashtable rankTable(Vector triggerables) {
+		Hashtable positions = new Hashtable();
+		for (int i = 0; i < triggerables.size(); i++) {
+			positions.put(triggerables.elementAt(i), new Integer(i));
+		}
+		return positions;
+	}
+	
+	// for each triggerable (by position in 'triggerables'), the triggerables that are triggered by its targets
+	private int[][] buildDependents(Hashtable positions) {
+		int n = triggerables.size();
+		int[][] dependents = new int[n][];
+		int[] seen = new int[n];
+		int[] deps = new int[n];
+		for (int i = 0; i < n; i++) {
+			Triggerable t = (Triggerable)triggerables.elementAt(i);
+			int count = 0;
+			
+			if (t.canCascade()) {
+				for (int j = 0; j < t.getTargets().size(); j++) {
+					TreeReference target = (TreeReference)t.getTargets().elementAt(j);
+					Vector triggered = (Vector)triggerIndex.get(target);
+					if (triggered != null) {
+						for (int k = 0; k < triggered.size(); k++) {
+							int u = ((Integer) positions.get(triggered.elementAt(k))).intValue();
+							if (seen[u] != i + 1) {
+								seen[u] = i + 1;
+								deps[count++] = u;
+							}
+						}
+					}
+				}
+			}
+			
+			dependents[i] = new int[count];
+			System.arraycopy(deps, 0, dependents[i], 0, count);
+		}
+		return dependents;
+	}
+	
 	public void initializeTriggerables() {
 		initializeTriggerables(TreeReference.rootRef());
 	}
@@ -539,20 +586,22 @@ public class FormDef implements IFormElement, Localizable, Persistable, IMetaDat
 	 */
 	private void initializeTriggerables(TreeReference rootRef) {
 		TreeReference genericRoot = rootRef.genericize();
+		ensureTriggerablesInOrder();
 
-		Vector applicable = new Vector();
+		int[] applicable = new int[triggerables.size()];
+		int count = 0;
 		for (int i = 0; i < triggerables.size(); i++) {
 			Triggerable t = (Triggerable)triggerables.elementAt(i);
 			for (int j = 0; j < t.getTargets().size(); j++) {
 				TreeReference target = (TreeReference)t.getTargets().elementAt(j);
 				if (genericRoot.isParentOf(target, false)) {
-					applicable.addElement(t);
+					applicable[count++] = i;
 					break;
 				}
 			}
 		}
 		
-		evaluateTriggerables(applicable, rootRef);
+		evaluateTriggerables(applicable, count, rootRef);
 	}
 	
 	// ref: unambiguous ref of node that just changed
@@ -561,42 +610,48 @@ public class FormDef implements IFormElement, Localizable, Persistable, IMetaDat
 		TreeReference genericRef = ref.genericize();
 
 		// get conditions triggered by this node
-		Vector triggered = (Vector)triggerIndex.get(genericRef);
+		ensureTriggerablesInOrder();
+		int[] triggered = (int[])triggerRankIndex.get(genericRef);
 		if (triggered == null)
 			return;
 
-		Vector triggeredCopy = new Vector();
-		for (int i = 0; i < triggered.size(); i++)
-			triggeredCopy.addElement(triggered.elementAt(i));
-		evaluateTriggerables(triggeredCopy, ref);
+		evaluateTriggerables(triggered, triggered.length, ref);
 	}
 
-	private void evaluateTriggerables(Vector tv, TreeReference anchorRef) {
-		//add all cascaded triggerables to queue
-		for (int i = 0; i < tv.size(); i++) {
-			Triggerable t = (Triggerable)tv.elementAt(i);
-			if (t.canCascade()) {
-				for (int j = 0; j < t.getTargets().size(); j++) {
-					TreeReference target = (TreeReference)t.getTargets().elementAt(j);
-					Vector triggered = (Vector)triggerIndex.get(target);
-					if (triggered != null) {
-						for (int k = 0; k < triggered.size(); k++) {
-							Triggerable u = (Triggerable)triggered.elementAt(k);
-							if (!tv.contains(u))
-								tv.addElement(u);
-						}
-					}
+	// triggerables added since the last finalizeTriggerables() are not in the graph yet
+	private void ensureTriggerablesInOrder() {
+		if (!triggerablesInOrder || triggerableDependents == null || triggerableDependents.length != triggerables.size()) {
+			finalizeTriggerables();
+		}
+	}
+
+	// seeds: ranks of the triggerables that fired directly; the first 'count' entries are used
+	private void evaluateTriggerables(int[] seeds, int count, TreeReference anchorRef) {
+		//add all cascaded triggerables to the worklist
+		boolean[] queued = new boolean[triggerables.size()];
+		int[] worklist = new int[triggerables.size()];
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			if (!queued[seeds[i]]) {
+				queued[seeds[i]] = true;
+				worklist[size++] = seeds[i];
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			int[] deps = triggerableDependents[worklist[i]];
+			for (int j = 0; j < deps.length; j++) {
+				if (!queued[deps[j]]) {
+					queued[deps[j]] = true;
+					worklist[size++] = deps[j];
 				}
 			}
 		}
 		
-		//'triggerables' is topologically-ordered by dependencies, so evaluate the triggerables in 'tv'
-		//in the order they appear in 'triggerables'
-		for (int i = 0; i < triggerables.size(); i++) {
-			Triggerable t = (Triggerable)triggerables.elementAt(i);
-			if (tv.contains(t)) {
-				evaluateTriggerable(t, anchorRef);
-			}
+		//ranks follow the topological order of 'triggerables', so evaluating the worklist by rank
+		//evaluates every triggerable after everything it depends on
+		Arrays.sort(worklist, 0, size);
+		for (int i = 0; i < size; i++) {
+			evaluateTriggerable((Triggerable)triggerables.elementAt(worklist[i]), anchorRef);
 		}
 	}
 	
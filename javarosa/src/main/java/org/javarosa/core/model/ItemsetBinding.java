@@ -73,9 +73,9 @@ public class ItemsetBinding implements Externalizable, Localizable {
 	}
 	
 	public void setDestRef (QuestionDef q) {
-		destRef = FormInstance.unpackReference(q.getBind()).clone();
+		destRef = FormInstance.unpackReference(q.getBind());
 		if (copyMode) {
-			destRef.add(copyRef.getNameLast(), TreeReference.INDEX_UNBOUND);
+			destRef = destRef.extendRef(copyRef.getNameLast(), TreeReference.INDEX_UNBOUND);
 		}
 	}
 	
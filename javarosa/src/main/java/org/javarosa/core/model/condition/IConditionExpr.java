@@ -28,6 +28,7 @@ public interface IConditionExpr extends Externalizable {
 	String evalReadable(FormInstance model, EvaluationContext evalContext);
 	Vector evalNodeset(FormInstance model, EvaluationContext evalContext);
 	Vector getTriggers(); /* vector of TreeReference */
+	boolean dependsOnlyOnTriggers(); /* true if the result is determined by the values of the trigger nodes alone */
 	
 	Vector<Object> pivot(FormInstance model, EvaluationContext evalContext) throws UnpivotableExpressionException;
 }
@@ -18,18 +18,26 @@ package org.javarosa.core.model.condition;
 
 import org.javarosa.core.model.FormDef;
 import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
 import org.javarosa.core.model.instance.TreeReference;
 import org.javarosa.core.util.externalizable.*;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Hashtable;
 import java.util.Vector;
 
 public abstract class Triggerable implements Externalizable {
 	public IConditionExpr expr;
 	public Vector targets;
 	public TreeReference contextRef;  //generic ref used to turn triggers into absolute references
+	
+	//results of earlier evaluations, one per context node; only valid while the instance structure is unchanged
+	private Hashtable memos; // <TreeReference, Memo>
+	private FormInstance memoInstance;
+	private long memoStructureVersion;
+	private Vector memoTriggers;
 		
 	public Triggerable () {
 		
@@ -48,16 +56,133 @@ public abstract class Triggerable implements Externalizable {
 	public abstract boolean canCascade ();
 	
 	public void apply (FormInstance instance, EvaluationContext evalContext, FormDef f) {
-		Object result = eval(instance, evalContext);
+		TreeReference contextRef = evalContext.getContextRef();
+		boolean memoize = expr.dependsOnlyOnTriggers();
+		long structureVersion = instance.getStructureVersion();
+		Memo memo = (memoize ? getMemo(instance, structureVersion, contextRef) : null);
+		
+		Object result;
+		TreeElement[] inputs = null;
+		long[] inputVersions = null;
+		if (memo != null && Memo.isCurrent(memo.inputs, memo.inputVersions)) {
+			if (Memo.isCurrent(memo.outputs, memo.outputVersions)) {
+				//same inputs, and nobody touched what we wrote last time: nothing to do
+				return;
+			}
+			result = memo.result;
+			inputs = memo.inputs;
+			inputVersions = memo.inputVersions;
+		} else {
+			if (memoize) {
+				inputs = resolveTriggers(instance, contextRef);
+				inputVersions = Memo.versionsOf(inputs);
+			}
+			result = eval(instance, evalContext);
+		}
 
+		Vector affected = new Vector();
 		for (int i = 0; i < targets.size(); i++) {
-			TreeReference targetRef = ((TreeReference)targets.elementAt(i)).contextualize(evalContext.getContextRef());
+			TreeReference targetRef = ((TreeReference)targets.elementAt(i)).contextualize(contextRef);
 			Vector v = instance.expandReference(targetRef);		
 			for (int j = 0; j < v.size(); j++) {
 				TreeReference affectedRef = (TreeReference)v.elementAt(j);
 				apply(affectedRef, result, instance, f);
+				affected.addElement(affectedRef);
+			}
+		}
+		
+		if (memoize && result != null) {
+			TreeElement[] outputs = new TreeElement[affected.size()];
+			for (int i = 0; i < outputs.length; i++) {
+				outputs[i] = instance.resolveReference((TreeReference)affected.elementAt(i));
+			}
+			putMemo(instance, structureVersion, contextRef,
+					new Memo(result, inputs, inputVersions, outputs, Memo.versionsOf(outputs)));
+		}
+	}
+	
+	private synchronized Memo getMemo (FormInstance instance, long structureVersion, TreeReference contextRef) {
+		if (memos == null || memoInstance != instance || memoStructureVersion != structureVersion) {
+			return null;
+		}
+		return (Memo)memos.get(contextRef);
+	}
+	
+	//kept only if the structure the memo was resolved against is still current
+	private synchronized void putMemo (FormInstance instance, long structureVersion, TreeReference contextRef, Memo memo) {
+		if (instance.getStructureVersion() != structureVersion) {
+			return;
+		}
+		if (memos == null || memoInstance != instance || memoStructureVersion != structureVersion) {
+			//nodes may have been added, removed or replaced, so the resolved inputs and outputs are stale
+			memos = new Hashtable();
+			memoInstance = instance;
+			memoStructureVersion = structureVersion;
+		}
+		memos.put(contextRef, memo);
+	}
+	
+	private synchronized Vector getMemoTriggers () {
+		if (memoTriggers == null) {
+			memoTriggers = getTriggers();
+		}
+		return memoTriggers;
+	}
+	
+	//the nodes the expression reads when evaluated at contextRef
+	private TreeElement[] resolveTriggers (FormInstance instance, TreeReference contextRef) {
+		Vector triggers = getMemoTriggers();
+		Vector nodes = new Vector();
+		for (int i = 0; i < triggers.size(); i++) {
+			TreeReference trigger = ((TreeReference)triggers.elementAt(i)).contextualize(contextRef);
+			Vector refs = (trigger == null ? null : instance.expandReference(trigger));
+			if (refs != null) {
+				for (int j = 0; j < refs.size(); j++) {
+					nodes.addElement(instance.resolveReference((TreeReference)refs.elementAt(j)));
+				}
 			}
-		}		
+		}
+		TreeElement[] resolved = new TreeElement[nodes.size()];
+		nodes.copyInto(resolved);
+		return resolved;
+	}
+	
+	//the result of one evaluation, with the nodes it was read from and written to and their versions at the time;
+	//never changed once made, so it can be read without the lock it is stored under
+	private static class Memo {
+		final Object result;
+		final TreeElement[] inputs;
+		final long[] inputVersions;
+		final TreeElement[] outputs;
+		final long[] outputVersions;
+		
+		Memo (Object result, TreeElement[] inputs, long[] inputVersions, TreeElement[] outputs, long[] outputVersions) {
+			this.result = result;
+			this.inputs = inputs;
+			this.inputVersions = inputVersions;
+			this.outputs = outputs;
+			this.outputVersions = outputVersions;
+		}
+		
+		static long[] versionsOf (TreeElement[] nodes) {
+			long[] versions = new long[nodes.length];
+			for (int i = 0; i < nodes.length; i++) {
+				versions[i] = (nodes[i] == null ? 0 : nodes[i].getVersion());
+			}
+			return versions;
+		}
+		
+		static boolean isCurrent (TreeElement[] nodes, long[] versions) {
+			if (nodes == null) {
+				return false;
+			}
+			for (int i = 0; i < nodes.length; i++) {
+				if ((nodes[i] == null ? 0 : nodes[i].getVersion()) != versions[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
 	}
 	
 	public void addTarget (TreeReference target) {
@@ -111,6 +236,8 @@ public abstract class Triggerable implements Externalizable {
 	
 	public void readExternal(DataInputStream in, PrototypeFactory pf) throws IOException, DeserializationException {
 		expr = (IConditionExpr) ExtUtil.read(in, new ExtWrapTagged(), pf);
+		memos = null;
+		memoTriggers = null;
 		contextRef = (TreeReference) ExtUtil.read(in, TreeReference.class, pf);
 		targets = (Vector) ExtUtil.read(in, new ExtWrapList(TreeReference.class), pf);
 	}
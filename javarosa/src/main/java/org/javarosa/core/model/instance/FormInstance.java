@@ -67,6 +67,12 @@ public class FormInstance implements Persistable, Restorable {
 	
 	private Hashtable namespaces = new Hashtable();
 
+	// nodes found by resolveReference, valid while the structure version of this instance they were found at is current
+	private final Hashtable resolved = new Hashtable(); // <TreeReference, TreeElement>
+	private long resolvedStructureVersion = -1;
+	// see getDerivedData()
+	private final Hashtable derived = new Hashtable();
+
 	public FormInstance() {
 	}
 
@@ -89,11 +95,37 @@ public class FormInstance implements Persistable, Restorable {
 	 *            The root of the tree for this data model.
 	 */
 	public void setRoot(TreeElement topLevel) {
+		TreeElement replaced = root;
 		root = new TreeElement();
+		root.continueStructureVersion(replaced);
 		if (topLevel != null)
 			root.addChild(topLevel);
 	}
 
+	/**
+	 * A number that changes whenever elements are added, removed, renamed or renumbered in this instance,
+	 * including when its root is replaced. As long as it is unchanged, references resolve to the same elements
+	 * as before.
+	 */
+	public long getStructureVersion() {
+		return root.getStructureVersion();
+	}
+
+	/**
+	 * A number that changes whenever the value or the relevance of any node in this instance changes.
+	 */
+	public long getValuesVersion() {
+		return root.getValuesVersion();
+	}
+
+	/**
+	 * Data derived from this instance and kept with it, keyed by the class that derives it, e.g. the indexes that
+	 * answer path predicates. It is neither copied nor serialized with the instance.
+	 */
+	public Hashtable getDerivedData() {
+		return derived;
+	}
+
 	/**
 	 * TODO: confusion between root and its first child?
 	 * 
@@ -177,11 +209,37 @@ public class FormInstance implements Persistable, Restorable {
 	// take a ref that unambiguously refers to a single node and return that node
 	// return null if ref is ambiguous, node does not exist, ref is relative, or ref is '/'
 	// can be used to retrieve template nodes
+	// nodes found are cached until nodes are next added, removed, renamed or renumbered in this instance (see
+	// getStructureVersion()), so a reference looked up again and again while triggerables cascade is only walked once
 	public TreeElement resolveReference(TreeReference ref) {
 		if (!ref.isAbsolute()){
 			return null;
 		}
 
+		long structureVersion = getStructureVersion();
+		synchronized (resolved) {
+			if (resolvedStructureVersion == structureVersion) {
+				TreeElement node = (TreeElement)resolved.get(ref);
+				if (node != null)
+					return node;
+			}
+		}
+
+		// copying the children of a lazily copied tree while walking it leaves the structure version alone
+		TreeElement node = walkReference(ref);
+		if (node != null) {
+			synchronized (resolved) {
+				if (resolvedStructureVersion != structureVersion) {
+					resolved.clear();
+					resolvedStructureVersion = structureVersion;
+				}
+				resolved.put(ref, node);
+			}
+		}
+		return node;
+	}
+
+	private TreeElement walkReference(TreeReference ref) {
 		TreeElement node = root;
 		for (int i = 0; i < ref.size(); i++) {
 			String name = ref.getName(i);
@@ -507,24 +565,23 @@ public class FormInstance implements Persistable, Restorable {
 	}
 
 	public TreeReference addNode(TreeReference ambigRef) {
-		TreeReference ref = ambigRef.clone();
-		if (createNode(ref) != null) {
-			return ref;
+		TreeElement node = createNode(ambigRef);
+		if (node != null) {
+			return node.getRef();
 		} else {
 			return null;
 		}
 	}
 
 	public TreeReference addNode(TreeReference ambigRef, IAnswerData data, int dataType) {
-		TreeReference ref = ambigRef.clone();
-		TreeElement node = createNode(ref);
+		TreeElement node = createNode(ambigRef);
 		if (node != null) {
 			if (dataType >= 0) {
 				node.dataType = dataType;
 			}
 
 			node.setValue(data);
-			return ref;
+			return node.getRef();
 		} else {
 			return null;
 		}
@@ -542,8 +599,7 @@ public class FormInstance implements Persistable, Restorable {
 	 * multiplicity is ALL: if no nodes exist, a new one is created; if one node
 	 * exists, it is used; if multiple nodes exist, it's an error
 	 * 
-	 * return the newly-created node; modify ref so that it's an unambiguous ref
-	 * to the node
+	 * return the newly-created node; its getRef() is the unambiguous ref to it
 	 */
 	private TreeElement createNode(TreeReference ref) {
 
@@ -562,7 +618,6 @@ public class FormInstance implements Persistable, Restorable {
 					} else {
 						// will use existing (if one and only one) or create new
 						mult = 0;
-						ref.setMultiplicity(k, 0);
 					}
 				}
 
@@ -573,7 +628,6 @@ public class FormInstance implements Persistable, Restorable {
 						// create
 						child = new TreeElement(name, count);
 						node.addChild(child);
-						ref.setMultiplicity(k, count);
 					} else {
 						return null; // intermediate node does not exist
 					}
@@ -591,8 +645,7 @@ public class FormInstance implements Persistable, Restorable {
 
 					// create new
 					child = new TreeElement(name, count);
-					node.addChild(child);					
-					ref.setMultiplicity(k, count);
+					node.addChild(child);
 				} else {
 					return null; // final node must be a newly-created node
 				}
@@ -709,6 +762,18 @@ public class FormInstance implements Persistable, Restorable {
 		return fixedInstanceRoot;
 	}
 
+	/**
+	 * Make the data tree of this instance read only. clone() of a frozen instance shares the tree and only
+	 * copies the parts that are navigated, so a blank template can be instantiated many times cheaply.
+	 */
+	public void freeze () {
+		getRoot().freeze();
+	}
+
+	public boolean isFrozen () {
+		return getRoot().isFrozen();
+	}
+
 	public FormInstance clone () {
 		FormInstance cloned = new FormInstance(this.getRoot().deepCopy(true));
 		
@@ -32,6 +32,7 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Enumeration;
+import java.util.Hashtable;
 import java.util.Vector;
 
 /**
@@ -44,6 +45,9 @@ import java.util.Vector;
  * TreeElements can also represent attributes. Attributes are unique from normal elements in that they are
  * not "children" of their parent, and are always leaf nodes: IE cannot have children.
  * 
+ * A tree can be read from several threads at once, including copies of a frozen tree, whose children are
+ * copied when they are first read. Changing a tree while any other thread is reading it is not safe.
+ * 
  * @author Clayton Sims
  * 
  */
@@ -56,7 +60,20 @@ import java.util.Vector;
 	public boolean isAttribute;
 
 	private IAnswerData value;
+	// bumped whenever the value is set; see getVersion()
+	private long version;
+	// only used on the topmost element of a tree; see getStructureVersion() and getValuesVersion()
+	private long structureVersion;
+	private long valuesVersion;
 	private Vector children = new Vector();
+	// children grouped by name, in document order; built on first lookup and kept in step by the mutators below.
+	// Shared with shallow copies along with the child list, so that a change made through either, or the renaming
+	// of a shared child, is seen by both
+	private volatile ChildIndex childIndex = new ChildIndex();
+	// copies of a frozen element get their children from it when they are first needed; see deepCopy()
+	private volatile TreeElement lazySource;
+	private boolean lazyTemplates;
+	private boolean frozen;
 
 	/* model properties */
 	public int dataType = Constants.DATATYPE_NULL; //TODO
@@ -78,6 +95,7 @@ import java.util.Vector;
 	private String namespace;
 	
 	
+	
 	/**
 	 * TreeElement with null name and 0 multiplicity? (a "hidden root" node?)
 	 */
@@ -90,7 +108,7 @@ import java.util.Vector;
 	}
 
 	public TreeElement(String name, int multiplicity) {
-		this.name = name;
+		this.name = intern(name);
 		this.multiplicity = multiplicity;
 		this.parent = null;
 		attributes = new Vector<TreeElement>(0);
@@ -113,6 +131,16 @@ import java.util.Vector;
 	}
 
 	public boolean isLeaf() {
+		if (lazySource != null) {
+			// answered from the source, so checking for a leaf doesn't copy anything
+			for (int i = 0; i < lazySource.children.size(); i++) {
+				TreeElement child = (TreeElement) lazySource.children.elementAt(i);
+				if (lazyTemplates || child.multiplicity != TreeReference.INDEX_TEMPLATE) {
+					return false;
+				}
+			}
+			return true;
+		}
 		return (children.size() == 0);
 	}
 
@@ -121,8 +149,11 @@ import java.util.Vector;
 	}
 
 	public void setValue(IAnswerData value) {
+		checkNotFrozen();
 		if (isLeaf()) {
 			this.value = value;
+			this.version++;
+			top().valuesVersion++;
 		} else {
 			throw new RuntimeException("Can't set data value for node that has children!");
 		}
@@ -130,20 +161,14 @@ import java.util.Vector;
 
 	public TreeElement getChild(String name, int multiplicity) {
 		if (name.equals(TreeReference.NAME_WILDCARD)) {
-			if(multiplicity == TreeReference.INDEX_TEMPLATE || this.children.size() < multiplicity + 1) {
+			if(multiplicity == TreeReference.INDEX_TEMPLATE || children().size() < multiplicity + 1) {
 				return null;
 			}
-			return (TreeElement) this.children.elementAt(multiplicity); //droos: i'm suspicious of this
-		} else {
-			for (int i = 0; i < this.children.size(); i++) {
-				TreeElement child = (TreeElement) this.children.elementAt(i);
-				if (name.equals(child.getName()) && child.getMult() == multiplicity) {
-					return child;
-				}
-			}
+			return (TreeElement) children().elementAt(multiplicity); //droos: i'm suspicious of this
 		}
 
-		return null;
+		ChildList list = getChildIndex().get(name);
+		return (list == null ? null : list.get(multiplicity));
 	}
 
 	/**
@@ -160,22 +185,69 @@ import java.util.Vector;
 	private Vector<TreeElement> getChildrenWithName(String name, boolean includeTemplate) {
 		Vector<TreeElement> v = new Vector<TreeElement>();
 
-		for (int i = 0; i < this.children.size(); i++) {
-			TreeElement child = (TreeElement) this.children.elementAt(i);
-			if ((child.getName().equals(name) || name.equals(TreeReference.NAME_WILDCARD))
-					&& (includeTemplate || child.multiplicity != TreeReference.INDEX_TEMPLATE))
-				v.addElement(child);
+		if (name.equals(TreeReference.NAME_WILDCARD)) {
+			Vector children = children();
+			for (int i = 0; i < children.size(); i++) {
+				TreeElement child = (TreeElement) children.elementAt(i);
+				if (includeTemplate || child.multiplicity != TreeReference.INDEX_TEMPLATE)
+					v.addElement(child);
+			}
+			return v;
+		}
+
+		ChildList list = getChildIndex().get(name);
+		if (list != null) {
+			for (int i = 0; i < list.nodes.size(); i++) {
+				TreeElement child = list.nodes.elementAt(i);
+				if (includeTemplate || child.multiplicity != TreeReference.INDEX_TEMPLATE)
+					v.addElement(child);
+			}
 		}
 
 		return v;
 	}
 
 	public int getNumChildren() {
-		return this.children.size();
+		return children().size();
 	}
 
 	public TreeElement getChildAt (int i) {
-		return (TreeElement)children.elementAt(i);
+		return (TreeElement)children().elementAt(i);
+	}
+
+	// the child list, copied from the frozen source first if this is a copy that hasn't been navigated yet
+	private Vector children() {
+		if (lazySource != null) {
+			copyLazyChildren();
+		}
+		return children;
+	}
+
+	// synchronized so that threads reading a copy at the same time copy its children once; clearing lazySource
+	// last publishes the children to threads that don't take the lock
+	private synchronized void copyLazyChildren() {
+		TreeElement source = lazySource;
+		if (source == null) {
+			return;
+		}
+		children = new Vector(source.children.size());
+		childIndex = new ChildIndex();
+		for (int i = 0; i < source.children.size(); i++) {
+			TreeElement child = (TreeElement) source.children.elementAt(i);
+			if (lazyTemplates || child.getMult() != TreeReference.INDEX_TEMPLATE) {
+				appendCopy(child.deepCopy(lazyTemplates));
+			}
+		}
+		lazySource = null;
+	}
+
+	// adds the copy of a child of the element this one was copied from, in the same order. Filling in a copy
+	// doesn't change a structure anyone has looked into, so unlike addChild this leaves the structure version alone
+	private void appendCopy(TreeElement copy) {
+		copy.parent = this;
+		children.addElement(copy);
+		copy.setRelevant(isRelevant(), true);
+		copy.setEnabled(isEnabled(), true);
 	}
 	
 	/**
@@ -188,6 +260,7 @@ import java.util.Vector;
 	}
 
 	private void addChild(TreeElement child, boolean checkDuplicate) {
+		checkNotFrozen();
 		if (!isChildable()) {
 			throw new RuntimeException("Can't add children to node that has data value!");
 		}
@@ -204,6 +277,7 @@ import java.util.Vector;
 		}
 
 		// try to keep things in order
+		Vector children = children();
 		int i = children.size();
 		if (child.getMult() == TreeReference.INDEX_TEMPLATE) {
 			TreeElement anchor = getChild(child.getName(), 0);
@@ -212,10 +286,13 @@ import java.util.Vector;
 		} else {
 			TreeElement anchor = getChild(child.getName(),
 					(child.getMult() == 0 ? TreeReference.INDEX_TEMPLATE : child.getMult() - 1));
-			if (anchor != null)
+			// appending after the last child is the common case while building an instance; skip the scan
+			if (anchor != null && anchor != children.lastElement())
 				i = children.indexOf(anchor) + 1;
 		}
 		children.insertElementAt(child, i);
+		indexChild(child, i);
+		structureChanged();
 		child.setParent(this);
 		
 		child.setRelevant(isRelevant(), true);
@@ -223,7 +300,11 @@ import java.util.Vector;
 	}
 
 	public void removeChild(TreeElement child) {
-		children.removeElement(child);
+		checkNotFrozen();
+		if (children().removeElement(child)) {
+			unindexChild(child);
+			structureChanged();
+		}
 	}
 
 	public void removeChild(String name, int multiplicity) {
@@ -245,15 +326,202 @@ import java.util.Vector;
 	}
 
 	public void removeChildAt(int i) {
+		checkNotFrozen();
+		TreeElement child = (TreeElement) children().elementAt(i);
 		children.removeElementAt(i);
-
+		unindexChild(child);
+		structureChanged();
 	}
 
 	public int getChildMultiplicity(String name) {
-		return getChildrenWithName(name, false).size();
+		if (name.equals(TreeReference.NAME_WILDCARD)) {
+			return getChildrenWithName(name, false).size();
+		}
+
+		ChildList list = getChildIndex().get(name);
+		return (list == null ? 0 : list.nodes.size() - list.templates);
+	}
+
+	private Hashtable<String, ChildList> getChildIndex() {
+		ChildIndex holder = childIndex;
+		Hashtable<String, ChildList> lists = holder.lists;
+		if (lists == null) {
+			Hashtable<String, ChildList> index = new Hashtable<String, ChildList>();
+			Vector children = children();
+			for (int i = 0; i < children.size(); i++) {
+				TreeElement child = (TreeElement) children.elementAt(i);
+				if (child.name != null) {
+					ChildList list = index.get(child.name);
+					if (list == null) {
+						list = new ChildList();
+						index.put(child.name, list);
+					}
+					list.add(child, list.nodes.size());
+				}
+			}
+			holder.lists = index;
+			lists = index;
+		}
+		return lists;
+	}
+
+	// child has just been inserted into children at position i
+	private void indexChild(TreeElement child, int i) {
+		Hashtable<String, ChildList> lists = childIndex.lists;
+		if (lists == null || child.name == null) {
+			return;
+		}
+		ChildList list = lists.get(child.name);
+		if (list == null) {
+			list = new ChildList();
+			lists.put(child.name, list);
+		}
+
+		// the position among the same-named siblings is right after the closest one preceding it
+		int pos = 0;
+		if (i == children.size() - 1) {
+			pos = list.nodes.size();
+		} else {
+			for (int j = i - 1; j >= 0; j--) {
+				TreeElement sibling = (TreeElement) children.elementAt(j);
+				if (child.name.equals(sibling.name)) {
+					pos = list.nodes.indexOf(sibling) + 1;
+					break;
+				}
+			}
+		}
+		list.add(child, pos);
+	}
+
+	private void unindexChild(TreeElement child) {
+		Hashtable<String, ChildList> lists = childIndex.lists;
+		if (lists == null || child.name == null) {
+			return;
+		}
+		ChildList list = lists.get(child.name);
+		if (list != null) {
+			list.remove(child);
+			if (list.nodes.size() == 0) {
+				lists.remove(child.name);
+			}
+		}
+	}
+
+	// drops the index, for this element and the shallow copies sharing it; it is rebuilt on the next lookup
+	private void invalidateChildIndex() {
+		childIndex.lists = null;
+	}
+
+	private static class ChildIndex {
+		// <name, the children with that name>, or null until the next lookup
+		volatile Hashtable<String, ChildList> lists;
+	}
+
+	private void insertChildAt(TreeElement child, int i) {
+		checkNotFrozen();
+		children().insertElementAt(child, i);
+		indexChild(child, i);
+		structureChanged();
+	}
+
+	/**
+	 * A number that changes every time the value of this element is set. Versions are only comparable between
+	 * readings of the same element.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * A number that changes whenever elements are added, removed, renamed or renumbered in the tree this
+	 * element belongs to. As long as it is unchanged, references into the tree resolve to the same elements
+	 * as before. Changes to other trees leave it alone.
+	 */
+	public long getStructureVersion() {
+		return top().structureVersion;
+	}
+
+	/**
+	 * A number that changes whenever the value or the relevance of any element in the tree this element belongs
+	 * to changes. As long as it is unchanged, and so is the structure version, every element in the tree reads
+	 * as before.
+	 */
+	public long getValuesVersion() {
+		return top().valuesVersion;
+	}
+
+	// a tree that replaces another continues its count, so the two can't be told apart by their versions
+	void continueStructureVersion(TreeElement replaced) {
+		top().structureVersion = replaced.getStructureVersion() + 1;
+	}
+
+	private void structureChanged() {
+		top().structureVersion++;
+	}
+
+	private TreeElement top() {
+		TreeElement top = this;
+		while (top.parent != null) {
+			top = top.parent;
+		}
+		return top;
+	}
+
+	/**
+	 * The children of one element that share a name. Repeat instances are kept in multiplicity order behind their
+	 * template, so the instance with multiplicity m normally sits at position m + templates.
+	 */
+	private static class ChildList {
+		Vector<TreeElement> nodes = new Vector<TreeElement>(1);
+		int templates;
+
+		TreeElement get(int multiplicity) {
+			int guess = multiplicity + templates;
+			if (multiplicity >= 0 && guess < nodes.size()) {
+				TreeElement node = nodes.elementAt(guess);
+				if (node.multiplicity == multiplicity) {
+					return node;
+				}
+			}
+			// multiplicities are not always dense (e.g. while repeats are renumbered); fall back to a scan
+			for (int i = 0; i < nodes.size(); i++) {
+				TreeElement node = nodes.elementAt(i);
+				if (node.multiplicity == multiplicity) {
+					return node;
+				}
+			}
+			return null;
+		}
+
+		void add(TreeElement node, int pos) {
+			nodes.insertElementAt(node, pos);
+			if (node.multiplicity == TreeReference.INDEX_TEMPLATE) {
+				templates++;
+			}
+		}
+
+		void remove(TreeElement node) {
+			if (nodes.removeElement(node) && node.multiplicity == TreeReference.INDEX_TEMPLATE) {
+				templates--;
+			}
+		}
 	}
 
 	public TreeElement shallowCopy() {
+		TreeElement newNode = copyFields();
+
+		if (frozen) {
+			// the copy can be changed, so it gets a child list of its own rather than one that is read only
+			newNode.children = new Vector(children());
+		} else {
+			// the copy shares the child list, so it has to share the index as well to keep both in step
+			newNode.children = children();
+			newNode.childIndex = childIndex;
+		}
+		return newNode;
+	}
+
+	private TreeElement copyFields() {
 		TreeElement newNode = new TreeElement(name, multiplicity);
 		newNode.parent = parent;
 		newNode.repeatable = repeatable;
@@ -265,29 +533,81 @@ import java.util.Vector;
 		newNode.preloadHandler = preloadHandler;
 		newNode.preloadParams = preloadParams;
 
-		newNode.setAttributesFromSingleStringVector(getSingleStringAttributeVector());
+		// copied directly rather than through setAttribute, as filling in a copy is not a change to its structure
+		for (int i = 0; i < attributes.size(); i++) {
+			TreeElement attribute = attributes.elementAt(i);
+			TreeElement attr = constructAttributeElement(attribute.namespace == null ? "" : attribute.namespace, attribute.name);
+			if (attribute.value != null) {
+				attr.value = attribute.value.uncast();
+			}
+			attr.parent = newNode;
+			newNode.attributes.addElement(attr);
+		}
 		if (value != null) {
 			newNode.value = value.clone();
 		}
-
-		newNode.children = children;
 		return newNode;
 	}
 
+	/**
+	 * Copies of a frozen element, and copies of such copies, only copy the element itself; its children are
+	 * copied from the frozen element when the copy is first navigated. Subtrees that are never visited are
+	 * never copied.
+	 */
 	public TreeElement deepCopy(boolean includeTemplates) {
-		TreeElement newNode = shallowCopy();
+		if (lazySource != null || (frozen && children.size() > 0)) {
+			TreeElement newNode = copyFields();
+			if (lazySource != null) {
+				newNode.lazySource = lazySource;
+				newNode.lazyTemplates = lazyTemplates && includeTemplates;
+			} else {
+				newNode.lazySource = this;
+				newNode.lazyTemplates = includeTemplates;
+			}
+			return newNode;
+		}
 
-		newNode.children = new Vector();
+		TreeElement newNode = copyFields();
 		for (int i = 0; i < children.size(); i++) {
 			TreeElement child = (TreeElement) children.elementAt(i);
 			if (includeTemplates || child.getMult() != TreeReference.INDEX_TEMPLATE) {
-				newNode.addChild(child.deepCopy(includeTemplates));
+				newNode.appendCopy(child.deepCopy(includeTemplates));
 			}
 		}
 
 		return newNode;
 	}
 
+	/**
+	 * Make this element and everything below it read only. A frozen element, e.g. the blank instance of a
+	 * form, can be copied any number of times, from any thread, and the copies share its subtrees until they
+	 * are navigated.
+	 */
+	public void freeze() {
+		if (frozen) {
+			return;
+		}
+		Vector children = children();
+		getChildIndex();
+		for (int i = 0; i < children.size(); i++) {
+			((TreeElement) children.elementAt(i)).freeze();
+		}
+		for (int i = 0; i < attributes.size(); i++) {
+			attributes.elementAt(i).freeze();
+		}
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("Can't modify a frozen element: " + name);
+		}
+	}
+
 	/* ==== MODEL PROPERTIES ==== */
 
 	// factoring inheritance rules
@@ -313,6 +633,7 @@ import java.util.Vector;
 	}
 
 	public void setRequired(boolean required) {
+		checkNotFrozen();
 		if (this.required != required) {
 			this.required = required;
 			alertStateObservers(FormElementStateListener.CHANGE_REQUIRED);
@@ -324,6 +645,7 @@ import java.util.Vector;
 	}
 
 	private void setRelevant(boolean relevant, boolean inherited) {
+		checkNotFrozen();
 		boolean oldRelevancy = isRelevant();
 		if (inherited) {
 			this.relevantInherited = relevant;
@@ -332,6 +654,8 @@ import java.util.Vector;
 		}
 
 		if (isRelevant() != oldRelevancy) {
+			top().valuesVersion++;
+			Vector children = children();
 			for (int i = 0; i < children.size(); i++) {
 				((TreeElement) children.elementAt(i)).setRelevant(isRelevant(),
 						true);
@@ -349,6 +673,7 @@ import java.util.Vector;
 	}
 
 	public void setEnabled(boolean enabled, boolean inherited) {
+		checkNotFrozen();
 		boolean oldEnabled = isEnabled();
 		if (inherited) {
 			this.enabledInherited = enabled;
@@ -357,6 +682,7 @@ import java.util.Vector;
 		}
 
 		if (isEnabled() != oldEnabled) {
+			Vector children = children();
 			for (int i = 0; i < children.size(); i++) {
 				((TreeElement) children.elementAt(i)).setEnabled(isEnabled(),
 						true);
@@ -407,7 +733,7 @@ import java.util.Vector;
 	public void accept(ITreeVisitor visitor) {
 		visitor.visit(this);
 
-		Enumeration en = children.elements();
+		Enumeration en = children().elements();
 		while (en.hasMoreElements()) {
 			((TreeElement) en.nextElement()).accept(visitor);
 		}
@@ -503,12 +829,14 @@ import java.util.Vector;
 	 * 
 	 * */
 	public void setAttribute(String namespace, String name, String value) {
+		checkNotFrozen();
 
 		for (int i = attributes.size() - 1; i >= 0; i--) {
 			TreeElement attribut =  attributes.elementAt(i);
 			if (attribut.name.equals(name) && (namespace == null || namespace.equals(attribut.namespace))) {
 				if (value == null) {
 					attributes.removeElementAt(i);
+					structureChanged();
 				} else {
 					attribut.setValue(new UncastData(value));
 				}
@@ -523,6 +851,7 @@ import java.util.Vector;
 		attr.setParent(this);
 
 		attributes.addElement(attr);
+		structureChanged();
 	}
 
 	/**
@@ -556,6 +885,7 @@ import java.util.Vector;
 	 */
 	public void setAttributesFromSingleStringVector(Vector attStrings) {
 		this.attributes = new Vector(0);
+		structureChanged();
 		if (attStrings != null) {
 			for (int i = 0; i < attStrings.size(); i++) {
 				addSingleAttribute(i, attStrings);
@@ -615,10 +945,11 @@ import java.util.Vector;
 	 * (java.io.DataInputStream)
 	 */
 	public void readExternal(DataInputStream in, PrototypeFactory pf) throws IOException, DeserializationException {
-		name = ExtUtil.nullIfEmpty(ExtUtil.readString(in));
+		name = intern(ExtUtil.nullIfEmpty(ExtUtil.readString(in)));
 		multiplicity = ExtUtil.readInt(in);
 		repeatable = ExtUtil.readBool(in);
 		value = (IAnswerData) ExtUtil.read(in, new ExtWrapNullable(new ExtWrapTagged()), pf);
+		version++;
 
 		// children = ExtUtil.nullIfEmpty((Vector)ExtUtil.read(in, new
 		// ExtWrapList(TreeElement.class), pf));
@@ -634,6 +965,10 @@ import java.util.Vector;
 		// directly.
 		// 3.2 if read boolean false then create tagged element and deserialize
 		// child
+		childIndex = new ChildIndex();
+		lazySource = null;
+		frozen = false;
+		structureChanged();
 		if (!ExtUtil.readBool(in)) {
 			// 1.
 			children = null;
@@ -701,6 +1036,7 @@ import java.util.Vector;
 		// directly.
 		// 3.2 if child type != TreeElement, write boolean false, then tagged
 		// child
+		Vector children = children();
 		if (children == null) {
 			// 1.
 			ExtUtil.writeBool(out, false);
@@ -801,7 +1137,7 @@ import java.util.Vector;
 					}
 
 					this.removeChildAt(j);
-					this.children.insertElementAt(child2, i);
+					this.insertChildAt(child2, i);
 				}
 			}
 			// java i hate you so much
@@ -814,7 +1150,7 @@ import java.util.Vector;
 				    for (int k = 0; k < newChildren.size(); k++) {
 				        TreeElement newChild = child.deepCopy(true);
 				        newChild.setMult(k);
-				        this.children.insertElementAt(newChild, i + k + 1);
+				        this.insertChildAt(newChild, i + k + 1);
 				        newChild.populate((TreeElement)newChildren.elementAt(k), f);
 				    }
 				    i += newChildren.size();
@@ -863,7 +1199,7 @@ import java.util.Vector;
 				    	TreeElement template = f.getInstance().getTemplate(child.getRef());
 				        TreeElement newChild = template.deepCopy(false);
 				        newChild.setMult(k);
-				        this.children.insertElementAt(newChild, i + k + 1);
+				        this.insertChildAt(newChild, i + k + 1);
 				        newChild.populateTemplate((TreeElement)newChildren.elementAt(k), f);
 				    }
 				    i += newChildren.size();
@@ -876,23 +1212,24 @@ import java.util.Vector;
 	
 	//return the tree reference that corresponds to this tree element
 	public TreeReference getRef () {
+		int depth = 0;
 		TreeElement elem = this;
-		TreeReference ref = TreeReference.selfRef();
+		while (elem != null && elem.name != null) {
+			depth++;
+			elem = elem.parent;
+		}
 		
-		while (elem != null) {
-			TreeReference step;
-			
-			if (elem.name != null) {
-				step = TreeReference.selfRef();
-				step.add(elem.name, elem.multiplicity);
-			} else {
-				step = TreeReference.rootRef();
-			}
-						
-			ref = ref.parent(step);
+		String[] names = new String[depth];
+		int[] mults = new int[depth];
+		elem = this;
+		for (int i = depth - 1; i >= 0; i--) {
+			names[i] = elem.name;
+			mults[i] = elem.multiplicity;
 			elem = elem.parent;
 		}
-		return ref;
+		
+		// a chain that ends in the nameless root node is absolute
+		return TreeReference.of(elem == null ? 0 : TreeReference.REF_ABSOLUTE, names, mults);
 	}
 	
 	public int getDepth () {
@@ -916,10 +1253,12 @@ import java.util.Vector;
 	}
 
 	public void setPreloadHandler(String preloadHandler) {
+		checkNotFrozen();
 		this.preloadHandler = preloadHandler;
 	}
 
 	public void setConstraint(Constraint constraint) {
+		checkNotFrozen();
 		this.constraint = constraint;
 	}
 
@@ -928,6 +1267,7 @@ import java.util.Vector;
 	}
 
 	public void setPreloadParams(String preloadParams) {
+		checkNotFrozen();
 		this.preloadParams = preloadParams;
 	}
 
@@ -936,7 +1276,19 @@ import java.util.Vector;
 	}
 
 	public void setName(String name) {
-		this.name = name;
+		checkNotFrozen();
+		if (parent != null && (name == null ? this.name != null : !name.equals(this.name))) {
+			parent.invalidateChildIndex();
+		}
+		if (parent != null) {
+			structureChanged();
+		}
+		this.name = intern(name);
+	}
+
+	// names are interned so the references built from them (see getRef) share their step names
+	private static String intern(String name) {
+		return (name == null ? null : name.intern());
 	}
 
 	public int getMult() {
@@ -944,10 +1296,18 @@ import java.util.Vector;
 	}
 
 	public void setMult(int multiplicity) {
+		checkNotFrozen();
+		if (parent != null && (multiplicity == TreeReference.INDEX_TEMPLATE) != (this.multiplicity == TreeReference.INDEX_TEMPLATE)) {
+			parent.invalidateChildIndex();
+		}
+		if (parent != null) {
+			structureChanged();
+		}
 		this.multiplicity = multiplicity;
 	}
 
 	public void setParent (TreeElement parent) {
+		checkNotFrozen();
 		this.parent = parent;
 	}
 	
@@ -34,69 +34,93 @@ public class TreeReference implements Externalizable {
 	
 	public static final String NAME_WILDCARD = "*";
 	
+	private static final String[] NO_NAMES = new String[0];
+	private static final int[] NO_MULTIPLICITIES = new int[0];
+
+	private static final TreeReference ROOT = of(REF_ABSOLUTE, NO_NAMES, NO_MULTIPLICITIES);
+	private static final TreeReference SELF = of(0, NO_NAMES, NO_MULTIPLICITIES);
+
+	// references are immutable (only readExternal assigns these after construction), so they can be shared
+	// freely and used as hash keys; every operation that 'changes' a reference returns a new one
 	private int refLevel; //0 = context node, 1 = parent, 2 = grandparent ...
-	private Vector names; //Vector<String>
-	private Vector multiplicity; //Vector<Integer>
+	private String[] names; //interned
+	private int[] multiplicities;
+	private int hash;
 	
 	public static TreeReference rootRef () {
-		TreeReference root = new TreeReference();
-		root.refLevel = REF_ABSOLUTE;
-		return root;
+		return ROOT;
 	}
 	
 	public static TreeReference selfRef () {
-		TreeReference self = new TreeReference();
-		self.refLevel = 0;
-		return self;
+		return SELF;
 	}
 	
+	/**
+	 * for deserialization; equal to selfRef()
+	 */
 	public TreeReference () {
-		names = new Vector(0);
-		multiplicity = new Vector(0);		
+		this.refLevel = 0;
+		this.names = NO_NAMES;
+		this.multiplicities = NO_MULTIPLICITIES;
+	}
+	
+	public TreeReference (int refLevel, String[] names, int[] multiplicities) {
+		if (names.length != multiplicities.length) {
+			throw new IllegalArgumentException("Every step of a reference needs a name and a multiplicity");
+		}
+		this.refLevel = refLevel;
+		this.names = new String[names.length];
+		this.multiplicities = (int[]) multiplicities.clone();
+		for (int i = 0; i < names.length; i++) {
+			this.names[i] = names[i].intern();
+		}
+	}
+	
+	// takes ownership of the arrays; names must already be interned
+	static TreeReference of (int refLevel, String[] names, int[] multiplicities) {
+		TreeReference ref = new TreeReference();
+		ref.refLevel = refLevel;
+		ref.names = names;
+		ref.multiplicities = multiplicities;
+		return ref;
 	}
 	
 	public int getMultiplicity(int index) {
-		return ((Integer)multiplicity.elementAt(index)).intValue();
+		return multiplicities[index];
 	}
 	
 	public String getName(int index) {
-		return (String)names.elementAt(index);
+		return names[index];
 	}
 
 	public int getMultLast () {
-		return ((Integer)multiplicity.lastElement()).intValue();
+		return multiplicities[multiplicities.length - 1];
 	}
 	
 	public String getNameLast () {
-		return (String)names.lastElement();
+		return names[names.length - 1];
 	}
 	
-	public void setMultiplicity (int i, int mult) {
-		multiplicity.setElementAt(new Integer(mult), i);
+	/**
+	 * @return a copy of this reference with the multiplicity of step i replaced
+	 */
+	public TreeReference withMultiplicity (int i, int mult) {
+		if (multiplicities[i] == mult) {
+			return this;
+		}
+		int[] newMults = (int[]) multiplicities.clone();
+		newMults[i] = mult;
+		return of(refLevel, names, newMults);
 	}
 	
 	public int size () {
-		return names.size();
-	}
-	
-	public void add (String name, int index) {
-		names.addElement(name);
-		multiplicity.addElement(new Integer(index));
+		return names.length;
 	}
 	
 	public int getRefLevel () {
 		return refLevel;
 	}
 	
-	public void setRefLevel (int refLevel) {
-		this.refLevel = refLevel;
-	}
-	
-	public void incrementRefLevel () {
-		if (!isAbsolute()) {
-			refLevel++;
-		}
-	}
 	
 	public boolean isAbsolute () {
 		return refLevel == REF_ABSOLUTE;
@@ -114,44 +138,41 @@ public class TreeReference implements Externalizable {
 		return false;
 	}
 	
-	//return a copy of the ref
+	//references are immutable, so a copy is the reference itself
 	public TreeReference clone () {
-		TreeReference newRef = new TreeReference();
-		newRef.setRefLevel(this.refLevel);
-		for (int i = 0; i < this.size(); i++) {
-			newRef.add(this.getName(i), this.getMultiplicity(i));
-		}
-		return newRef;
+		return this;
 	}
 	
 	/*
-	 * chop the lowest level off the ref so that the ref now represents the parent of the original ref
-	 * return true if we successfully got the parent, false if there were no higher levels
+	 * return the ref to the parent of this ref, or null if there are no higher levels
 	 */
-	public boolean removeLastLevel () {
+	public TreeReference getParentRef () {
+		//TODO: level
 		int size = size();
 		if (size == 0) {
-			if (isAbsolute()) {
-				return false;
-			} else {
-				refLevel++;
-				return true;
-			}
-		} else {
-			names.removeElementAt(size - 1);
-			multiplicity.removeElementAt(size - 1);
-			return true;
+			return isAbsolute() ? null : of(refLevel + 1, names, multiplicities);
 		}
+		return truncate(size - 1);
 	}
 	
-	public TreeReference getParentRef () {
-		//TODO: level
-		TreeReference ref = this.clone();
-		if (ref.removeLastLevel()) {
-			return ref;
-		} else {
-			return null;
-		}
+	// the first n steps of this ref
+	private TreeReference truncate (int n) {
+		String[] newNames = new String[n];
+		int[] newMults = new int[n];
+		System.arraycopy(names, 0, newNames, 0, n);
+		System.arraycopy(multiplicities, 0, newMults, 0, n);
+		return of(refLevel, newNames, newMults);
+	}
+	
+	// this ref's steps appended to the first n steps of base, with the given ref level
+	private TreeReference append (int level, TreeReference base, int n) {
+		String[] newNames = new String[n + names.length];
+		int[] newMults = new int[n + names.length];
+		System.arraycopy(base.names, 0, newNames, 0, n);
+		System.arraycopy(base.multiplicities, 0, newMults, 0, n);
+		System.arraycopy(names, 0, newNames, n, names.length);
+		System.arraycopy(multiplicities, 0, newMults, n, names.length);
+		return of(level, newNames, newMults);
 	}
 	
 	//return a new reference that is this reference anchored to a passed-in parent reference
@@ -162,21 +183,16 @@ public class TreeReference implements Externalizable {
 		if (isAbsolute()) {
 			return this;
 		} else {
-			TreeReference newRef = parentRef.clone();
-
+			int level = parentRef.refLevel;
 			if (refLevel > 0) {
 				if (!parentRef.isAbsolute() && parentRef.size() == 0) {
-					parentRef.refLevel += refLevel;
+					level += refLevel;
 				} else {
 					return null;
 				}
 			}
 			
-			for (int i = 0; i < names.size(); i++) {
-				newRef.add(this.getName(i), this.getMultiplicity(i));
-			}
-
-			return newRef;			
+			return append(level, parentRef, parentRef.size());
 		}
 	}
 	
@@ -188,22 +204,15 @@ public class TreeReference implements Externalizable {
 	//  even though it's slightly icky
 	public TreeReference anchor (TreeReference contextRef) {
 		if (isAbsolute()) {
-			return this.clone();
+			return this;
 		} else if (!contextRef.isAbsolute()) {
 			return null;
 		} else {
-			TreeReference newRef = contextRef.clone();
 			int contextSize = contextRef.size();
 			if (refLevel > contextSize) {
 				return null; //tried to do '/..'
-			} else {			
-				for (int i = 0; i < refLevel; i++) {
-					newRef.removeLastLevel();
-				}
-				for (int i = 0; i < size(); i++) {
-					newRef.add(this.getName(i), this.getMultiplicity(i));
-				}
-				return newRef;
+			} else {
+				return append(REF_ABSOLUTE, contextRef, contextSize - refLevel);
 			}
 		}
 	}
@@ -215,31 +224,51 @@ public class TreeReference implements Externalizable {
 			return null;
 		
 		TreeReference newRef = anchor(contextRef);
+		String[] newNames = null;
+		int[] newMults = null;
 		
 		for (int i = 0; i < contextRef.size() && i < newRef.size(); i++) {
+			String contextName = contextRef.names[i];
+			String name = (newNames == null ? newRef.names[i] : newNames[i]);
 			
 			//If the the contextRef can provide a definition for a wildcard, do so
-			if(TreeReference.NAME_WILDCARD.equals(newRef.getName(i)) && !TreeReference.NAME_WILDCARD.equals(contextRef.getName(i))) {
-				newRef.names.setElementAt(contextRef.getName(i), i);
+			if(NAME_WILDCARD.equals(name) && !NAME_WILDCARD.equals(contextName)) {
+				if (newNames == null) {
+					newNames = (String[]) newRef.names.clone();
+				}
+				newNames[i] = contextName;
+				name = contextName;
 			}
 			
-			if (contextRef.getName(i).equals(newRef.getName(i))) {
-				newRef.setMultiplicity(i, contextRef.getMultiplicity(i));
+			if (contextName == name || contextName.equals(name)) {
+				if (newRef.multiplicities[i] != contextRef.multiplicities[i]) {
+					if (newMults == null) {
+						newMults = (int[]) newRef.multiplicities.clone();
+					}
+					newMults[i] = contextRef.multiplicities[i];
+				}
 			} else {
 				break;
 			}
 		}
 
-		return newRef;
+		if (newNames == null && newMults == null) {
+			return newRef;
+		}
+		return of(newRef.refLevel, newNames == null ? newRef.names : newNames,
+				newMults == null ? newRef.multiplicities : newMults);
 	}
 	
 	public TreeReference relativize (TreeReference parent) {
 		if (parent.isParentOf(this, false)) {
-			TreeReference relRef = selfRef();
-			for (int i = parent.size(); i < this.size(); i++) {
-				relRef.add(this.getName(i), INDEX_UNBOUND);
+			int n = this.size() - parent.size();
+			String[] relNames = new String[n];
+			int[] relMults = new int[n];
+			System.arraycopy(names, parent.size(), relNames, 0, n);
+			for (int i = 0; i < n; i++) {
+				relMults[i] = INDEX_UNBOUND;
 			}
-			return relRef;
+			return of(0, relNames, relMults);
 		} else {
 			return null;
 		}
@@ -247,11 +276,11 @@ public class TreeReference implements Externalizable {
 	
 	//turn unambiguous ref into a generic ref
 	public TreeReference genericize () {
-		TreeReference genericRef = clone();
-		for (int i = 0; i < genericRef.size(); i++) {
-			genericRef.setMultiplicity(i, INDEX_UNBOUND);
+		int[] genericMults = new int[size()];
+		for (int i = 0; i < genericMults.length; i++) {
+			genericMults[i] = INDEX_UNBOUND;
 		}
-		return genericRef;
+		return of(refLevel, names, genericMults);
 	}
 	
 	//returns true if 'this' is parent of 'child'
@@ -263,12 +292,12 @@ public class TreeReference implements Externalizable {
 			return false;
 		
 		for (int i = 0; i < size(); i++) {
-			if (!this.getName(i).equals(child.getName(i))) {
+			if (names[i] != child.names[i] && !names[i].equals(child.names[i])) {
 				return false;
 			}
 			
-			int parMult = this.getMultiplicity(i);
-			int childMult = child.getMultiplicity(i);
+			int parMult = multiplicities[i];
+			int childMult = child.multiplicities[i];
 			if (parMult != INDEX_UNBOUND && parMult != childMult && !(i == 0 && parMult == 0 && childMult == INDEX_UNBOUND)) {
 				return false;
 			}
@@ -286,9 +315,14 @@ public class TreeReference implements Externalizable {
 	 */
 	public TreeReference extendRef (String name, int mult) {
 		//TODO: Shouldn't work for this if this is an attribute ref;
-		TreeReference childRef = this.clone();
-		childRef.add(name, mult);
-		return childRef;
+		int size = size();
+		String[] childNames = new String[size + 1];
+		int[] childMults = new int[size + 1];
+		System.arraycopy(names, 0, childNames, 0, size);
+		System.arraycopy(multiplicities, 0, childMults, 0, size);
+		childNames[size] = name.intern();
+		childMults[size] = mult;
+		return of(refLevel, childNames, childMults);
 	}
 	
 	public boolean equals (Object o) {
@@ -297,14 +331,14 @@ public class TreeReference implements Externalizable {
 		} else if (o instanceof TreeReference) {
 			TreeReference ref = (TreeReference)o;
 			
-			if (this.refLevel == ref.refLevel && this.size() == ref.size()) {
+			if (this.refLevel == ref.refLevel && this.size() == ref.size() && this.hashCode() == ref.hashCode()) {
 				for (int i = 0; i < this.size(); i++) {
-					String nameA = this.getName(i);
-					String nameB = ref.getName(i);
-					int multA = this.getMultiplicity(i);
-					int multB = ref.getMultiplicity(i);
+					String nameA = this.names[i];
+					String nameB = ref.names[i];
+					int multA = this.multiplicities[i];
+					int multB = ref.multiplicities[i];
 					
-					if (!nameA.equals(nameB)) {
+					if (nameA != nameB && !nameA.equals(nameB)) {
 						return false;
 					} else if (multA != multB) {
 						if (i == 0 && (multA == 0 || multA == INDEX_UNBOUND) && (multB == 0 || multB == INDEX_UNBOUND)) {
@@ -324,21 +358,23 @@ public class TreeReference implements Externalizable {
 	}
 	
 	public int hashCode () {
-		int hash = (new Integer(refLevel)).hashCode();
-		for (int i = 0; i < size(); i++) {
-			//NOTE(ctsims): It looks like this is only using Integer to
-			//get the hashcode method, but that method
-			//is just returning the int value, I think, so
-			//this should potentially just be replaced by
-			//an int.
-			Integer mult = new Integer(getMultiplicity(i));
-			if (i == 0 && mult.intValue() == INDEX_UNBOUND)
-				mult = new Integer(0);
-			
-			hash ^= getName(i).hashCode();
-			hash ^= mult.hashCode();
+		int h = hash;
+		if (h == 0) {
+			h = refLevel;
+			for (int i = 0; i < names.length; i++) {
+				int mult = multiplicities[i];
+				if (i == 0 && mult == INDEX_UNBOUND)
+					mult = 0; // /data and /data[0] have to hash alike
+				
+				h = 31 * h + names[i].hashCode();
+				h = 31 * h + mult;
+			}
+			if (h == 0) {
+				h = 1;
+			}
+			hash = h;
 		}
-		return hash;
+		return h;
 	}
 	
 	public String toString () {
@@ -383,13 +419,29 @@ public class TreeReference implements Externalizable {
 	public void readExternal(DataInputStream in, PrototypeFactory pf)
 			throws IOException, DeserializationException {
 		refLevel = ExtUtil.readInt(in);
-		names = (Vector) ExtUtil.read(in, new ExtWrapList(String.class), pf);
-		multiplicity = (Vector) ExtUtil.read(in, new ExtWrapList(Integer.class), pf);
+		Vector nameList = (Vector) ExtUtil.read(in, new ExtWrapList(String.class), pf);
+		Vector multList = (Vector) ExtUtil.read(in, new ExtWrapList(Integer.class), pf);
+		
+		names = new String[nameList.size()];
+		multiplicities = new int[multList.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = ((String) nameList.elementAt(i)).intern();
+			multiplicities[i] = ((Integer) multList.elementAt(i)).intValue();
+		}
+		hash = 0;
 	}
 
 	public void writeExternal(DataOutputStream out) throws IOException {
+		// same layout as when the steps were kept in two Vectors
+		Vector nameList = new Vector(names.length);
+		Vector multList = new Vector(multiplicities.length);
+		for (int i = 0; i < names.length; i++) {
+			nameList.addElement(names[i]);
+			multList.addElement(new Integer(multiplicities[i]));
+		}
+		
 		ExtUtil.writeNumeric(out, refLevel);
-		ExtUtil.write(out, new ExtWrapList(names));
-		ExtUtil.write(out, new ExtWrapList(multiplicity));
+		ExtUtil.write(out, new ExtWrapList(nameList));
+		ExtUtil.write(out, new ExtWrapList(multList));
 	}
 }
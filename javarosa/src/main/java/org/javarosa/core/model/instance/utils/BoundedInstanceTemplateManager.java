@@ -0,0 +1,116 @@
+package org.javarosa.core.model.instance.utils;
+
+import org.javarosa.core.model.instance.FormInstance;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Instance template manager for servers that hold many forms and serve many requests at once. Templates are loaded
+ * on first request and kept in a least recently used cache of a bounded number of forms, which is safe to use from
+ * any number of threads.
+ * <p/>
+ * The cached templates are frozen, and each request gets its own clone of one. Cloning a frozen instance only copies
+ * the parts of the tree that are navigated, so handing out clones is cheap, and nothing a caller does to its clone
+ * can reach the cached template.
+ */
+public class BoundedInstanceTemplateManager implements InstanceTemplateManager {
+    public static final int DEFAULT_SIZE = 64;
+
+    private final Map<Integer, FormInstance> templates;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public BoundedInstanceTemplateManager() {
+        this(DEFAULT_SIZE);
+    }
+
+    public BoundedInstanceTemplateManager(final int maxSize) {
+        templates = new LinkedHashMap<Integer, FormInstance>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, FormInstance> eldest) {
+                if (size() > maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return a clone of the template instance for the given form type, loading the template if it is not cached.
+     */
+    public FormInstance getTemplateInstance(int formID) {
+        Integer key = new Integer(formID);
+        FormInstance template;
+        synchronized (templates) {
+            template = templates.get(key);
+            if (template != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (template == null) {
+            // loaded outside the lock; a race loads the same template twice at worst
+            template = loadTemplate(formID);
+            if (template == null) {
+                throw new RuntimeException("no formdef found for form id [" + formID + "]");
+            }
+            template.freeze();
+            synchronized (templates) {
+                templates.put(key, template);
+            }
+        }
+        return template.clone();
+    }
+
+    /**
+     * Fetch the template instance for a form type that is not cached. It must not be used anywhere else, as it is
+     * frozen once cached.
+     */
+    protected FormInstance loadTemplate(int formID) {
+        return CompactInstanceWrapper.loadTemplateInstance(formID);
+    }
+
+    /**
+     * Remove a form type from the cache, e.g. when its form has been replaced.
+     */
+    public void remove(int formID) {
+        synchronized (templates) {
+            templates.remove(new Integer(formID));
+        }
+    }
+
+    public void clearCache() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    public long getHitCount() {
+        synchronized (templates) {
+            return hits;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (templates) {
+            return misses;
+        }
+    }
+
+    public long getEvictionCount() {
+        synchronized (templates) {
+            return evictions;
+        }
+    }
+}
@@ -18,6 +18,8 @@ import java.util.Vector;
  * set the allowed form types, such that any attempt to deserialize a form of a different type will throw
  * an error, instead of caching the new instance template.
  * 
+ * For a server holding many forms, or serving more than one thread, see BoundedInstanceTemplateManager.
+ * 
  * @author Drew Roos
  *
  */
@@ -0,0 +1,400 @@
+package org.javarosa.core.model.utils;
+
+import java.text.ParsePosition;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.Vector;
+
+/**
+ * Parses and formats the fixed date layouts that forms, payloads and sync requests use, without SimpleDateFormat:
+ * <ul>
+ * <li>dates, yyyy-MM-dd</li>
+ * <li>day first dates, dd-MM-yyyy or dd/MM/yyyy</li>
+ * <li>ISO 8601 date and times, yyyy-MM-ddTHH:mm[:ss[.SSS]] followed by Z, +hh:mm, +hhmm, +hh or nothing</li>
+ * </ul>
+ * Dates and date and times without an offset are in the default time zone. Numbers may have fewer digits than the
+ * layout shows, as SimpleDateFormat allows, but fields out of range are rejected rather than rolled over.
+ * <p/>
+ * All methods are safe to call from any thread. Fields are converted to times through calendars taken from a small
+ * pool shared by all threads, so calendars and formats are not created per call, and no thread holds on to one.
+ */
+public class DateCodec {
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private static final int MAX_POOLED_CALENDARS = 8;
+
+    private static final Vector<Calendars> CALENDARS = new Vector<Calendars>();
+
+    private DateCodec() {
+    }
+
+    /* === PARSING === */
+
+    /**
+     * @return the date at midnight, or null if the text is not a yyyy-MM-dd date
+     */
+    public static Date parseDate(CharSequence text) {
+        ParsePosition pos = new ParsePosition(0);
+        Date date = parseDate(text, pos);
+        return date != null && pos.getIndex() == text.length() ? date : null;
+    }
+
+    /**
+     * Parses a yyyy-MM-dd date at the parse position, ignoring anything after it, as DateFormat.parse does.
+     *
+     * @return the date at midnight, or null if there is no date at the position; the position is then left where it
+     * was and its error index set
+     */
+    public static Date parseDate(CharSequence text, ParsePosition pos) {
+        Calendars calendars = takeCalendars();
+        try {
+            int i = parseYearFirst(text, pos.getIndex(), calendars.fields);
+            if (i < 0) {
+                pos.setErrorIndex(-i - 1);
+                return null;
+            }
+            pos.setIndex(i);
+            return toDate(calendars, false, 0);
+        } finally {
+            returnCalendars(calendars);
+        }
+    }
+
+    /**
+     * Parses a dd-MM-yyyy or dd/MM/yyyy date at the parse position, ignoring anything after it, as DateFormat.parse
+     * does. Both separators must be the same.
+     *
+     * @return the date at midnight, or null if there is no such date at the position; the position is then left where
+     * it was and its error index set
+     */
+    public static Date parseDayMonthYear(CharSequence text, ParsePosition pos) {
+        Calendars calendars = takeCalendars();
+        try {
+            Fields f = calendars.fields;
+            int start = pos.getIndex();
+            int i = start;
+            f.clear();
+            if ((i = parseNumber(text, i, f, Fields.DAY)) >= 0 && (i = expectSeparator(text, i)) >= 0) {
+                char separator = text.charAt(i - 1);
+                if ((i = parseNumber(text, i, f, Fields.MONTH)) >= 0 && (i = expect(text, i, separator)) >= 0
+                        && (i = parseNumber(text, i, f, Fields.YEAR)) >= 0 && f.checkDate()) {
+                    pos.setIndex(i);
+                    return toDate(calendars, false, 0);
+                }
+            }
+            pos.setErrorIndex(i < 0 ? -i - 1 : start);
+            return null;
+        } finally {
+            returnCalendars(calendars);
+        }
+    }
+
+    /**
+     * Parses an ISO 8601 date and time, or a date on its own, which is taken to be at midnight.
+     *
+     * @return the time, or null if the whole text is not a date and time
+     */
+    public static Date parseDateTime(CharSequence text) {
+        Calendars calendars = takeCalendars();
+        try {
+            return parseDateTime(text, calendars);
+        } finally {
+            returnCalendars(calendars);
+        }
+    }
+
+    private static Date parseDateTime(CharSequence text, Calendars calendars) {
+        Fields f = calendars.fields;
+        int length = text.length();
+        int i = parseYearFirst(text, 0, f);
+        if (i < 0) {
+            return null;
+        }
+        if (i == length) {
+            return toDate(calendars, false, 0);
+        }
+        if (text.charAt(i) != 'T') {
+            return null;
+        }
+        if ((i = parseNumber(text, i + 1, f, Fields.HOUR)) < 0 || (i = expect(text, i, ':')) < 0
+                || (i = parseNumber(text, i, f, Fields.MINUTE)) < 0) {
+            return null;
+        }
+        if (i < length && text.charAt(i) == ':') {
+            if ((i = parseNumber(text, i + 1, f, Fields.SECOND)) < 0) {
+                return null;
+            }
+            if (i < length && text.charAt(i) == '.') {
+                i = parseFraction(text, i + 1, f);
+                if (i < 0) {
+                    return null;
+                }
+            }
+        }
+        if (!f.checkTime()) {
+            return null;
+        }
+        if (i == length) {
+            return toDate(calendars, false, 0);
+        }
+
+        // the offset from UTC
+        char c = text.charAt(i);
+        if (c == 'Z') {
+            return i + 1 == length ? toDate(calendars, true, 0) : null;
+        }
+        if (c != '+' && c != '-') {
+            return null;
+        }
+        // hh, hhmm or hh:mm
+        int start = i + 1;
+        int n = length - start;
+        if (n != 2 && n != 4 && !(n == 5 && text.charAt(start + 2) == ':')) {
+            return null;
+        }
+        int hours = twoDigits(text, start);
+        int minutes = n == 2 ? 0 : twoDigits(text, length - 2);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+            return null;
+        }
+        int offset = (hours * 60 + minutes) * 60 * 1000;
+        return toDate(calendars, true, c == '+' ? offset : -offset);
+    }
+
+    /**
+     * yyyy-MM-dd
+     *
+     * @return the index after the date, or -1 - the index at which it fails
+     */
+    private static int parseYearFirst(CharSequence text, int i, Fields f) {
+        int start = i;
+        f.clear();
+        if ((i = parseNumber(text, i, f, Fields.YEAR)) < 0 || (i = expect(text, i, '-')) < 0
+                || (i = parseNumber(text, i, f, Fields.MONTH)) < 0 || (i = expect(text, i, '-')) < 0
+                || (i = parseNumber(text, i, f, Fields.DAY)) < 0) {
+            return i;
+        }
+        return f.checkDate() ? i : -1 - start;
+    }
+
+    private static int parseNumber(CharSequence text, int i, Fields f, int field) {
+        int value = 0;
+        int start = i;
+        // nine digits can't overflow
+        while (i < text.length() && i - start < 9) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            i++;
+        }
+        if (i == start) {
+            return -1 - start;
+        }
+        f.values[field] = value;
+        return i;
+    }
+
+    /**
+     * Fractions of a second, to the millisecond; further digits are dropped.
+     */
+    private static int parseFraction(CharSequence text, int i, Fields f) {
+        int start = i;
+        int millis = 0;
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (i - start < 3) {
+                millis = millis * 10 + (c - '0');
+            }
+        }
+        if (i == start) {
+            return -1 - start;
+        }
+        for (int digits = i - start; digits < 3; digits++) {
+            millis *= 10;
+        }
+        f.values[Fields.MILLIS] = millis;
+        return i;
+    }
+
+    private static int twoDigits(CharSequence text, int i) {
+        char tens = text.charAt(i);
+        char units = text.charAt(i + 1);
+        if (tens < '0' || tens > '9' || units < '0' || units > '9') {
+            return -1;
+        }
+        return (tens - '0') * 10 + (units - '0');
+    }
+
+    private static int expect(CharSequence text, int i, char c) {
+        return i < text.length() && text.charAt(i) == c ? i + 1 : -1 - i;
+    }
+
+    private static int expectSeparator(CharSequence text, int i) {
+        return i < text.length() && (text.charAt(i) == '-' || text.charAt(i) == '/') ? i + 1 : -1 - i;
+    }
+
+    /**
+     * @param utc whether the fields are at the given offset from UTC, rather than in the default time zone
+     */
+    private static Date toDate(Calendars calendars, boolean utc, int offset) {
+        Fields f = calendars.fields;
+        Calendar c = utc ? calendars.utc : calendars.local();
+        c.clear();
+        c.set(f.values[Fields.YEAR], f.values[Fields.MONTH] - 1, f.values[Fields.DAY],
+                f.values[Fields.HOUR], f.values[Fields.MINUTE], f.values[Fields.SECOND]);
+        c.set(Calendar.MILLISECOND, f.values[Fields.MILLIS]);
+        return new Date(c.getTimeInMillis() - offset);
+    }
+
+    /* === FORMATTING === */
+
+    /**
+     * @return yyyy-MM-dd, in the default time zone
+     */
+    public static String formatDate(Date date) {
+        Calendars calendars = takeCalendars();
+        try {
+            StringBuilder sb = new StringBuilder(10);
+            appendYearFirst(sb, calendars.local(date));
+            return sb.toString();
+        } finally {
+            returnCalendars(calendars);
+        }
+    }
+
+    /**
+     * @return dd-MM-yyyy, in the default time zone
+     */
+    public static String formatDayMonthYear(Date date) {
+        Calendars calendars = takeCalendars();
+        try {
+            Calendar c = calendars.local(date);
+            StringBuilder sb = new StringBuilder(10);
+            pad(sb, c.get(Calendar.DAY_OF_MONTH), 2).append('-');
+            pad(sb, c.get(Calendar.MONTH) + 1, 2).append('-');
+            pad(sb, c.get(Calendar.YEAR), 4);
+            return sb.toString();
+        } finally {
+            returnCalendars(calendars);
+        }
+    }
+
+    /**
+     * @return yyyy-MM-ddTHH:mm:ss.SSS+hh:mm, in the default time zone and with its offset from UTC
+     */
+    public static String formatDateTime(Date date) {
+        Calendars calendars = takeCalendars();
+        try {
+            Calendar c = calendars.local(date);
+            StringBuilder sb = new StringBuilder(29);
+            appendYearFirst(sb, c);
+            sb.append('T');
+            pad(sb, c.get(Calendar.HOUR_OF_DAY), 2).append(':');
+            pad(sb, c.get(Calendar.MINUTE), 2).append(':');
+            pad(sb, c.get(Calendar.SECOND), 2).append('.');
+            pad(sb, c.get(Calendar.MILLISECOND), 3);
+
+            int offset = (c.get(Calendar.ZONE_OFFSET) + c.get(Calendar.DST_OFFSET)) / 60000;
+            sb.append(offset < 0 ? '-' : '+');
+            offset = Math.abs(offset);
+            pad(sb, offset / 60, 2).append(':');
+            pad(sb, offset % 60, 2);
+            return sb.toString();
+        } finally {
+            returnCalendars(calendars);
+        }
+    }
+
+    private static void appendYearFirst(StringBuilder sb, Calendar c) {
+        pad(sb, c.get(Calendar.YEAR), 4).append('-');
+        pad(sb, c.get(Calendar.MONTH) + 1, 2).append('-');
+        pad(sb, c.get(Calendar.DAY_OF_MONTH), 2);
+    }
+
+    private static StringBuilder pad(StringBuilder sb, int n, int digits) {
+        for (int limit = 10; digits > 1; digits--, limit *= 10) {
+            if (n < limit) {
+                sb.append('0');
+            }
+        }
+        return sb.append(n);
+    }
+
+    private static Calendars takeCalendars() {
+        synchronized (CALENDARS) {
+            if (!CALENDARS.isEmpty()) {
+                return CALENDARS.remove(CALENDARS.size() - 1);
+            }
+        }
+        return new Calendars();
+    }
+
+    private static void returnCalendars(Calendars calendars) {
+        synchronized (CALENDARS) {
+            if (CALENDARS.size() < MAX_POOLED_CALENDARS) {
+                CALENDARS.addElement(calendars);
+            }
+        }
+    }
+
+    /**
+     * Fields being parsed.
+     */
+    private static class Fields {
+        static final int YEAR = 0;
+        static final int MONTH = 1;
+        static final int DAY = 2;
+        static final int HOUR = 3;
+        static final int MINUTE = 4;
+        static final int SECOND = 5;
+        static final int MILLIS = 6;
+
+        final int[] values = new int[7];
+
+        void clear() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = 0;
+            }
+        }
+
+        boolean checkDate() {
+            int month = values[MONTH];
+            return month >= 1 && month <= 12 && values[DAY] >= 1
+                    && values[DAY] <= DateUtils.daysInMonth(month - 1, values[YEAR]);
+        }
+
+        boolean checkTime() {
+            return values[HOUR] <= 23 && values[MINUTE] <= 59 && values[SECOND] <= 59;
+        }
+    }
+
+    private static class Calendars {
+        final Fields fields = new Fields();
+        final GregorianCalendar utc = new GregorianCalendar(UTC);
+        private final GregorianCalendar local = new GregorianCalendar();
+
+        /**
+         * The calendar in the default time zone, which may have been changed since it was last used.
+         */
+        Calendar local() {
+            TimeZone zone = TimeZone.getDefault();
+            if (!zone.equals(local.getTimeZone())) {
+                local.setTimeZone(zone);
+            }
+            return local;
+        }
+
+        Calendar local(Date date) {
+            Calendar c = local();
+            c.setTime(date);
+            return c;
+        }
+    }
+}
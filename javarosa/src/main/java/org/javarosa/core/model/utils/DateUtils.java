@@ -149,6 +149,9 @@ public class DateUtils {
 	}
 	
 	public static String formatDate (Date d, int format) {
+		if (d != null && format == FORMAT_ISO8601) {
+			return DateCodec.formatDate(d);
+		}
 		return (d == null ? "" :formatDate(getFields(d, format == FORMAT_TIMESTAMP_HTTP ? "UTC" : null), format));
 	}
 	
@@ -304,6 +307,12 @@ public class DateUtils {
 	/* ==== PARSING DATES/TIMES FROM STANDARD STRINGS ==== */
 	
 	public static Date parseDateTime (String str) {
+		//the usual layouts don't need the general parse below
+		Date parsed = DateCodec.parseDateTime(str);
+		if (parsed != null) {
+			return parsed;
+		}
+
 		DateFields fields = new DateFields();
 		int i = str.indexOf("T");
 		if (i != -1) {
@@ -319,6 +328,11 @@ public class DateUtils {
 	}
 	
 	public static Date parseDate (String str) {
+		Date parsed = DateCodec.parseDate(str);
+		if (parsed != null) {
+			return parsed;
+		}
+
 		DateFields fields = new DateFields();
 		if (!parseDate(str, fields)) {
 			return null;
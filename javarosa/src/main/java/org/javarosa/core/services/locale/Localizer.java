@@ -40,6 +40,8 @@ public class Localizer implements Externalizable {
 	private Vector locales; /* Vector<String> */
 	private OrderedHashtable localeResources; /* String -> Vector<LocaleDataSource> */
 	private OrderedHashtable currentLocaleData; /* Hashtable{ String -> String } */
+	private Hashtable localeData; /* String -> OrderedHashtable{ String -> String }; merged tables, built on first use */
+	private Hashtable textIDs; /* String -> String; one instance of each text ID, shared by the tables of all locales */
 	private String defaultLocale;
 	private String currentLocale;
 	private boolean fallbackDefaultLocale;
@@ -64,6 +66,8 @@ public class Localizer implements Externalizable {
 	public Localizer (boolean fallbackDefaultLocale, boolean fallbackDefaultForm) {
 		localeResources = new OrderedHashtable();
 		currentLocaleData = new OrderedHashtable();
+		localeData = new Hashtable();
+		textIDs = new Hashtable();
 		locales = new Vector();
 		defaultLocale = null;
 		currentLocale = null;
@@ -205,6 +209,8 @@ public class Localizer implements Externalizable {
 			throw new UnregisteredLocaleException("Attempted to set default to a locale that is not defined");
 
 		this.defaultLocale = defaultLocale;
+		//with default locale fallback, every table is merged over the default locale's
+		clearLocaleData();
 	}
 
 	/**
@@ -247,10 +253,38 @@ public class Localizer implements Externalizable {
 	private void loadTable(OrderedHashtable destination, OrderedHashtable source) {
 		for(Enumeration en = source.keys(); en.hasMoreElements(); ) {
 			String key = (String)en.nextElement();
-			destination.put(key, (String)source.get(key));
+			destination.put(textID(key), (String)source.get(key));
 		}
 	}
 
+	/**
+	 * The shared instance of a text ID, so that the tables of all locales hold each ID once.
+	 */
+	private String textID(String key) {
+		String shared = (String)textIDs.get(key);
+		if (shared == null) {
+			textIDs.put(key, key);
+			shared = key;
+		}
+		return shared;
+	}
+
+	/**
+	 * Drops the merged tables of a locale, or of all locales if it is the default one, since the others are
+	 * merged over it. They are rebuilt when next used.
+	 */
+	private void clearLocaleData(String locale) {
+		if (locale.equals(defaultLocale)) {
+			clearLocaleData();
+		} else {
+			localeData.remove(locale);
+		}
+	}
+
+	private void clearLocaleData() {
+		localeData.clear();
+	}
+
 	/* === MANAGING LOCALE DATA (TEXT MAPPINGS) === */
 
 	/**
@@ -274,6 +308,7 @@ public class Localizer implements Externalizable {
 		}
 		resources.addElement(resource);
 		localeResources.put(locale, resources);
+		clearLocaleData(locale);
 
 		if(locale.equals(currentLocale)) {
 			loadCurrentLocaleResources();
@@ -281,16 +316,30 @@ public class Localizer implements Externalizable {
 	}
 
 	/**
-	 * Get the set of mappings for a locale.
+	 * Get the set of mappings for a locale. The mappings are merged from the locale's resources (and the default
+	 * locale's, with default locale fallback) the first time they are needed, and kept until a resource is
+	 * registered or the default locale changes. Changes made to a registered resource after that are not seen
+	 * until then.
 	 *
 	 * @param locale Locale
-	 * @returns Hashtable representing text mappings for this locale. Returns null if locale not defined or null.
+	 * @returns Hashtable representing text mappings for this locale, shared with this Localizer; must not be
+	 * modified. Returns null if locale not defined or null.
 	 */
 	public OrderedHashtable getLocaleData (String locale) {
 		if(locale == null || !this.locales.contains(locale)) {
 			return null;
 		}
 
+		OrderedHashtable data = (OrderedHashtable)localeData.get(locale);
+		if (data == null) {
+			data = buildLocaleData(locale);
+			localeData.put(locale, data);
+		}
+		return data;
+	}
+
+	private OrderedHashtable buildLocaleData (String locale) {
+
 		//It's very important that any default locale contain the appropriate strings to localize the interface
 		//for any possible language. As such, we'll keep around a table with only the default locale keys to
 		//ensure that there are no localizations which are only present in another locale, which causes ugly
@@ -397,6 +446,7 @@ public class Localizer implements Externalizable {
 		boolean removed = hasLocale(locale);
 		locales.removeElement(locale);
 		localeResources.remove(locale);
+		clearLocaleData(locale);
 
 		if (locale.equals(defaultLocale))
 			defaultLocale = null;
@@ -507,9 +557,8 @@ public class Localizer implements Externalizable {
 	/**
 	 * Get text for locale and exact text ID only, not using any fallbacks.
 	 *
-	 * NOTE: This call will only return the full compliment of available strings if and
-	 * only if the requested locale is current. Otherwise it will only retrieve strings
-	 * declared at runtime.
+	 * Lookups in a locale other than the current one use its merged table, which is built the
+	 * first time it is needed; see getLocaleData(String).
 	 *
 	 * @param locale Locale. Must be defined and not null.
 	 * @param textID Text handle (text ID appended with optional text form). Must not be null.
@@ -667,6 +716,7 @@ public class Localizer implements Externalizable {
 		fallbackDefaultLocale = ExtUtil.readBool(dis);
 		fallbackDefaultForm = ExtUtil.readBool(dis);
 		localeResources = (OrderedHashtable) ExtUtil.read(dis, new ExtWrapMap(String.class, new ExtWrapListPoly(), true), pf);;
+		clearLocaleData();
 		locales = (Vector) ExtUtil.read(dis, new ExtWrapList(String.class));
 		setDefaultLocale((String) ExtUtil.read(dis, new ExtWrapNullable(String.class), pf));
 		String currentLocale = (String) ExtUtil.read(dis, new ExtWrapNullable(String.class), pf);
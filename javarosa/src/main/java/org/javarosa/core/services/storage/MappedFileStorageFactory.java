@@ -0,0 +1,24 @@
+package org.javarosa.core.services.storage;
+
+import java.io.File;
+
+/**
+ * Creates a {@link MappedFileStorageUtility} for each storage, in a directory named after it under the root directory.
+ */
+public class MappedFileStorageFactory implements IStorageFactory {
+    private final File root;
+    private final int segmentSize;
+
+    public MappedFileStorageFactory(File root) {
+        this(root, MappedFileStorageUtility.DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedFileStorageFactory(File root, int segmentSize) {
+        this.root = root;
+        this.segmentSize = segmentSize;
+    }
+
+    public IStorageUtility newStorage(String name, Class type) {
+        return new MappedFileStorageUtility(new File(root, name), type, segmentSize);
+    }
+}
@@ -0,0 +1,745 @@
+package org.javarosa.core.services.storage;
+
+import org.javarosa.core.util.InvalidIndexException;
+import org.javarosa.core.util.externalizable.DeserializationException;
+import org.javarosa.core.util.externalizable.ExtUtil;
+import org.javarosa.core.util.externalizable.Externalizable;
+import org.javarosa.core.util.externalizable.PrototypeFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.NoSuchElementException;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * A file backed storage utility for running on a server. Records are appended to segment files in a directory of
+ * their own and read back through memory mapped buffers. Updating or removing a record appends its new version or a
+ * removal marker, and where the current version of each record is kept is indexed in memory; the index is rebuilt
+ * from the segments when the storage is opened. The metadata of records that are IMetaData is indexed in memory too.
+ * <p/>
+ * A segment is closed once it reaches the segment size and a new one is started. When most of a closed segment is
+ * taken up by superseded records, it is compacted in the background: its current records are copied to the end of
+ * the storage and the file is deleted. repack() compacts every segment with superseded records straight away.
+ * <p/>
+ * Every write is forced to disk before it returns. Each record carries a checksum, and a record that was only partly
+ * written when the process died, or that does not match its checksum, is dropped with everything after it in its
+ * segment when the storage is opened.
+ */
+public class MappedFileStorageUtility implements IStorageUtilityIndexed {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    /* every record starts with its id, the length of its data, which is REMOVED for a removal marker, and the CRC32 of
+       the id, the length and the data */
+    private static final int HEADER_SIZE = 12;
+    private static final int REMOVED = -1;
+    /* segments are mapped a whole number of chunks at a time, as records are appended */
+    static final int MAP_CHUNK_SIZE = 1024 * 1024;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "storage-compactor");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final File directory;
+    private final Class type;
+    private final int segmentSize;
+
+    private final Vector<Segment> segments = new Vector<Segment>();
+    private final Hashtable<Integer, Location> index = new Hashtable<Integer, Location>();
+    /* field -> value -> ids of the records with that value */
+    private final Hashtable<String, Hashtable<Object, Vector<Integer>>> metaDataIndex = new Hashtable<String, Hashtable<Object, Vector<Integer>>>();
+    private final Hashtable<Integer, Hashtable<String, Object>> recordMetaData = new Hashtable<Integer, Hashtable<String, Object>>();
+    private int nextID;
+    private int modifications;
+    private boolean compactionScheduled;
+    private boolean closed;
+
+    /**
+     * Opens the storage in the given directory, creating it if it does not exist.
+     *
+     * @param type the class of the stored records
+     */
+    public MappedFileStorageUtility(File directory, Class type) {
+        this(directory, type, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedFileStorageUtility(File directory, Class type, int segmentSize) {
+        this.directory = directory;
+        this.type = type;
+        this.segmentSize = segmentSize;
+        open();
+    }
+
+    private void open() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new RuntimeException("Unable to create storage directory " + directory);
+        }
+        nextID = 1;
+        closed = false;
+        if (IMetaData.class.isAssignableFrom(type)) {
+            String[] fields = ((IMetaData) PrototypeFactory.getInstance(type)).getMetaDataFields();
+            for (int i = 0; i < fields.length; i++) {
+                metaDataIndex.put(fields[i], new Hashtable<Object, Vector<Integer>>());
+            }
+        }
+
+        try {
+            int[] numbers = segmentNumbers();
+            for (int i = 0; i < numbers.length; i++) {
+                Segment segment = new Segment(numbers[i]);
+                segments.addElement(segment);
+                scan(segment);
+            }
+            if (segments.isEmpty()) {
+                segments.addElement(new Segment(0));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to open storage " + directory + ": " + e.getMessage());
+        }
+
+        if (!metaDataIndex.isEmpty()) {
+            for (Enumeration<Integer> en = index.keys(); en.hasMoreElements(); ) {
+                int id = en.nextElement().intValue();
+                indexMetaData(id, read(id));
+            }
+        }
+    }
+
+    private int[] segmentNumbers() {
+        String[] names = directory.list();
+        int count = 0;
+        int[] numbers = new int[names == null ? 0 : names.length];
+        for (int i = 0; i < numbers.length; i++) {
+            if (names[i].startsWith(SEGMENT_PREFIX) && names[i].endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    numbers[count] = Integer.parseInt(names[i].substring(SEGMENT_PREFIX.length(), names[i].length() - SEGMENT_SUFFIX.length()));
+                    count++;
+                } catch (NumberFormatException e) {
+                    //not one of ours
+                }
+            }
+        }
+        int[] segmentNumbers = new int[count];
+        System.arraycopy(numbers, 0, segmentNumbers, 0, count);
+        Arrays.sort(segmentNumbers);
+        return segmentNumbers;
+    }
+
+    /**
+     * Reads the records of a segment into the index, truncating it at the first record that was not written in full.
+     */
+    private void scan(Segment segment) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int offset = 0;
+        while (offset < segment.size) {
+            if (segment.size - offset < HEADER_SIZE) {
+                segment.truncate(offset);
+                break;
+            }
+            segment.read(offset, header);
+            ByteBuffer fields = ByteBuffer.wrap(header);
+            int id = fields.getInt(0);
+            int length = fields.getInt(4);
+            if (length != REMOVED && (length < 0 || length > segment.size - offset - HEADER_SIZE)) {
+                segment.truncate(offset);
+                break;
+            }
+            byte[] data = new byte[length == REMOVED ? 0 : length];
+            segment.read(offset + HEADER_SIZE, data);
+            if (fields.getInt(8) != checksum(header, data)) {
+                // torn by a crash, or overwritten
+                segment.truncate(offset);
+                break;
+            }
+
+            if (length == REMOVED) {
+                setLocation(id, null);
+                offset += HEADER_SIZE;
+            } else {
+                setLocation(id, new Location(segment, offset, length));
+                offset += HEADER_SIZE + length;
+            }
+            nextID = Math.max(nextID, id + 1);
+        }
+    }
+
+    /**
+     * The CRC32 of the id and length in a record header and of the record data.
+     */
+    private static int checksum(byte[] header, byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(header, 0, 8);
+        crc.update(data, 0, data.length);
+        return (int) crc.getValue();
+    }
+
+    /* === READING === */
+
+    public synchronized Externalizable read(int id) {
+        byte[] data = readBytes(id);
+        if (data == null) {
+            return null;
+        }
+        try {
+            return (Externalizable) ExtUtil.deserialize(data, type);
+        } catch (DeserializationException e) {
+            throw new RuntimeException("Unable to read record " + id + " from storage " + directory + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized byte[] readBytes(int id) {
+        Location location = index.get(new Integer(id));
+        return location == null ? null : bytes(location);
+    }
+
+    private byte[] bytes(Location location) {
+        checkOpen();
+        byte[] data = new byte[location.length];
+        try {
+            location.segment.read(location.offset + HEADER_SIZE, data);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read from storage " + directory + ": " + e.getMessage());
+        }
+        return data;
+    }
+
+    /* === WRITING === */
+
+    public synchronized void write(Persistable p) throws StorageFullException {
+        if (p.getID() < 0) {
+            p.setID(nextID);
+        }
+        store(p.getID(), p);
+    }
+
+    public synchronized int add(Externalizable e) throws StorageFullException {
+        int id = nextID;
+        store(id, e);
+        return id;
+    }
+
+    public synchronized void update(int id, Externalizable e) throws StorageFullException {
+        if (!exists(id)) {
+            throw new IllegalArgumentException("No record with id " + id + " to update in storage " + directory);
+        }
+        store(id, e);
+    }
+
+    private void store(int id, Externalizable e) {
+        setLocation(id, append(id, ExtUtil.serialize(e)));
+        force();
+        unindexMetaData(id);
+        indexMetaData(id, e);
+        nextID = Math.max(nextID, id + 1);
+        modifications++;
+        scheduleCompaction();
+    }
+
+    public synchronized void remove(int id) {
+        if (!exists(id)) {
+            throw new IllegalArgumentException("No record with id " + id + " to remove from storage " + directory);
+        }
+        append(id, null);
+        force();
+        setLocation(id, null);
+        unindexMetaData(id);
+        modifications++;
+        scheduleCompaction();
+    }
+
+    public synchronized void remove(Persistable p) {
+        remove(p.getID());
+    }
+
+    public synchronized void removeAll() {
+        checkOpen();
+        for (int i = 0; i < segments.size(); i++) {
+            segments.elementAt(i).delete();
+        }
+        segments.removeAllElements();
+        segments.addElement(newSegment(0));
+        index.clear();
+        recordMetaData.clear();
+        for (Enumeration<Hashtable<Object, Vector<Integer>>> en = metaDataIndex.elements(); en.hasMoreElements(); ) {
+            en.nextElement().clear();
+        }
+        modifications++;
+    }
+
+    public synchronized Vector<Integer> removeAll(EntityFilter ef) {
+        Vector<Integer> removed = new Vector<Integer>();
+        int[] ids = ids();
+        for (int i = 0; i < ids.length; i++) {
+            int filter = ef.preFilter(ids[i], recordMetaData.get(new Integer(ids[i])));
+            if (filter == EntityFilter.PREFILTER_INCLUDE || (filter == EntityFilter.PREFILTER_FILTER && ef.matches(read(ids[i])))) {
+                removed.addElement(new Integer(ids[i]));
+            }
+        }
+        for (int i = 0; i < removed.size(); i++) {
+            remove(removed.elementAt(i).intValue());
+        }
+        return removed;
+    }
+
+    /**
+     * Appends a record, or a removal marker if data is null, to the last segment, starting a new segment if it is full.
+     *
+     * @return where the record was written, or null for a removal marker
+     */
+    private Location append(int id, byte[] data) {
+        checkOpen();
+        Segment segment = segments.lastElement();
+        int length = HEADER_SIZE + (data == null ? 0 : data.length);
+        if (segment.size > 0 && segment.size + length > segmentSize) {
+            segment = newSegment(segment.number + 1);
+            segments.addElement(segment);
+        }
+
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putInt(id);
+        buffer.putInt(data == null ? REMOVED : data.length);
+        buffer.putInt(checksum(bytes, data == null ? new byte[0] : data));
+        if (data != null) {
+            buffer.put(data);
+        }
+        buffer.flip();
+        int offset = segment.size;
+        try {
+            while (buffer.hasRemaining()) {
+                segment.channel.write(buffer, offset + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write record " + id + " to storage " + directory + ": " + e.getMessage());
+        }
+        segment.size += length;
+        segment.dirty = true;
+        return data == null ? null : new Location(segment, offset, data.length);
+    }
+
+    /**
+     * Forces what has been appended to each segment since it was last forced to disk.
+     */
+    private void force() {
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.elementAt(i);
+            if (segment.dirty) {
+                try {
+                    segment.channel.force(false);
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to write to storage " + directory + ": " + e.getMessage());
+                }
+                segment.dirty = false;
+            }
+        }
+    }
+
+    private Segment newSegment(int number) {
+        try {
+            return new Segment(number);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create a segment in storage " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Points the index at the current version of a record, or removes it if location is null, keeping count of the
+     * bytes in each segment that still belong to current versions.
+     */
+    private void setLocation(int id, Location location) {
+        Integer key = new Integer(id);
+        Location previous = location == null ? index.remove(key) : index.put(key, location);
+        if (previous != null) {
+            previous.segment.live -= HEADER_SIZE + previous.length;
+        }
+        if (location != null) {
+            location.segment.live += HEADER_SIZE + location.length;
+        }
+    }
+
+    /* === METADATA === */
+
+    private void indexMetaData(int id, Externalizable e) {
+        if (!(e instanceof IMetaData)) {
+            return;
+        }
+        IMetaData m = (IMetaData) e;
+        String[] fields = m.getMetaDataFields();
+        Hashtable<String, Object> values = new Hashtable<String, Object>();
+        for (int i = 0; i < fields.length; i++) {
+            Object value = m.getMetaData(fields[i]);
+            values.put(fields[i], value);
+
+            Hashtable<Object, Vector<Integer>> field = metaDataIndex.get(fields[i]);
+            if (field == null) {
+                field = new Hashtable<Object, Vector<Integer>>();
+                metaDataIndex.put(fields[i], field);
+            }
+            Vector<Integer> ids = field.get(value);
+            if (ids == null) {
+                ids = new Vector<Integer>();
+                field.put(value, ids);
+            }
+            ids.addElement(new Integer(id));
+        }
+        recordMetaData.put(new Integer(id), values);
+    }
+
+    private void unindexMetaData(int id) {
+        Integer key = new Integer(id);
+        Hashtable<String, Object> values = recordMetaData.remove(key);
+        if (values == null) {
+            return;
+        }
+        for (Enumeration<String> en = values.keys(); en.hasMoreElements(); ) {
+            String fieldName = en.nextElement();
+            Hashtable<Object, Vector<Integer>> field = metaDataIndex.get(fieldName);
+            Object value = values.get(fieldName);
+            Vector<Integer> ids = field.get(value);
+            ids.removeElement(key);
+            if (ids.isEmpty()) {
+                field.remove(value);
+            }
+        }
+    }
+
+    public synchronized Vector getIDsForValue(String fieldName, Object value) {
+        Hashtable<Object, Vector<Integer>> field = metaDataIndex.get(fieldName);
+        if (field == null) {
+            throw new RuntimeException("No metadata field " + fieldName + " is indexed in storage " + directory);
+        }
+        Vector<Integer> ids = field.get(value);
+        return ids == null ? new Vector<Integer>() : new Vector<Integer>(ids);
+    }
+
+    public synchronized Externalizable getRecordForValue(String fieldName, Object value) throws NoSuchElementException, InvalidIndexException {
+        Vector ids = getIDsForValue(fieldName, value);
+        if (ids.isEmpty()) {
+            throw new NoSuchElementException("No record in storage " + directory + " has " + fieldName + " " + value);
+        }
+        if (ids.size() > 1) {
+            throw new InvalidIndexException("Multiple records in storage " + directory + " have " + fieldName + " " + value, fieldName);
+        }
+        return read(((Integer) ids.elementAt(0)).intValue());
+    }
+
+    /* === COMPACTION === */
+
+    /**
+     * Compacts in the background once most of a closed segment is taken up by superseded records.
+     */
+    private void scheduleCompaction() {
+        if (compactionScheduled) {
+            return;
+        }
+        for (int i = 0; i < segments.size() - 1; i++) {
+            Segment segment = segments.elementAt(i);
+            if (segment.live * 2 < segment.size) {
+                compactionScheduled = true;
+                COMPACTOR.execute(new Runnable() {
+                    public void run() {
+                        compact(false);
+                    }
+                });
+                return;
+            }
+        }
+    }
+
+    /**
+     * Compacts the closed segments, one at a time so that the storage is not locked for all of them at once.
+     *
+     * @param all whether to compact every segment with superseded records, rather than only the mostly superseded ones
+     */
+    private void compact(boolean all) {
+        for (int number = Integer.MIN_VALUE; ; ) {
+            synchronized (this) {
+                compactionScheduled = false;
+                Segment next = null;
+                for (int i = 0; i < segments.size() - 1 && !closed; i++) {
+                    Segment segment = segments.elementAt(i);
+                    if (segment.number > number && (all ? segment.live < segment.size : segment.live * 2 < segment.size)) {
+                        next = segment;
+                        break;
+                    }
+                }
+                if (next == null) {
+                    return;
+                }
+                compact(next);
+                number = next.number;
+            }
+        }
+    }
+
+    private void compact(Segment segment) {
+        // a removal marker only needs to be kept while a segment before it may hold the removed record
+        boolean oldest = segments.firstElement() == segment;
+        byte[] header = new byte[HEADER_SIZE];
+        ByteBuffer fields = ByteBuffer.wrap(header);
+        int offset = 0;
+        while (offset < segment.size) {
+            try {
+                segment.read(offset, header);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to read from storage " + directory + ": " + e.getMessage());
+            }
+            int id = fields.getInt(0);
+            int length = fields.getInt(4);
+            if (length == REMOVED) {
+                if (!oldest && !index.containsKey(new Integer(id))) {
+                    append(id, null);
+                }
+                offset += HEADER_SIZE;
+            } else {
+                Location location = index.get(new Integer(id));
+                if (location != null && location.segment == segment && location.offset == offset) {
+                    setLocation(id, append(id, bytes(location)));
+                }
+                offset += HEADER_SIZE + length;
+            }
+        }
+        // the copies must be on disk before the only other copy is deleted
+        force();
+        segments.removeElement(segment);
+        segment.delete();
+    }
+
+    public void repack() {
+        compact(true);
+    }
+
+    /* === EVERYTHING ELSE === */
+
+    public synchronized boolean exists(int id) {
+        return index.containsKey(new Integer(id));
+    }
+
+    public synchronized boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    public synchronized int getNumRecords() {
+        return index.size();
+    }
+
+    public synchronized int getRecordSize(int id) {
+        Location location = index.get(new Integer(id));
+        if (location == null) {
+            throw new IllegalArgumentException("No record with id " + id + " in storage " + directory);
+        }
+        return location.length;
+    }
+
+    public synchronized int getTotalSize() {
+        long size = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            size += segments.elementAt(i).size;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private int[] ids() {
+        int[] ids = new int[index.size()];
+        int i = 0;
+        for (Enumeration<Integer> en = index.keys(); en.hasMoreElements(); ) {
+            ids[i++] = en.nextElement().intValue();
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    public synchronized IStorageIterator iterate() {
+        final int[] ids = ids();
+        final int expected = modifications;
+        return new IStorageIterator() {
+            private int position;
+
+            public int numRecords() {
+                return ids.length;
+            }
+
+            public int peekID() {
+                synchronized (MappedFileStorageUtility.this) {
+                    if (modifications != expected) {
+                        throw new StorageModifiedException();
+                    }
+                }
+                if (position >= ids.length) {
+                    throw new IllegalStateException("All records have been iterated through");
+                }
+                return ids[position];
+            }
+
+            public int nextID() {
+                int id = peekID();
+                position++;
+                return id;
+            }
+
+            public Externalizable nextRecord() {
+                synchronized (MappedFileStorageUtility.this) {
+                    return read(nextID());
+                }
+            }
+
+            public boolean hasMore() {
+                return position < ids.length;
+            }
+        };
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < segments.size(); i++) {
+            segments.elementAt(i).close();
+        }
+    }
+
+    public synchronized void destroy() {
+        close();
+        for (int i = 0; i < segments.size(); i++) {
+            segments.elementAt(i).file.delete();
+        }
+        segments.removeAllElements();
+        directory.delete();
+    }
+
+    /**
+     * Reopens the storage, which drops a record that was not written in full.
+     */
+    public synchronized void repair() {
+        close();
+        segments.removeAllElements();
+        index.clear();
+        metaDataIndex.clear();
+        recordMetaData.clear();
+        modifications++;
+        open();
+    }
+
+    public Object getAccessLock() {
+        return this;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Storage " + directory + " has been closed");
+        }
+    }
+
+    private static class Location {
+        final Segment segment;
+        final int offset;
+        final int length;
+
+        Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private class Segment {
+        final int number;
+        final File file;
+        final FileChannel channel;
+        int size;
+        /* bytes taken up by current versions of records */
+        int live;
+        /* whether records have been appended since the segment was last forced to disk */
+        boolean dirty;
+        /* mappings of consecutive parts of the segment, together covering it from the start up to mapped */
+        private final Vector<MappedByteBuffer> chunks = new Vector<MappedByteBuffer>();
+        private int mapped;
+
+        Segment(int number) throws IOException {
+            this.number = number;
+            this.file = new File(directory, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            this.size = (int) channel.size();
+        }
+
+        /**
+         * Reads data.length bytes from the given offset. Bytes in the mapped part of the segment are read from the
+         * mapping, which is extended over records appended since, a whole number of chunks at a time, rather than
+         * mapped again; bytes past it, or a record split between two mappings, are read from the channel.
+         */
+        void read(int offset, byte[] data) throws IOException {
+            extendMapping();
+            int end = offset + data.length;
+            if (end <= mapped) {
+                int start = 0;
+                for (int i = 0; i < chunks.size(); i++) {
+                    MappedByteBuffer chunk = chunks.elementAt(i);
+                    if (offset < start + chunk.capacity()) {
+                        if (end <= start + chunk.capacity()) {
+                            ByteBuffer view = chunk.duplicate();
+                            view.position(offset - start);
+                            view.get(data);
+                            return;
+                        }
+                        break;
+                    }
+                    start += chunk.capacity();
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+            }
+        }
+
+        private void extendMapping() throws IOException {
+            int length = (size - mapped) / MAP_CHUNK_SIZE * MAP_CHUNK_SIZE;
+            if (length > 0) {
+                chunks.addElement(channel.map(FileChannel.MapMode.READ_ONLY, mapped, length));
+                mapped += length;
+            }
+        }
+
+        void truncate(int offset) throws IOException {
+            chunks.removeAllElements();
+            mapped = 0;
+            channel.truncate(offset);
+            size = offset;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //nothing more to do with it
+            }
+            chunks.removeAllElements();
+            mapped = 0;
+        }
+
+        void delete() {
+            close();
+            file.delete();
+        }
+    }
+}
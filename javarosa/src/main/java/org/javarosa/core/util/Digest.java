@@ -0,0 +1,154 @@
+package org.javarosa.core.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A message digest that content can be streamed into, from byte arrays, buffers, streams or text, backed by the
+ * platform's java.security.MessageDigest.
+ * <p/>
+ * A digest is not safe to update from more than one thread at once.
+ */
+public class Digest {
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 8192;
+
+    private final MessageDigest digest;
+    private byte[] finals;
+    private byte[] buffer;
+
+    public Digest(String algorithm) {
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform has MD5 and SHA-1
+            throw new IllegalStateException(algorithm + " is not available: " + e.getMessage());
+        }
+    }
+
+    public static Digest md5() {
+        return new Digest("MD5");
+    }
+
+    public static Digest sha1() {
+        return new Digest("SHA-1");
+    }
+
+    public Digest update(byte[] data) {
+        if (data != null) {
+            update(data, 0, data.length);
+        }
+        return this;
+    }
+
+    public Digest update(byte[] data, int offset, int length) {
+        if (data != null) {
+            finals = null;
+            digest.update(data, offset, length);
+        }
+        return this;
+    }
+
+    /**
+     * Updates the digest with the remaining bytes of the buffer, which is left at its limit.
+     */
+    public Digest update(ByteBuffer data) {
+        finals = null;
+        digest.update(data);
+        return this;
+    }
+
+    /**
+     * Updates the digest with the rest of the stream, which is not closed.
+     */
+    public Digest update(InputStream in) throws IOException {
+        byte[] bytes = buffer();
+        int read;
+        while ((read = in.read(bytes)) != -1) {
+            update(bytes, 0, read);
+        }
+        return this;
+    }
+
+    /**
+     * Updates the digest with the text encoded as UTF-8, a buffer at a time rather than the whole text at once.
+     */
+    public Digest update(CharSequence text) {
+        CharsetEncoder encoder = UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer in = CharBuffer.wrap(text);
+        ByteBuffer out = ByteBuffer.wrap(buffer());
+        while (encoder.encode(in, out, true).isOverflow()) {
+            drain(out);
+        }
+        // utf-8 keeps no state to flush, so this can't overflow
+        encoder.flush(out);
+        drain(out);
+        return this;
+    }
+
+    private void drain(ByteBuffer out) {
+        out.flip();
+        update(out);
+        out.clear();
+    }
+
+    /**
+     * The digest of everything updated so far. Getting it does not reset the digest, which can go on being updated.
+     */
+    public synchronized byte[] doFinal() {
+        if (finals == null) {
+            try {
+                finals = ((MessageDigest) digest.clone()).digest();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(digest.getAlgorithm() + " digests can't be copied");
+            }
+        }
+        return copy(finals);
+    }
+
+    /**
+     * The digest of everything updated so far, after which the digest starts over. Cheaper than doFinal() when the
+     * digest is not needed any more.
+     */
+    public byte[] digest() {
+        finals = null;
+        return digest.digest();
+    }
+
+    public void reset() {
+        finals = null;
+        digest.reset();
+    }
+
+    public static String toHex(byte[] hash) {
+        char[] buf = new char[hash.length * 2];
+        for (int i = 0, x = 0; i < hash.length; i++) {
+            buf[x++] = HEX_CHARS[(hash[i] >>> 4) & 0xf];
+            buf[x++] = HEX_CHARS[hash[i] & 0xf];
+        }
+        return new String(buf);
+    }
+
+    private byte[] buffer() {
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+        return buffer;
+    }
+
+    private static byte[] copy(byte[] bytes) {
+        byte[] copy = new byte[bytes.length];
+        System.arraycopy(bytes, 0, copy, 0, bytes.length);
+        return copy;
+    }
+}
@@ -0,0 +1,34 @@
+package org.javarosa.core.util.externalizable;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads what {@link CompactDataOutputStream} wrote, rebuilding its string table as it goes.
+ */
+public class CompactDataInputStream extends DataInputStream {
+    private final List<String> strings = new ArrayList<String>();
+
+    public CompactDataInputStream(InputStream in) {
+        super(in);
+    }
+
+    public String readString() throws IOException {
+        long index = ExtWrapIntEncodingUniform.readLong(this);
+        if (index == 0) {
+            String val = readUTF();
+            if (CompactDataOutputStream.isTabled(val)) {
+                strings.add(val);
+            }
+            return val;
+        }
+        if (index < 0 || index > strings.size()) {
+            throw new UTFDataFormatException("String table index " + index + " out of range");
+        }
+        return strings.get((int) index - 1);
+    }
+}
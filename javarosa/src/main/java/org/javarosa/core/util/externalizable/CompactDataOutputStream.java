@@ -0,0 +1,45 @@
+package org.javarosa.core.util.externalizable;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the compact variant of the ExtUtil format: every string written through {@link ExtUtil#writeString} goes
+ * into a string table the first time it is seen, and is written as its index in that table after that. Element
+ * names, references and bind paths repeat a lot in a serialized FormDef, so this saves most of their bytes.
+ * <p/>
+ * Only short strings are put in the table; long ones are labels and hints, which seldom repeat.
+ * Read it back with {@link CompactDataInputStream}.
+ */
+public class CompactDataOutputStream extends DataOutputStream {
+    static final int MAX_TABLED_LENGTH = 64;
+
+    private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+    public CompactDataOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Writes the index of the string plus one if it was written before, or zero followed by the string itself.
+     */
+    public void writeString(String val) throws IOException {
+        Integer index = indexes.get(val);
+        if (index != null) {
+            ExtWrapIntEncodingUniform.writeLong(this, index.intValue() + 1);
+            return;
+        }
+        ExtWrapIntEncodingUniform.writeLong(this, 0);
+        writeUTF(val);
+        if (isTabled(val)) {
+            indexes.put(val, Integer.valueOf(indexes.size()));
+        }
+    }
+
+    static boolean isTabled(String val) {
+        return val.length() <= MAX_TABLED_LENGTH;
+    }
+}
@@ -26,20 +26,76 @@ import java.util.Hashtable;
 import java.util.Vector;
 
 public class ExtUtil {
+	//a few serialization buffers are kept for reuse, unless they grew past MAX_RETAINED_BUFFER; they are shared
+	//by all threads rather than kept per thread, so pooled server threads never hold on to them
+	private static final int MAX_POOLED_BUFFERS = 4;
+	private static final int MAX_RETAINED_BUFFER = 1 << 20;
+	
+	private static final Vector<ByteArrayOutputStream> buffers = new Vector<ByteArrayOutputStream>();
+	
 	public static byte[] serialize (Object o) {
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		return serialize(o, false);
+	}
+	
+	/**
+	 * Serializes with a string table, see {@link CompactDataOutputStream}. The result can only be read back
+	 * through {@link #deserializeCompact(byte[], Class)}.
+	 */
+	public static byte[] serializeCompact (Object o) {
+		return serialize(o, true);
+	}
+	
+	private static byte[] serialize (Object o, boolean compact) {
+		//take a buffer out of the pool while using it, so a nested or concurrent serialize gets another one
+		ByteArrayOutputStream baos = null;
+		synchronized (buffers) {
+			if (!buffers.isEmpty()) {
+				baos = buffers.remove(buffers.size() - 1);
+			}
+		}
+		if (baos == null) {
+			baos = new ByteArrayOutputStream(1024);
+		} else {
+			baos.reset();
+		}
+		
 		try {
-			write(new DataOutputStream(baos), o);
+			write(compact ? new CompactDataOutputStream(baos) : new DataOutputStream(baos), o);
 		} catch (IOException ioe) {
 			throw new RuntimeException("IOException writing to ByteArrayOutputStream; shouldn't happen!");
 		}
-		return baos.toByteArray();
+		byte[] data = baos.toByteArray();
+		
+		if (data.length <= MAX_RETAINED_BUFFER) {
+			synchronized (buffers) {
+				if (buffers.size() < MAX_POOLED_BUFFERS) {
+					buffers.addElement(baos);
+				}
+			}
+		}
+		return data;
+	}
+	
+	/**
+	 * Drops the pooled serialization buffers and the class hashes and constructors cached by
+	 * {@link PrototypeFactory}, for an application that is shutting down or unloading its classes.
+	 */
+	public static void clearCaches () {
+		buffers.removeAllElements();
+		PrototypeFactory.clearCaches();
 	}
 
 	public static Object deserialize (byte[] data, Class type) throws DeserializationException {
-		ByteArrayInputStream bais = new ByteArrayInputStream(data);
+		return deserialize(new DataInputStream(new ByteArrayInputStream(data)), type);
+	}
+	
+	public static Object deserializeCompact (byte[] data, Class type) throws DeserializationException {
+		return deserialize(new CompactDataInputStream(new ByteArrayInputStream(data)), type);
+	}
+	
+	private static Object deserialize (DataInputStream in, Class type) throws DeserializationException {
 		try {
-			return read(new DataInputStream(bais), type);
+			return read(in, type);
 		} catch (EOFException eofe) {
 			throw new DeserializationException("Unexpectedly reached end of stream when deserializing");
 		} catch (UTFDataFormatException udfe) {
@@ -101,7 +157,8 @@ public class ExtUtil {
 	}
 	
 	public static void writeNumeric (DataOutputStream out, long val) throws IOException {
-		writeNumeric(out, val, new ExtWrapIntEncodingUniform());
+		//same bytes as writing through the uniform encoding wrapper, without allocating it
+		ExtWrapIntEncodingUniform.writeLong(out, val);
 	}
 	
 	public static void writeNumeric (DataOutputStream out, long val, ExtWrapIntEncoding encoding) throws IOException {
@@ -121,8 +178,11 @@ public class ExtUtil {
 	}
 	
 	public static void writeString (DataOutputStream out, String val) throws IOException {
-		out.writeUTF(val);
-		//we could easily come up with more efficient default encoding for string
+		if (out instanceof CompactDataOutputStream) {
+			((CompactDataOutputStream)out).writeString(val);
+		} else {
+			out.writeUTF(val);
+		}
 	}
 	
 	public static void writeDate (DataOutputStream out, Date val) throws IOException {
@@ -190,7 +250,7 @@ public class ExtUtil {
 	}
 	
 	public static long readNumeric (DataInputStream in) throws IOException {
-		return readNumeric(in, new ExtWrapIntEncodingUniform());
+		return ExtWrapIntEncodingUniform.readLong(in);
 	}
 
 	public static long readNumeric (DataInputStream in, ExtWrapIntEncoding encoding) throws IOException {
@@ -226,6 +286,9 @@ public class ExtUtil {
 	}
 	
 	public static String readString (DataInputStream in) throws IOException {
+		if (in instanceof CompactDataInputStream) {
+			return ((CompactDataInputStream)in).readString();
+		}
 		return in.readUTF();
 	}
 	
@@ -39,6 +39,14 @@ public class ExtWrapIntEncodingUniform extends ExtWrapIntEncoding {
 	}
 
 	public void readExternal(DataInputStream in, PrototypeFactory pf) throws IOException {
+		val = new Long(readLong(in));
+	}
+	
+	public void writeExternal(DataOutputStream out) throws IOException {
+		writeLong(out, ((Long)val).longValue());
+	}
+	
+	public static long readLong(DataInputStream in) throws IOException {
 		long l = 0;
 		byte b;
 		boolean firstByte = true;
@@ -54,7 +62,7 @@ public class ExtWrapIntEncodingUniform extends ExtWrapIntEncoding {
 			l = (l << 7) | (b & 0x7f);
 		} while (((b >> 7) & 0x01) == 1);
 		
-		val = new Long(l);
+		return l;
 	}
 	
 	/**
@@ -63,9 +71,7 @@ public class ExtWrapIntEncodingUniform extends ExtWrapIntEncoding {
 	 * chunk is serialized as a single byte, where the most-significant bit is set to 1 to indicate
 	 * there are more bytes to follow, or 0 to indicate the last byte
 	 **/
-	public void writeExternal(DataOutputStream out) throws IOException {
-		long l = ((Long)val).longValue();
-		
+	public static void writeLong(DataOutputStream out, long l) throws IOException {
 		int sig = -1;
 		long k;
 		do {
@@ -26,6 +26,7 @@ public class ExtWrapTagged extends ExternalizableWrapper {
 	public final static byte[] WRAPPER_TAG = {(byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff}; //must be same length as PrototypeFactory.CLASS_HASH_SIZE
 	
 	public static Hashtable WRAPPER_CODES;
+	private static Hashtable WRAPPER_TYPES; //WRAPPER_CODES reversed
 	
 	static {
 		WRAPPER_CODES = new Hashtable();
@@ -36,6 +37,12 @@ public class ExtWrapTagged extends ExternalizableWrapper {
 		WRAPPER_CODES.put(ExtWrapMapPoly.class, new Integer(0x23));
 		WRAPPER_CODES.put(ExtWrapIntEncodingUniform.class, new Integer(0x40));
 		WRAPPER_CODES.put(ExtWrapIntEncodingSmall.class, new Integer(0x41));
+		
+		WRAPPER_TYPES = new Hashtable();
+		for (Enumeration e = WRAPPER_CODES.keys(); e.hasMoreElements(); ) {
+			Object t = e.nextElement();
+			WRAPPER_TYPES.put(WRAPPER_CODES.get(t), t);
+		}
 	}
 	
 	/* serialization */
@@ -79,14 +86,12 @@ public class ExtWrapTagged extends ExternalizableWrapper {
 			
 			//find wrapper indicated by code
 			ExternalizableWrapper type = null;
-			for (Enumeration e = WRAPPER_CODES.keys(); e.hasMoreElements(); ) {
-				Class t = (Class)e.nextElement();
-				if (((Integer)WRAPPER_CODES.get(t)).intValue() == wrapperCode) {
-					try {
-						type = (ExternalizableWrapper) PrototypeFactory.getInstance(t);
-					} catch (CannotCreateObjectException ccoe) {
-						throw new CannotCreateObjectException("Serious problem: cannot create built-in ExternalizableWrapper [" + t.getName() + "]");
-					}
+			Class t = (Class)WRAPPER_TYPES.get(new Integer(wrapperCode));
+			if (t != null) {
+				try {
+					type = (ExternalizableWrapper) PrototypeFactory.getInstance(t);
+				} catch (CannotCreateObjectException ccoe) {
+					throw new CannotCreateObjectException("Serious problem: cannot create built-in ExternalizableWrapper [" + t.getName() + "]");
 				}
 			}
 			if (type == null) {
@@ -125,7 +130,7 @@ public class ExtWrapTagged extends ExternalizableWrapper {
 				type = o.getClass();
 			}
 				
-			byte[] tag = PrototypeFactory.getClassHash(type); //cache this?
+			byte[] tag = PrototypeFactory.getTag(type);
 			out.write(tag, 0, tag.length);
 		}
 	}
@@ -19,18 +19,26 @@ package org.javarosa.core.util.externalizable;
 import org.javarosa.core.util.MD5;
 import org.javarosa.core.util.PrefixTree;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Date;
+import java.util.Hashtable;
 import java.util.Vector;
 
 public class PrototypeFactory {
 	public final static int CLASS_HASH_SIZE = 4;
 	
-	private Vector classes;
-	private Vector hashes;
+	//class hashes and no-arg constructors, shared by all factories; both are derived from the class alone, and
+	//are only dropped by clearCaches()
+	private static Hashtable classHashes = new Hashtable();
+	private static Hashtable constructors = new Hashtable();
+	
+	//registered classes, keyed by their hash packed into an int
+	private Hashtable classes;
 	
 	//lazy evaluation
 	private PrefixTree classNames;
-	private boolean initialized;
+	private volatile boolean initialized;
 	
 	public PrototypeFactory () {
 		this(null);
@@ -41,11 +49,12 @@ public class PrototypeFactory {
 		initialized = false;
 	}		
 		
-	private void lazyInit () {
-		initialized = true;
+	private synchronized void lazyInit () {
+		if (initialized) {
+			return;
+		}
 		
-		classes = new Vector();
-		hashes = new Vector();
+		classes = new Hashtable();
 
 		addDefaultClasses();
 		
@@ -55,13 +64,16 @@ public class PrototypeFactory {
 			for (int i = 0; i < vClasses.size(); i++) {
 				String name = (String)vClasses.elementAt(i); 
 				try {
-					addClass(Class.forName(name));
+					register(Class.forName(name));
 				} catch (ClassNotFoundException cnfe) {
 					throw new CannotCreateObjectException(name + ": not found");
 				}
 			}
 			classNames = null;
 		}
+		
+		//only now, so that other threads never see a partially filled table
+		initialized = true;
 	}
 
 	private void addDefaultClasses () {
@@ -80,7 +92,7 @@ public class PrototypeFactory {
 		};
 		
 		for (int i = 0; i < baseTypes.length; i++) {
-			addClass(baseTypes[i]);
+			register(baseTypes[i]);
 		}
 	}
 
@@ -89,19 +101,23 @@ public class PrototypeFactory {
 			lazyInit();
 		}
 		
-		byte[] hash = getClassHash(c);
+		register(c);
+	}
+	
+	private void register (Class c) {
+		byte[] hash = getTag(c);
 		
 		if (compareHash(hash, ExtWrapTagged.WRAPPER_TAG)) {
 			throw new Error("Hash collision! " + c.getName() + " and reserved wrapper tag");
 		}
 		
-		Class d = getClass(hash);
+		Integer key = new Integer(packHash(hash));
+		Class d = (Class)classes.get(key);
 		if (d != null && d != c) {
 			throw new Error("Hash collision! " + c.getName() + " and " + d.getName());					
 		}
 		
-		classes.addElement(c);
-		hashes.addElement(hash);
+		classes.put(key, c);
 	}
 	
 	public Class getClass (byte[] hash) {
@@ -109,13 +125,10 @@ public class PrototypeFactory {
 			lazyInit();
 		}
 		
-		for (int i = 0; i < classes.size(); i++) {
-			if (compareHash(hash, (byte[])hashes.elementAt(i))) {
-				return (Class)classes.elementAt(i);
-			}
+		if (hash.length != CLASS_HASH_SIZE) {
+			return null;
 		}
-		
-		return null;
+		return (Class)classes.get(new Integer(packHash(hash)));
 	}
 	
 	public Object getInstance (byte[] hash) {
@@ -123,25 +136,66 @@ public class PrototypeFactory {
 	}
 	
 	public static Object getInstance (Class c) {
+		Constructor constructor = (Constructor)constructors.get(c);
 		try {
-			return c.newInstance();
+			if (constructor == null) {
+				constructor = c.getConstructor(new Class[0]);
+				constructors.put(c, constructor);
+			}
+			return constructor.newInstance(new Object[0]);
+		} catch (NoSuchMethodException nsme) {
+			throw new CannotCreateObjectException(c.getName() + ": not accessible or no empty constructor");
 		} catch (IllegalAccessException iae) {
 			throw new CannotCreateObjectException(c.getName() + ": not accessible or no empty constructor");
 		} catch (InstantiationException e) {
 			throw new CannotCreateObjectException(c.getName() + ": not instantiable");
+		} catch (InvocationTargetException ite) {
+			if (ite.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)ite.getCause();
+			} else if (ite.getCause() instanceof Error) {
+				throw (Error)ite.getCause();
+			}
+			throw new CannotCreateObjectException(c.getName() + ": constructor failed: " + ite.getCause());
 		}
 	}
 	
 	public static byte[] getClassHash (Class type) {
+		byte[] tag = getTag(type);
 		byte[] hash = new byte[CLASS_HASH_SIZE];
-		byte[] md5 = MD5.hash(type.getName().getBytes()); //add support for a salt, in case of collision?
-		
-		for (int i = 0; i < hash.length; i++)
-			hash[i] = md5[i];
-		
+		System.arraycopy(tag, 0, hash, 0, hash.length);
+		return hash;
+	}
+	
+	/**
+	 * The class hash, computed once per class. The array is shared, so callers must not modify it.
+	 */
+	static byte[] getTag (Class type) {
+		byte[] hash = (byte[])classHashes.get(type);
+		if (hash == null) {
+			hash = new byte[CLASS_HASH_SIZE];
+			byte[] md5 = MD5.hash(type.getName().getBytes()); //add support for a salt, in case of collision?
+			
+			for (int i = 0; i < hash.length; i++)
+				hash[i] = md5[i];
+			
+			classHashes.put(type, hash);
+		}
 		return hash;
 	}
 	
+	/**
+	 * Forgets the cached class hashes and constructors, so they no longer refer to the classes they were computed
+	 * for. They are computed again as needed.
+	 */
+	public static void clearCaches () {
+		classHashes.clear();
+		constructors.clear();
+	}
+	
+	private static int packHash (byte[] hash) {
+		return ((hash[0] & 0xff) << 24) | ((hash[1] & 0xff) << 16) | ((hash[2] & 0xff) << 8) | (hash[3] & 0xff);
+	}
+	
 	public static boolean compareHash (byte[] a, byte[] b) {
 		if (a.length != b.length) {
 			return false;
@@ -0,0 +1,113 @@
+package org.javarosa.model.xform;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.condition.IConditionExpr;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.core.model.util.restorable.IXFormyFactory;
+import org.javarosa.core.model.util.restorable.RestoreUtils;
+import org.javarosa.core.services.PrototypeManager;
+import org.javarosa.core.services.transport.payload.IDataPayload;
+import org.javarosa.core.util.externalizable.DeserializationException;
+import org.javarosa.core.util.externalizable.ExtUtil;
+import org.javarosa.xform.parse.XFormParser;
+import org.javarosa.xform.util.XFormAnswerDataParser;
+import org.javarosa.xform.util.XFormAnswerDataSerializer;
+import org.javarosa.xpath.XPathConditional;
+import org.javarosa.xpath.XPathParseTool;
+import org.javarosa.xpath.expr.XPathPathExpr;
+
+/**
+ * Registers the prototypes needed to serialize a FormDef through ExtUtil, and
+ * offers the serialize/deserialize pair used to store compiled forms. Also
+ * installs the factory the core model uses to parse typed answers, which
+ * loading a saved instance into a form needs.
+ */
+public class XFormsModule {
+	private static final String[] classes = {
+			"org.javarosa.core.model.FormDef",
+			"org.javarosa.core.model.SubmissionProfile",
+			"org.javarosa.core.model.QuestionDef",
+			"org.javarosa.core.model.GroupDef",
+			"org.javarosa.core.model.instance.FormInstance",
+			"org.javarosa.core.model.data.BooleanData",
+			"org.javarosa.core.model.data.DateData",
+			"org.javarosa.core.model.data.DateTimeData",
+			"org.javarosa.core.model.data.DecimalData",
+			"org.javarosa.core.model.data.GeoPointData",
+			"org.javarosa.core.model.data.IntegerData",
+			"org.javarosa.core.model.data.LongData",
+			"org.javarosa.core.model.data.MultiPointerAnswerData",
+			"org.javarosa.core.model.data.PointerAnswerData",
+			"org.javarosa.core.model.data.SelectMultiData",
+			"org.javarosa.core.model.data.SelectOneData",
+			"org.javarosa.core.model.data.StringData",
+			"org.javarosa.core.model.data.TimeData",
+			"org.javarosa.core.model.data.UncastData",
+			"org.javarosa.core.services.locale.TableLocaleSource",
+			"org.javarosa.model.xform.XPathReference",
+			"org.javarosa.xpath.XPathConditional"
+	};
+
+	private static boolean registered = false;
+
+	public static synchronized void registerModule () {
+		if (registered) {
+			return;
+		}
+		PrototypeManager.registerPrototypes(classes);
+		PrototypeManager.registerPrototypes(XPathParseTool.xpathClasses);
+		RestoreUtils.xfFact = new IXFormyFactory() {
+			public TreeReference ref(String refStr) {
+				return FormInstance.unpackReference(new XPathReference(refStr));
+			}
+
+			public IDataPayload serializeInstance(FormInstance dm) {
+				throw new RuntimeException("Serializing form instances is not supported");
+			}
+
+			public FormInstance parseRestore(byte[] data, Class restorableType) {
+				return XFormParser.restoreDataModel(data, restorableType);
+			}
+
+			public IAnswerData parseData(String textVal, int dataType, TreeReference ref, FormDef f) {
+				return XFormAnswerDataParser.getAnswerData(textVal, dataType, XFormParser.ghettoGetQuestionDef(dataType, f, ref));
+			}
+
+			public String serializeData(IAnswerData data) {
+				StringBuilder sb = new StringBuilder();
+				return (new XFormAnswerDataSerializer().appendAnswerData(data, sb) ? sb.toString() : null);
+			}
+
+			public IConditionExpr refToPathExpr(TreeReference ref) {
+				return new XPathConditional(XPathPathExpr.fromRef(ref));
+			}
+		};
+		registered = true;
+	}
+
+	public static byte[] serialize (FormDef formDef) {
+		registerModule();
+		return ExtUtil.serialize(formDef);
+	}
+
+	public static FormDef deserialize (byte[] data) throws DeserializationException {
+		registerModule();
+		return (FormDef)ExtUtil.deserialize(data, FormDef.class);
+	}
+
+	/**
+	 * The string-table variant of {@link #serialize(FormDef)}; smaller, but
+	 * only readable by {@link #deserializeCompact(byte[])}.
+	 */
+	public static byte[] serializeCompact (FormDef formDef) {
+		registerModule();
+		return ExtUtil.serializeCompact(formDef);
+	}
+
+	public static FormDef deserializeCompact (byte[] data) throws DeserializationException {
+		registerModule();
+		return (FormDef)ExtUtil.deserializeCompact(data, FormDef.class);
+	}
+}
@@ -0,0 +1,229 @@
+package org.javarosa.xform.parse;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.core.util.externalizable.DeserializationException;
+import org.javarosa.model.xform.XFormsModule;
+import org.kxml2.kdom.Document;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Validates completed submissions of one form against its FormDef: each instance is loaded into the form, the
+ * triggerables are run so relevance and calculates are current, and every relevant node is checked for its required
+ * flag and its constraint.
+ * <p/>
+ * The form is compiled once. Loading an instance and evaluating triggerables modify the FormDef, so each validation
+ * checks a deserialized copy out of a pool and returns it when done; copies are only deserialized when every pooled one
+ * is in use, and at most maxIdleWorkers are kept between validations. Payloads that are empty, not xml, or not an
+ * instance of this form are rejected before any of that work is done.
+ */
+public class SubmissionValidator {
+    public static final int DEFAULT_MAX_IDLE_WORKERS = Runtime.getRuntime().availableProcessors();
+
+    private final byte[] compiledForm;
+    private final BlockingQueue<Worker> idleWorkers;
+
+    /**
+     * @param compiledForm the form definition as written by {@link XFormsModule#serialize(FormDef)}
+     */
+    public SubmissionValidator(byte[] compiledForm, int maxIdleWorkers) throws DeserializationException {
+        this.compiledForm = compiledForm;
+        this.idleWorkers = new ArrayBlockingQueue<Worker>(Math.max(1, maxIdleWorkers));
+        // fail here rather than on the first submission if the compiled form is unreadable, and keep the copy
+        idleWorkers.offer(new Worker(XFormsModule.deserialize(compiledForm)));
+    }
+
+    public SubmissionValidator(byte[] compiledForm) throws DeserializationException {
+        this(compiledForm, DEFAULT_MAX_IDLE_WORKERS);
+    }
+
+    public SubmissionValidator(FormDef formDef) {
+        this.compiledForm = XFormsModule.serialize(formDef);
+        this.idleWorkers = new ArrayBlockingQueue<Worker>(Math.max(1, DEFAULT_MAX_IDLE_WORKERS));
+    }
+
+    public Result validate(String instanceXml) {
+        String malformed = checkWellFormed(instanceXml);
+        if (malformed != null) {
+            return Result.malformed(malformed);
+        }
+        Document document;
+        try {
+            document = XFormParser.getXMLDocument(new StringReader(instanceXml));
+        } catch (XFormParseException e) {
+            return Result.malformed(e.getMessage());
+        }
+
+        Worker worker = idleWorkers.poll();
+        if (worker == null) {
+            worker = new Worker(copyForm());
+        }
+        try {
+            return worker.validate(document);
+        } finally {
+            // dropped if the pool is already full
+            idleWorkers.offer(worker);
+        }
+    }
+
+    /**
+     * Validates the submissions as tasks on the executor, which the caller owns and shuts down. With no executor, or a
+     * single submission, they are validated on the calling thread.
+     *
+     * @return the results, in the order of the submissions
+     */
+    public List<Result> validateAll(List<String> instanceXmls, ExecutorService executor) {
+        List<Result> results = new ArrayList<Result>(instanceXmls.size());
+        if (executor == null || instanceXmls.size() <= 1) {
+            for (String instanceXml : instanceXmls) {
+                results.add(validate(instanceXml));
+            }
+            return results;
+        }
+
+        List<Future<Result>> futures = new ArrayList<Future<Result>>(instanceXmls.size());
+        try {
+            for (final String instanceXml : instanceXmls) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    public Result call() {
+                        return validate(instanceXml);
+                    }
+                }));
+            }
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while validating submissions");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            // the executor is shared, so only this batch's unfinished work is dropped
+            for (Future<Result> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The checks that need no parsing at all.
+     *
+     * @return why the payload cannot be an xml instance, or null if it may be one
+     */
+    static String checkWellFormed(String instanceXml) {
+        if (instanceXml == null) {
+            return "Submission is empty";
+        }
+        for (int i = 0; i < instanceXml.length(); i++) {
+            char c = instanceXml.charAt(i);
+            if (!Character.isWhitespace(c) && c != '\uFEFF') {
+                return c == '<' ? null : "Submission is not an xml document";
+            }
+        }
+        return "Submission is empty";
+    }
+
+    private FormDef copyForm() {
+        try {
+            return XFormsModule.deserialize(compiledForm);
+        } catch (DeserializationException e) {
+            throw new RuntimeException("Unable to read the compiled form: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A FormDef used by one validation at a time, with the blank instance it was compiled with.
+     */
+    private static class Worker {
+        private final FormDef formDef;
+        private final TreeElement blankRoot;
+
+        Worker(FormDef formDef) {
+            this.formDef = formDef;
+            this.blankRoot = formDef.getInstance().getRoot().deepCopy(true);
+            // copies of a frozen tree share it until they are navigated
+            this.blankRoot.freeze();
+        }
+
+        Result validate(Document document) {
+            // start from the blank instance, so nothing is left over from the previous submission
+            formDef.getInstance().setRoot(blankRoot.deepCopy(true));
+            try {
+                XFormParser.loadXmlInstance(formDef, document);
+            } catch (RuntimeException e) {
+                return Result.malformed(e.getMessage());
+            }
+            formDef.initialize(false);
+
+            ValidationMessages messages = new ValidationMessages();
+            check(formDef.getInstance().getRoot(), messages);
+            return new Result(false, messages);
+        }
+
+        private void check(TreeElement node, ValidationMessages messages) {
+            if (node.getMult() == TreeReference.INDEX_TEMPLATE || !node.isRelevant()) {
+                return;
+            }
+            if (node.isLeaf()) {
+                if (node.getValue() == null) {
+                    if (node.required) {
+                        messages.addError("Required value missing: " + node.getRef().toString(false));
+                    }
+                } else if (!formDef.evaluateConstraint(node.getRef(), node.getValue())) {
+                    messages.addError("Constraint not satisfied: " + node.getRef().toString(false));
+                }
+                return;
+            }
+            for (int i = 0; i < node.getNumChildren(); i++) {
+                check(node.getChildAt(i), messages);
+            }
+        }
+    }
+
+    public static class Result {
+        private final boolean malformed;
+        private final ValidationMessages messages;
+
+        Result(boolean malformed, ValidationMessages messages) {
+            this.malformed = malformed;
+            this.messages = messages;
+        }
+
+        static Result malformed(String message) {
+            ValidationMessages messages = new ValidationMessages();
+            messages.addError(message);
+            return new Result(true, messages);
+        }
+
+        /**
+         * @return true if the payload could not be loaded into the form at all
+         */
+        public boolean isMalformed() {
+            return malformed;
+        }
+
+        public boolean isValid() {
+            return messages.getList().isEmpty();
+        }
+
+        public ValidationMessages getMessages() {
+            return messages;
+        }
+    }
+}
@@ -8,6 +8,13 @@ import java.util.List;
 public class ValidationMessages implements Serializable {
     private List<ValidationMessage> list = new ArrayList<ValidationMessage>();
 
+    public ValidationMessages() {
+    }
+
+    public ValidationMessages(ValidationMessages messages) {
+        list.addAll(messages.list);
+    }
+
     public void addWarning(String warning) {
         list.add(new ValidationMessage(warning, ValidationMessage.Type.WARNING));
     }
@@ -24,4 +31,24 @@ public class ValidationMessages implements Serializable {
         return Collections.unmodifiableList(list);
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ValidationMessages that = (ValidationMessages) o;
+
+        return list.equals(that.list);
+    }
+
+    @Override
+    public int hashCode() {
+        return list.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationMessages" + list;
+    }
+
 }
@@ -0,0 +1,92 @@
+package org.javarosa.xform.parse;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.util.SHA1;
+
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least recently used cache of parse results keyed by the content hash of the xform, so validating the
+ * same document again does not repeat the DOM parse and the FormDef construction.
+ * <p/>
+ * The cached FormDef is shared between callers and must be treated as read only.
+ */
+public class XFormParseCache {
+    public static final int DEFAULT_SIZE = 50;
+
+    private final Map<String, ParseResult> results;
+
+    public XFormParseCache(final int maxSize) {
+        results = new LinkedHashMap<String, ParseResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ParseResult> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public XFormParseCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public ParseResult parse(String xml) {
+        String key = hash(xml);
+        ParseResult result = get(key);
+        if (result == null) {
+            XFormParser parser = new XFormParser(new StringReader(xml));
+            ValidationMessages messages = parser.validate();
+            result = new ParseResult(messages, parser.getFormDef());
+            put(key, result);
+        }
+        return result;
+    }
+
+    public ParseResult get(String key) {
+        synchronized (results) {
+            return results.get(key);
+        }
+    }
+
+    public void put(String key, ParseResult result) {
+        synchronized (results) {
+            results.put(key, result);
+        }
+    }
+
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    public static String hash(String xml) {
+        return SHA1.encodeHex(xml);
+    }
+
+    public static class ParseResult {
+        private final ValidationMessages messages;
+        private final FormDef formDef;
+
+        public ParseResult(ValidationMessages messages, FormDef formDef) {
+            this.messages = messages;
+            this.formDef = formDef;
+        }
+
+        /**
+         * A copy of the messages, which callers may change without changing the cached result.
+         */
+        public ValidationMessages getMessages() {
+            return new ValidationMessages(messages);
+        }
+
+        /**
+         * The cached FormDef itself, not a copy: it is shared by every caller of the cache, which may read or
+         * serialize it but must not change it, nor initialize or fill in its instance.
+         */
+        public FormDef getFormDef() {
+            return formDef;
+        }
+    }
+}
@@ -120,6 +120,30 @@ public class XFormParser {
         }
     }
 
+    //wrapper elements that are expected to have no handler
+    private static final Vector<String> SUPPRESS_WARNING = new Vector<String>();
+
+    static {
+        String[] suppressWarningArr = {
+                "html",
+                "head",
+                "body",
+                "xform",
+                "chooseCaption",
+                "addCaption",
+                "addEmptyCaption",
+                "delCaption",
+                "doneCaption",
+                "doneEmptyCaption",
+                "mainHeader",
+                "entryHeader",
+                "delHeader"
+        };
+        for (String aSuppressWarningArr : suppressWarningArr) {
+            SUPPRESS_WARNING.addElement(aSuppressWarningArr);
+        }
+    }
+
     private static void staticInit() {
         initProcessingRules();
         initTypeMappings();
@@ -360,15 +384,11 @@ public class XFormParser {
         messages.clear();
         if (_f == null) {
             if (_xmldoc == null) {
-                try {
-                    _xmldoc = getXMLDocument(_reader);
-                } catch (XFormParseException e) {
-                    messages.addError(e.getMessage());
-                }
+                parseStream(_reader);
+            } else {
+                parseDoc();
             }
 
-            parseDoc();
-
             //load in a custom xml instance, if applicable
             if (_instReader != null) {
                 loadXmlInstance(_f, _instReader);
@@ -379,6 +399,13 @@ public class XFormParser {
         return messages;
     }
 
+    /**
+     * @return the form definition built by {@link #validate()}, or null if the document has not been validated yet
+     */
+    public FormDef getFormDef() {
+        return _f;
+    }
+
     public static Document getXMLDocument(Reader reader) {
         Document doc = new Document();
 
@@ -427,36 +454,157 @@ public class XFormParser {
 
     }
 
-    private void parseElement(Element e, Object parent, Hashtable<String, IElementHandler> handlers) { //,
-        String name = e.getName();
+    /**
+     * Parses the form straight from the pull parser, without building a Document first. Only the subtrees that an
+     * {@link IElementHandler} is registered for are built, one at a time: the model, which holds the instance and the
+     * itext, and each top-level control or group. The wrapper elements around them (html, head, body, ...) are
+     * streamed through, so the whole form is never in memory twice. The FormDef and the messages are the same as
+     * {@link #parseDoc()} gives for the same document.
+     */
+    private void parseStream(Reader reader) {
+        _f = new FormDef();
 
-        String[] suppressWarningArr = {
-                "html",
-                "head",
-                "body",
-                "xform",
-                "chooseCaption",
-                "addCaption",
-                "addEmptyCaption",
-                "delCaption",
-                "doneCaption",
-                "doneEmptyCaption",
-                "mainHeader",
-                "entryHeader",
-                "delHeader"
-        };
-        Vector<String> suppressWarning = new Vector<String>();
-        for (String aSuppressWarningArr : suppressWarningArr) {
-            suppressWarning.addElement(aSuppressWarningArr);
+        initState();
+        try {
+            KXmlParser parser = new KXmlParser();
+            parser.setInput(reader);
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+
+            while (parser.nextToken() != XmlPullParser.START_TAG) {
+                if (parser.getEventType() == XmlPullParser.END_DOCUMENT) {
+                    throw new RuntimeException("Document has no root element!");
+                }
+            }
+            defaultNamespace = new StreamedElement(parser, null).getNamespaceUri(null);
+            streamElement(parser, null, _f, topLevelHandlers);
+            //read to the end, so that anything malformed after the root element is still reported
+            while (parser.getEventType() != XmlPullParser.END_DOCUMENT) {
+                parser.nextToken();
+            }
+
+            collapseRepeatGroups(_f);
+
+            if (instanceNode != null) {
+                parseInstance(instanceNode);
+            }
+        } catch (XmlPullParserException e) {
+            //whatever was parsed before the error is discarded, as it is when the document can't be built at all
+            _f = new FormDef();
+            messages.clear();
+            messages.addError("XML Syntax Error at Line: " + e.getLineNumber() + ", Column: " + e.getColumnNumber() + "!");
+        } catch (IOException e) {
+            _f = new FormDef();
+            messages.clear();
+            messages.addError("Unhandled Exception while Parsing XForm");
+        } catch (RuntimeException e) {
+            messages.addError(e.getMessage());
+        }
+
+        try {
+            reader.close();
+        } catch (IOException e) {
+            System.out.println("Error closing reader");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The streaming counterpart of {@link #parseElement(Element, Object, Hashtable)}, for the element whose start tag
+     * the parser is on. Leaves the parser on the token after the element's end tag.
+     *
+     * @param enclosing the element this one is in, built without its children; null for the root
+     */
+    private void streamElement(KXmlParser parser, Element enclosing, Object parent, Hashtable<String, IElementHandler> handlers)
+            throws IOException, XmlPullParserException {
+        String name = parser.getName();
+
+        IElementHandler eh = handlers.get(name);
+        if (eh != null) {
+            eh.handle(this, readElement(parser, enclosing), parent);
+            return;
+        }
+
+        //an element with no handler only needs its name and attributes, and its first child for the warning
+        StreamedElement e = new StreamedElement(parser, enclosing);
+        boolean empty = parser.isEmptyElementTag();
+        parser.nextToken();
+        Element first = null;
+        if (!empty) {
+            if (parser.getEventType() == XmlPullParser.START_TAG) {
+                first = readElement(parser, e);
+                e.addChild(Node.ELEMENT, first);
+            } else {
+                //the Document has a text node here, even for <a></a>
+                e.addChild(Node.TEXT, "");
+            }
+        }
+
+        if (!isWarningSuppressed(name)) {
+            messages.addError("XForm Parse: Unrecognized element [" + name + "]. Ignoring and processing children..." + getVagueLocation(e));
+        }
+        if (first != null) {
+            e.removeChild(0);
+            parseElement(first, parent, handlers);
         }
 
+        while (parser.getEventType() != XmlPullParser.END_TAG) {
+            if (parser.getEventType() == XmlPullParser.START_TAG) {
+                streamElement(parser, e, parent, handlers);
+            } else {
+                parser.nextToken();
+            }
+        }
+        parser.nextToken();
+    }
+
+    private Element readElement(KXmlParser parser, Element enclosing) throws IOException, XmlPullParserException {
+        Element e = new StreamedElement(enclosing);
+        e.setNamespace(parser.getNamespace());
+        e.setName(parser.getName());
+        e.parse(parser);
+        return e;
+    }
+
+    /**
+     * An element built from the pull parser, which points at its enclosing element without being one of its
+     * children; {@link #getVagueLocation(Element)} walks up to it.
+     */
+    private static class StreamedElement extends Element {
+        StreamedElement(Element enclosing) {
+            setParent(enclosing);
+        }
+
+        /**
+         * Takes the name, the namespace declarations and the attributes of the start tag the parser is on.
+         */
+        StreamedElement(XmlPullParser parser, Element enclosing) throws XmlPullParserException {
+            this(enclosing);
+            setNamespace(parser.getNamespace());
+            setName(parser.getName());
+            int depth = parser.getDepth();
+            for (int i = parser.getNamespaceCount(depth - 1); i < parser.getNamespaceCount(depth); i++) {
+                setPrefix(parser.getNamespacePrefix(i), parser.getNamespaceUri(i));
+            }
+            for (int i = 0; i < parser.getAttributeCount(); i++) {
+                setAttribute(parser.getAttributeNamespace(i), parser.getAttributeName(i), parser.getAttributeValue(i));
+            }
+        }
+    }
+
+    private static boolean isWarningSuppressed(String name) {
+        return SUPPRESS_WARNING.contains(name);
+    }
+
+    private void parseElement(Element e, Object parent, Hashtable<String, IElementHandler> handlers) { //,
+        String name = e.getName();
+
         IElementHandler eh = handlers.get(name);
         if (eh != null) {
             eh.handle(this, e, parent);
         } else {
 
 
-            if (!suppressWarning.contains(name)) {
+            if (!isWarningSuppressed(name)) {
                 messages.addError("XForm Parse: Unrecognized element [" + name + "]. Ignoring and processing children..." + getVagueLocation(e));
             }
             for (int i = 0; i < e.getChildCount(); i++) {
@@ -1220,12 +1368,10 @@ public class XFormParser {
 
     private TreeReference getFormElementRef(IFormElement fe) {
         if (fe instanceof FormDef) {
-            TreeReference ref = TreeReference.rootRef();
             if (instanceNode == null) {
                 throw new XFormParseException("No model instance available to do bind");
             }
-            ref.add(instanceNode.getName(), 0);
-            return ref;
+            return TreeReference.rootRef().extendRef(instanceNode.getName(), 0);
         } else {
             return (TreeReference) fe.getBind().getReference();
         }
@@ -1933,10 +2079,7 @@ public class XFormParser {
             TreeReference firstMatch;
 
             //make template ref generic and choose first matching node
-            TreeReference ref = templRef.clone();
-            for (int j = 0; j < ref.size(); j++) {
-                ref.setMultiplicity(j, TreeReference.INDEX_UNBOUND);
-            }
+            TreeReference ref = templRef.genericize();
             Vector<TreeReference> nodes = instance.expandReference(ref);
             if (nodes.size() == 0) {
                 //binding error; not a single node matches the repeat binding; will be reported later
@@ -2309,11 +2452,21 @@ public class XFormParser {
                 }
             }
         } else {
-            String text = getXMLText(node, true);
-            if (text != null && text.trim().length() > 0) { //ignore text that is only whitespace
-                //TODO: custom data types? modelPrototypes?
-
-                cur.setValue(XFormAnswerDataParser.getAnswerData(text, cur.dataType, ghettoGetQuestionDef(cur.dataType, f, cur.getRef())));
+            String text = getXMLText(node, false);
+            if (text != null) {
+                //parse the answer from the trimmed bounds of the text rather than from a trimmed copy of it
+                int start = 0;
+                int end = text.length();
+                while (start < end && text.charAt(start) <= ' ')
+                    start++;
+                while (end > start && text.charAt(end - 1) <= ' ')
+                    end--;
+
+                if (start < end) { //ignore text that is only whitespace
+                    //TODO: custom data types? modelPrototypes?
+
+                    cur.setValue(XFormAnswerDataParser.getAnswerData(text, start, end, cur.dataType, ghettoGetQuestionDef(cur.dataType, f, cur.getRef())));
+                }
             }
         }
     }
@@ -2419,8 +2572,6 @@ public class XFormParser {
         }
 
         // populate the data model
-        TreeReference tr = TreeReference.rootRef();
-        tr.add(templateRoot.getName(), TreeReference.INDEX_UNBOUND);
         templateRoot.populate(savedRoot, f);
 
         // populated model to current form
@@ -21,8 +21,10 @@ import org.javarosa.core.model.QuestionDef;
 import org.javarosa.core.model.SelectChoice;
 import org.javarosa.core.model.data.*;
 import org.javarosa.core.model.data.helper.Selection;
+import org.javarosa.core.model.utils.DateCodec;
 import org.javarosa.core.model.utils.DateUtils;
 
+import java.text.ParsePosition;
 import java.util.Date;
 import java.util.Vector;
 
@@ -52,6 +54,104 @@ public class XFormAnswerDataParser {
 		return getAnswerData(text, dataType, null);
 	}
 	public static IAnswerData getAnswerData (String text, int dataType, QuestionDef q) {
+		return getAnswerData(text, 0, text.length(), dataType, q);
+	}
+
+	/**
+	 * Parses the answer in text[start, end) as getAnswerData(String, int, QuestionDef) would parse it on its own.
+	 * Numbers, booleans, dates and selections are read straight from the characters; only the text of a text answer,
+	 * or of a selection without a matching choice, is copied out.
+	 */
+	public static IAnswerData getAnswerData (CharSequence text, int start, int end, int dataType, QuestionDef q) {
+		//the same trimming as String.trim()
+		int first = start;
+		int last = end;
+		while (first < last && text.charAt(first) <= ' ')
+			first++;
+		while (last > first && text.charAt(last - 1) <= ' ')
+			last--;
+
+		switch (dataType) {
+		case Constants.DATATYPE_INTEGER:
+		case Constants.DATATYPE_LONG:
+			if (first == last)
+				return null;
+			int maxDigits = (dataType == Constants.DATATYPE_INTEGER ? 9 : 18);
+			long n = parseDigits(text, first, last, maxDigits);
+			if (n != Long.MIN_VALUE)
+				return (dataType == Constants.DATATYPE_INTEGER ? (IAnswerData)new IntegerData((int)n) : new LongData(n));
+			break;
+
+		case Constants.DATATYPE_BOOLEAN:
+			if (first == last)
+				return null;
+			char c = text.charAt(first);
+			return new BooleanData(last - first == 1 && (c == '1' || c == 't'));
+
+		case Constants.DATATYPE_DATE:
+			if (first == last)
+				return null;
+			ParsePosition pos = new ParsePosition(first);
+			Date d = DateCodec.parseDate(text, pos);
+			if (d != null && pos.getIndex() == last)
+				return new DateData(d);
+			break;
+
+		case Constants.DATATYPE_CHOICE:
+			for (int i = start; i < end; ) {
+				int next = nextDelimiter(text, i, end);
+				Selection selection = (next > i ? getSelection(text, i, next, q) : null);
+				if (selection != null)
+					return new SelectOneData(selection);
+				i = next + 1;
+			}
+			return null;
+
+		case Constants.DATATYPE_CHOICE_LIST:
+			Vector selections = new Vector();
+			for (int i = start; i < end; ) {
+				int next = nextDelimiter(text, i, end);
+				Selection selection = (next > i ? getSelection(text, i, next, q) : null);
+				if (selection != null)
+					selections.addElement(selection);
+				i = next + 1;
+			}
+			return new SelectMultiData(selections);
+		}
+
+		return parse(text.subSequence(start, end).toString(), dataType, q);
+	}
+
+	/**
+	 * @return the value of an optionally signed run of at most maxDigits ascii digits, or Long.MIN_VALUE if the text
+	 * is anything else, which leaves it to the general parse
+	 */
+	private static long parseDigits (CharSequence text, int start, int end, int maxDigits) {
+		boolean negative = false;
+		char sign = text.charAt(start);
+		if (sign == '-' || sign == '+') {
+			negative = (sign == '-');
+			start++;
+		}
+		if (start == end || end - start > maxDigits)
+			return Long.MIN_VALUE;
+		long n = 0;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c < '0' || c > '9')
+				return Long.MIN_VALUE;
+			n = n * 10 + (c - '0');
+		}
+		return negative ? -n : n;
+	}
+
+	private static int nextDelimiter (CharSequence text, int i, int end) {
+		while (i < end && text.charAt(i) != ' ')
+			i++;
+		return i;
+	}
+
+	private static IAnswerData parse (String text, int dataType, QuestionDef q) {
 		String trimmedText = text.trim();
 		if (trimmedText.length() == 0)
 			trimmedText = null;
@@ -156,6 +256,27 @@ public class XFormAnswerDataParser {
 		return v;
 	}
 	
+	private static Selection getSelection(CharSequence text, int start, int end, QuestionDef q) {
+		if (q == null || q.getDynamicChoices() != null)
+			return new Selection(text.subSequence(start, end).toString());
+
+		for (int i = 0; i < q.getNumChoices(); i++) {
+			SelectChoice choice = q.getChoice(i);
+			String value = choice.getValue();
+			if (value.length() == end - start && regionMatches(value, text, start))
+				return choice.selection();
+		}
+		return null;
+	}
+
+	private static boolean regionMatches(String value, CharSequence text, int start) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) != text.charAt(start + i))
+				return false;
+		}
+		return true;
+	}
+
 	private static Selection getSelection(String choiceValue, QuestionDef q) {
 		Selection s;
 		
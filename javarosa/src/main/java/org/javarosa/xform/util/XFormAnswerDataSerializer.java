@@ -25,6 +25,7 @@ import org.kxml2.kdom.Element;
 
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.Hashtable;
 import java.util.Vector;
 
 /**
@@ -43,6 +44,40 @@ public class XFormAnswerDataSerializer implements IAnswerDataSerializer {
 	
 	public final static String DELIMITER = " ";
 	
+	/* the default answer types, for dispatching on the exact class of an answer; subclasses go through instanceof */
+	private static final int STRING = 0;
+	private static final int SELECT_MULTI = 1;
+	private static final int SELECT_ONE = 2;
+	private static final int INTEGER = 3;
+	private static final int LONG = 4;
+	private static final int DECIMAL = 5;
+	private static final int DATE = 6;
+	private static final int TIME = 7;
+	private static final int POINTER = 8;
+	private static final int MULTI_POINTER = 9;
+	private static final int GEO_POINT = 10;
+	private static final int DATE_TIME = 11;
+	private static final int BOOLEAN = 12;
+	private static final int UNCAST = 13;
+
+	private static final Hashtable TYPES = new Hashtable();
+	static {
+		TYPES.put(StringData.class, new Integer(STRING));
+		TYPES.put(SelectMultiData.class, new Integer(SELECT_MULTI));
+		TYPES.put(SelectOneData.class, new Integer(SELECT_ONE));
+		TYPES.put(IntegerData.class, new Integer(INTEGER));
+		TYPES.put(LongData.class, new Integer(LONG));
+		TYPES.put(DecimalData.class, new Integer(DECIMAL));
+		TYPES.put(DateData.class, new Integer(DATE));
+		TYPES.put(TimeData.class, new Integer(TIME));
+		TYPES.put(PointerAnswerData.class, new Integer(POINTER));
+		TYPES.put(MultiPointerAnswerData.class, new Integer(MULTI_POINTER));
+		TYPES.put(GeoPointData.class, new Integer(GEO_POINT));
+		TYPES.put(DateTimeData.class, new Integer(DATE_TIME));
+		TYPES.put(BooleanData.class, new Integer(BOOLEAN));
+		TYPES.put(UncastData.class, new Integer(UNCAST));
+	}
+
 	Vector additionalSerializers = new Vector();
 	
 	public void registerAnswerSerializer(IAnswerDataSerializer ads) {
@@ -148,19 +183,23 @@ public class XFormAnswerDataSerializer implements IAnswerDataSerializer {
 	 * separated by space characters.
 	 */
 	public Object serializeAnswerData(SelectMultiData data) {
+		StringBuilder selectString = new StringBuilder();
+		appendSelections(data, selectString);
+		return selectString.toString();
+	}
+
+	private static void appendSelections(SelectMultiData data, StringBuilder sb) {
 		Vector selections = (Vector)data.getValue();
-		Enumeration en = selections.elements();
-		StringBuffer selectString = new StringBuffer();
-		
-		while(en.hasMoreElements()) {
-			Selection selection = (Selection)en.nextElement();
-			if (selectString.length() > 0)
-				selectString.append(DELIMITER);
-			selectString.append(selection.getValue());
+		int start = sb.length();
+		for (int i = 0; i < selections.size(); i++) {
+			String value = ((Selection)selections.elementAt(i)).getValue();
+			//only what this answer has appended so far counts, not what was in the buffer before it
+			if (sb.length() > start)
+				sb.append(DELIMITER);
+			sb.append(value);
 		}
 		//As Crazy, and stupid, as it sounds, this is the XForms specification
 		//for storing multiple selections.	
-		return selectString.toString();
 	}
 	
 	/**
@@ -211,6 +250,26 @@ public class XFormAnswerDataSerializer implements IAnswerDataSerializer {
 	}
 
 	public Object serializeAnswerData(IAnswerData data) {
+		Integer type = (Integer)TYPES.get(data.getClass());
+		if (type != null) {
+			switch (type.intValue()) {
+			case STRING: return serializeAnswerData((StringData)data);
+			case SELECT_MULTI: return serializeAnswerData((SelectMultiData)data);
+			case SELECT_ONE: return serializeAnswerData((SelectOneData)data);
+			case INTEGER: return serializeAnswerData((IntegerData)data);
+			case LONG: return serializeAnswerData((LongData)data);
+			case DECIMAL: return serializeAnswerData((DecimalData)data);
+			case DATE: return serializeAnswerData((DateData)data);
+			case TIME: return serializeAnswerData((TimeData)data);
+			case POINTER: return serializeAnswerData((PointerAnswerData)data);
+			case MULTI_POINTER: return serializeAnswerData((MultiPointerAnswerData)data);
+			case GEO_POINT: return serializeAnswerData((GeoPointData)data);
+			case DATE_TIME: return serializeAnswerData((DateTimeData)data);
+			case BOOLEAN: return serializeAnswerData((BooleanData)data);
+			case UNCAST: return serializeAnswerData((UncastData)data);
+			}
+		}
+
 		if (data instanceof StringData) {
 			return serializeAnswerData((StringData)data);
 		} else if (data instanceof SelectMultiData) {
@@ -244,6 +303,48 @@ public class XFormAnswerDataSerializer implements IAnswerDataSerializer {
 		return null;
 	}
 
+	/**
+	 * Appends the xforms text of an answer, as serializeAnswerData(IAnswerData) gives it, without building a String
+	 * for it where the type allows. Registered serializers are not consulted, as with serializeAnswerData(IAnswerData).
+	 * 
+	 * @param data The answer to be serialized
+	 * @param sb The buffer to append to, which may be reused from answer to answer
+	 * @return false, with nothing appended, if the answer has no text form: it is of a type this serializer does not
+	 * handle, or points to more than one piece of data
+	 */
+	public boolean appendAnswerData(IAnswerData data, StringBuilder sb) {
+		Integer type = (Integer)TYPES.get(data.getClass());
+		if (type == null) {
+			Object serialized = serializeAnswerData(data);
+			if (!(serialized instanceof String)) {
+				return false;
+			}
+			sb.append((String)serialized);
+			return true;
+		}
+
+		Object value = data.getValue();
+		switch (type.intValue()) {
+		case STRING: sb.append((String)value); break;
+		case SELECT_MULTI: appendSelections((SelectMultiData)data, sb); break;
+		case SELECT_ONE: sb.append(((Selection)value).getValue()); break;
+		case INTEGER: sb.append(((Integer)value).intValue()); break;
+		case LONG: sb.append(((Long)value).longValue()); break;
+		case DECIMAL: sb.append(((Double)value).doubleValue()); break;
+		case BOOLEAN: sb.append(((Boolean)value).booleanValue() ? '1' : '0'); break;
+		case UNCAST: sb.append(((UncastData)data).getString()); break;
+		case MULTI_POINTER:
+			IDataPointer[] pointers = (IDataPointer[])value;
+			if (pointers.length != 1) {
+				return false;
+			}
+			sb.append(pointers[0].getDisplayText());
+			break;
+		default: sb.append((String)serializeAnswerData(data)); break;
+		}
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.javarosa.core.model.IAnswerDataSerializer#containsExternalData(org.javarosa.core.model.data.IAnswerData)
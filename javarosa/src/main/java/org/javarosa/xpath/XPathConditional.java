@@ -65,7 +65,7 @@ public class XPathConditional implements IConditionExpr {
 	}
 	
 	public boolean eval (FormInstance model, EvaluationContext evalContext) {
-		return XPathFuncExpr.toBoolean(evalRaw(model, evalContext)).booleanValue();
+		return expr.evalBoolean(model, evalContext);
 	}
 	
 	public String evalReadable (FormInstance model, EvaluationContext evalContext) {
@@ -103,6 +103,37 @@ public class XPathConditional implements IConditionExpr {
 		}
 	}
 	
+	/**
+	 * True unless the expression calls a function whose result can change on its own (now(), random(), custom
+	 * handlers, ...) or reads something other than instance nodes, such as variables or filter expressions.
+	 */
+	public boolean dependsOnlyOnTriggers () {
+		return dependsOnlyOnTriggers(expr);
+	}
+	
+	private static boolean dependsOnlyOnTriggers (XPathExpression x) {
+		if (x instanceof XPathPathExpr) {
+			return ((XPathPathExpr)x).init_context != XPathPathExpr.INIT_CONTEXT_EXPR;
+		} else if (x instanceof XPathBinaryOpExpr) {
+			return dependsOnlyOnTriggers(((XPathBinaryOpExpr)x).a) && dependsOnlyOnTriggers(((XPathBinaryOpExpr)x).b);
+		} else if (x instanceof XPathUnaryOpExpr) {
+			return dependsOnlyOnTriggers(((XPathUnaryOpExpr)x).a);
+		} else if (x instanceof XPathFuncExpr) {
+			XPathFuncExpr fx = (XPathFuncExpr)x;
+			if (!XPathFuncExpr.isPureFunction(fx.id.toString())) {
+				return false;
+			}
+			for (int i = 0; i < fx.args.length; i++) {
+				if (!dependsOnlyOnTriggers(fx.args[i])) {
+					return false;
+				}
+			}
+			return true;
+		} else {
+			return x instanceof XPathNumericLiteral || x instanceof XPathStringLiteral;
+		}
+	}
+	
 	public boolean equals (Object o) {
 		if (o instanceof XPathConditional) {
 			XPathConditional cond = (XPathConditional)o;
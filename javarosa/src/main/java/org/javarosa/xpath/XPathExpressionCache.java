@@ -0,0 +1,75 @@
+package org.javarosa.xpath;
+
+import org.javarosa.xpath.expr.XPathExpression;
+import org.javarosa.xpath.parser.Lexer;
+import org.javarosa.xpath.parser.Parser;
+import org.javarosa.xpath.parser.XPathSyntaxException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least recently used cache from xpath text to its parsed expression, shared by all forms. Forms repeat the
+ * same expressions a lot, such as the same relevance condition on every question of a section, so each distinct
+ * expression is lexed and parsed once.
+ * <p/>
+ * Callers get the same expression instance for the same text, so it is shared between binds, FormDefs and threads.
+ * Nothing in this library changes an expression after the parser builds it, but the fields of the expression classes
+ * are public and can't be final, as expressions are read back through readExternal. Callers must leave them alone:
+ * code that wants to change an expression tree must parse its own copy through {@link #parse(String)} or
+ * XPathParseTool.parseXPathCopy.
+ */
+public class XPathExpressionCache {
+    public static final int DEFAULT_SIZE = 1024;
+
+    private static final XPathExpressionCache SHARED = new XPathExpressionCache(DEFAULT_SIZE);
+
+    private final Map<String, XPathExpression> expressions;
+
+    public XPathExpressionCache(final int maxSize) {
+        expressions = new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static XPathExpressionCache getShared() {
+        return SHARED;
+    }
+
+    public XPathExpression get(String xpath) throws XPathSyntaxException {
+        synchronized (expressions) {
+            XPathExpression expr = expressions.get(xpath);
+            if (expr != null) {
+                return expr;
+            }
+        }
+        // parsed outside the lock; a race parses the same text twice at worst
+        XPathExpression expr = parse(xpath);
+        synchronized (expressions) {
+            expressions.put(xpath, expr);
+        }
+        return expr;
+    }
+
+    /**
+     * Lexes and parses the expression without going through any cache.
+     */
+    public static XPathExpression parse(String xpath) throws XPathSyntaxException {
+        return Parser.parse(Lexer.lex(xpath));
+    }
+
+    public int size() {
+        synchronized (expressions) {
+            return expressions.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (expressions) {
+            expressions.clear();
+        }
+    }
+}
@@ -17,8 +17,6 @@
 package org.javarosa.xpath;
 
 import org.javarosa.xpath.expr.XPathExpression;
-import org.javarosa.xpath.parser.Lexer;
-import org.javarosa.xpath.parser.Parser;
 import org.javarosa.xpath.parser.XPathSyntaxException;
 
 public class XPathParseTool {
@@ -37,9 +35,18 @@ public class XPathParseTool {
 			"org.javarosa.xpath.expr.XPathVariableReference"
 	};
 
+	/**
+	 * Parses the expression, or returns the shared instance parsed earlier for the same text; see
+	 * {@link XPathExpressionCache}. The expression must not be changed.
+	 */
 	public static XPathExpression parseXPath (String xpath) throws XPathSyntaxException {
-		return Parser.parse(Lexer.lex(xpath));
+		return XPathExpressionCache.getShared().get(xpath);
+	}
+	
+	/**
+	 * Parses the expression into a new tree, not shared with anyone else, which the caller may change.
+	 */
+	public static XPathExpression parseXPathCopy (String xpath) throws XPathSyntaxException {
+		return XPathExpressionCache.parse(xpath);
 	}
-
-
 }
@@ -0,0 +1,174 @@
+package org.javarosa.xpath.expr;
+
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * The children of one element that share a name, grouped by the value of a child of their own, so that a predicate
+ * such as item[district = /data/district] is answered by a lookup instead of by evaluating it for every item.
+ * <p/>
+ * Indexes are kept with their instance (see FormInstance.getDerivedData()) and are built when first asked for. They
+ * are rebuilt when next asked for after the instance structure, or the value or relevance of an indexed child, has
+ * changed. A lookup only goes through the indexed children to see whether they have changed when a value or relevance
+ * somewhere in the instance has (see FormInstance.getValuesVersion()).
+ */
+class ChildValueIndex {
+    private static final Vector<TreeReference> NONE = new Vector<TreeReference>(0);
+
+    private final TreeReference parentRef;
+    private final String name;
+    private final String keyName;
+
+    private long structureVersion = -1;
+    private long valuesVersion = -1;
+    // the child holding each node's key, or null if it has none, with the version and relevance it was read at
+    private TreeElement[] keys;
+    private long[] keyVersions;
+    private boolean[] keyRelevance;
+    // <key, refs of the nodes with that key in document order>
+    private Hashtable<String, Vector<TreeReference>> refs;
+
+    private ChildValueIndex(TreeReference parentRef, String name, String keyName) {
+        this.parentRef = parentRef;
+        this.name = name;
+        this.keyName = keyName;
+    }
+
+    /**
+     * The refs of the children of parentRef named name whose child keyName has the value, in document order, or null
+     * if the children can't be indexed: one has more than one such child, or one whose value is not text. The
+     * vector is shared and must not be changed.
+     */
+    static Vector<TreeReference> lookup(FormInstance instance, TreeReference parentRef, String name, String keyName,
+                                        String value) {
+        Hashtable derived = instance.getDerivedData();
+        Hashtable<Key, ChildValueIndex> indexes;
+        synchronized (derived) {
+            indexes = (Hashtable<Key, ChildValueIndex>) derived.get(ChildValueIndex.class);
+            if (indexes == null) {
+                indexes = new Hashtable<Key, ChildValueIndex>();
+                derived.put(ChildValueIndex.class, indexes);
+            }
+        }
+        Key key = new Key(parentRef, name, keyName);
+        ChildValueIndex index;
+        synchronized (indexes) {
+            index = indexes.get(key);
+            if (index == null) {
+                index = new ChildValueIndex(parentRef, name, keyName);
+                indexes.put(key, index);
+            }
+        }
+        return index.lookup(instance, value);
+    }
+
+    private synchronized Vector<TreeReference> lookup(FormInstance instance, String value) {
+        long structureVersion = instance.getStructureVersion();
+        long valuesVersion = instance.getValuesVersion();
+        if (structureVersion != this.structureVersion) {
+            build(instance, structureVersion, valuesVersion);
+        } else if (valuesVersion != this.valuesVersion) {
+            // something changed, though not necessarily one of the keys
+            if (keysCurrent()) {
+                this.valuesVersion = valuesVersion;
+            } else {
+                build(instance, structureVersion, valuesVersion);
+            }
+        }
+        if (refs == null) {
+            return null;
+        }
+        Vector<TreeReference> v = refs.get(value);
+        return (v == null ? NONE : v);
+    }
+
+    private boolean keysCurrent() {
+        for (int i = 0; i < keys.length; i++) {
+            TreeElement key = keys[i];
+            if (key != null && (key.getVersion() != keyVersions[i] || key.isRelevant() != keyRelevance[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void build(FormInstance instance, long structureVersion, long valuesVersion) {
+        refs = null;
+        keys = new TreeElement[0];
+        this.structureVersion = structureVersion;
+        this.valuesVersion = valuesVersion;
+        TreeElement parent = instance.resolveReference(parentRef);
+        Vector<TreeElement> nodes = (parent == null ? new Vector<TreeElement>(0) : parent.getChildrenWithName(name));
+        if (parent == null) {
+            return;
+        }
+
+        TreeElement[] keys = new TreeElement[nodes.size()];
+        long[] keyVersions = new long[keys.length];
+        boolean[] keyRelevance = new boolean[keys.length];
+        Hashtable<String, Vector<TreeReference>> refs = new Hashtable<String, Vector<TreeReference>>();
+        for (int i = 0; i < keys.length; i++) {
+            TreeElement node = nodes.elementAt(i);
+            Vector<TreeElement> found = node.getChildrenWithName(keyName);
+            if (found.size() > 1) {
+                // the predicate can't compare a nodeset of more than one node; leave it to fail as it would
+                refs = null;
+                continue;
+            }
+            TreeElement key = (found.size() == 0 ? null : found.elementAt(0));
+            keys[i] = key;
+            if (key != null) {
+                keyVersions[i] = key.getVersion();
+                keyRelevance[i] = key.isRelevant();
+            }
+
+            Object value = (key == null || !key.isRelevant() ? "" : XPathPathExpr.unpackValue(key.getValue()));
+            if (!(value instanceof String)) {
+                // compared as a number, date or boolean
+                refs = null;
+            }
+            if (refs != null) {
+                Vector<TreeReference> v = refs.get(value);
+                if (v == null) {
+                    v = new Vector<TreeReference>(1);
+                    refs.put((String) value, v);
+                }
+                v.addElement(parentRef.extendRef(name, node.getMult()));
+            }
+        }
+        this.keys = keys;
+        this.keyVersions = keyVersions;
+        this.keyRelevance = keyRelevance;
+        this.refs = refs;
+    }
+
+    private static class Key {
+        final TreeReference parentRef;
+        final String name;
+        final String keyName;
+
+        Key(TreeReference parentRef, String name, String keyName) {
+            this.parentRef = parentRef;
+            this.name = name;
+            this.keyName = keyName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return parentRef.equals(k.parentRef) && name.equals(k.name) && keyName.equals(k.keyName);
+        }
+
+        @Override
+        public int hashCode() {
+            return (parentRef.hashCode() * 31 + name.hashCode()) * 31 + keyName.hashCode();
+        }
+    }
+}
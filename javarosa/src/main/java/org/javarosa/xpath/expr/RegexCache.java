@@ -0,0 +1,95 @@
+package org.javarosa.xpath.expr;
+
+import org.apache.regexp.RE;
+import org.apache.regexp.RECompiler;
+import org.apache.regexp.REProgram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded, least recently used cache of the compiled patterns used by the xpath regex() function, shared by all
+ * FormDefs so a constraint such as regex(., '^[0-9]{10}$') is compiled once rather than on every evaluation.
+ * <p/>
+ * Patterns are compiled with jakarta-regexp by default, which is what regex() has always used. Compiled programs are
+ * immutable and only the matcher holds state, so each match gets its own cheap {@link RE} around the cached program.
+ * {@link #setUseJavaRegex(boolean)} switches to java.util.regex, which is faster but does not support the jakarta
+ * specific syntax such as the [:alpha:] character classes; only enable it where the deployed forms do not rely on it.
+ */
+public class RegexCache {
+    public static final int DEFAULT_SIZE = 256;
+
+    private static final RegexCache SHARED = new RegexCache(DEFAULT_SIZE);
+
+    private final Map<String, Object> patterns;
+    private volatile boolean useJavaRegex;
+
+    public RegexCache(final int maxSize) {
+        patterns = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public static RegexCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * @return whether the given string contains a match of the given pattern anywhere, as jakarta RE.match() does
+     */
+    public boolean matches(String regex, String input) {
+        Object compiled = compile(regex);
+        if (compiled instanceof Pattern) {
+            return ((Pattern) compiled).matcher(input).find();
+        }
+        return new RE((REProgram) compiled).match(input);
+    }
+
+    public void setUseJavaRegex(boolean useJavaRegex) {
+        synchronized (patterns) {
+            if (this.useJavaRegex != useJavaRegex) {
+                this.useJavaRegex = useJavaRegex;
+                patterns.clear();
+            }
+        }
+    }
+
+    public boolean isUseJavaRegex() {
+        return useJavaRegex;
+    }
+
+    public int size() {
+        synchronized (patterns) {
+            return patterns.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (patterns) {
+            patterns.clear();
+        }
+    }
+
+    private Object compile(String regex) {
+        boolean javaRegex;
+        synchronized (patterns) {
+            Object compiled = patterns.get(regex);
+            if (compiled != null) {
+                return compiled;
+            }
+            javaRegex = useJavaRegex;
+        }
+        // compiled outside the lock so a slow pattern does not hold up other threads; a race compiles it twice at worst
+        Object compiled = javaRegex ? Pattern.compile(regex) : new RECompiler().compile(regex);
+        synchronized (patterns) {
+            if (javaRegex == useJavaRegex) {
+                patterns.put(regex, compiled);
+            }
+        }
+        return compiled;
+    }
+}
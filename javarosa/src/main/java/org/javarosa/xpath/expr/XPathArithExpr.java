@@ -44,8 +44,12 @@ public class XPathArithExpr extends XPathBinaryOpExpr {
 	}
 	
 	public Object eval (FormInstance model, EvaluationContext evalContext) {
-		double aval = XPathFuncExpr.toNumeric(a.eval(model, evalContext)).doubleValue();
-		double bval = XPathFuncExpr.toNumeric(b.eval(model, evalContext)).doubleValue();
+		return new Double(evalNumeric(model, evalContext));
+	}
+	
+	public double evalNumeric (FormInstance model, EvaluationContext evalContext) {
+		double aval = a.evalNumeric(model, evalContext);
+		double bval = b.evalNumeric(model, evalContext);
 		
 		double result = 0;
 		switch (op) {
@@ -56,7 +60,11 @@ public class XPathArithExpr extends XPathBinaryOpExpr {
 		case MODULO: result = aval % bval; break;
 		case POW: result = Math.pow(aval,bval); break;
 		}
-		return new Double(result);
+		return result;
+	}
+	
+	public int getStaticType () {
+		return TYPE_NUMERIC;
 	}
 	
 	public String toString () {
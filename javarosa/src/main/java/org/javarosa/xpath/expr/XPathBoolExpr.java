@@ -40,21 +40,29 @@ public class XPathBoolExpr extends XPathBinaryOpExpr {
 	}
 	
 	public Object eval (FormInstance model, EvaluationContext evalContext) {
-		boolean aval = XPathFuncExpr.toBoolean(a.eval(model, evalContext)).booleanValue();
+		return Boolean.valueOf(evalBoolean(model, evalContext));
+	}
+	
+	public boolean evalBoolean (FormInstance model, EvaluationContext evalContext) {
+		boolean aval = a.evalBoolean(model, evalContext);
 		
 		//short-circuiting
 		if ((!aval && op == AND) || (aval && op == OR)) {
-			return new Boolean(aval);
+			return aval;
 		}
 
-		boolean bval = XPathFuncExpr.toBoolean(b.eval(model, evalContext)).booleanValue();
+		boolean bval = b.evalBoolean(model, evalContext);
 		
 		boolean result = false;
 		switch (op) {
 		case AND: result = aval && bval; break;
 		case OR: result = aval || bval; break;
 		}
-		return new Boolean(result);
+		return result;
+	}
+	
+	public int getStaticType () {
+		return TYPE_BOOLEAN;
 	}
 
 	public String toString () {
@@ -45,16 +45,14 @@ public class XPathCmpExpr extends XPathBinaryOpExpr {
 	}
 	
 	public Object eval (FormInstance model, EvaluationContext evalContext) {
-		Object aval = a.eval(model, evalContext);
-		Object bval = b.eval(model, evalContext);
-		boolean result = false;
-
+		return Boolean.valueOf(evalBoolean(model, evalContext));
+	}
+	
+	public boolean evalBoolean (FormInstance model, EvaluationContext evalContext) {
 		//xpath spec says comparisons only defined for numbers (not defined for strings)
-		aval = XPathFuncExpr.toNumeric(aval);
-		bval = XPathFuncExpr.toNumeric(bval);
-					
-		double fa = ((Double)aval).doubleValue();
-		double fb = ((Double)bval).doubleValue();
+		double fa = a.evalNumeric(model, evalContext);
+		double fb = b.evalNumeric(model, evalContext);
+		boolean result = false;
 
 		switch (op) {
 		case LT: result = fa < fb; break;
@@ -63,7 +61,11 @@ public class XPathCmpExpr extends XPathBinaryOpExpr {
 		case GTE: result = fa >= fb; break;
 		}
 		
-		return new Boolean(result);		
+		return result;
+	}
+	
+	public int getStaticType () {
+		return TYPE_BOOLEAN;
 	}
 
 	public String toString () {
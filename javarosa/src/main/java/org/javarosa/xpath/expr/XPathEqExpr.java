@@ -37,6 +37,24 @@ public class XPathEqExpr extends XPathBinaryOpExpr {
 	}
 	
 	public Object eval (FormInstance model, EvaluationContext evalContext) {
+		return Boolean.valueOf(evalBoolean(model, evalContext));
+	}
+	
+	public boolean evalBoolean (FormInstance model, EvaluationContext evalContext) {
+		int ta = a.getStaticType();
+		int tb = b.getStaticType();
+		//when both types are known the comparison can be done on primitives; strings and anything
+		//whose type depends on the data (paths, custom functions) go through the boxed comparison
+		if (ta != TYPE_UNKNOWN && tb != TYPE_UNKNOWN) {
+			if (ta == TYPE_BOOLEAN || tb == TYPE_BOOLEAN) {
+				boolean eq = (a.evalBoolean(model, evalContext) == b.evalBoolean(model, evalContext));
+				return equal ? eq : !eq;
+			} else if (ta == TYPE_NUMERIC || tb == TYPE_NUMERIC) {
+				boolean eq = Math.abs(a.evalNumeric(model, evalContext) - b.evalNumeric(model, evalContext)) < 1.0e-12;
+				return equal ? eq : !eq;
+			}
+		}
+		
 		Object aval = XPathFuncExpr.unpack(a.eval(model, evalContext));
 		Object bval = XPathFuncExpr.unpack(b.eval(model, evalContext));
 		boolean eq = false;
@@ -67,7 +85,11 @@ public class XPathEqExpr extends XPathBinaryOpExpr {
 			eq = (aval.equals(bval));
 		}
 		
-		return new Boolean(equal ? eq : !eq);
+		return equal ? eq : !eq;
+	}
+
+	public int getStaticType () {
+		return TYPE_BOOLEAN;
 	}
 
 	public String toString () {
@@ -25,9 +25,38 @@ import org.javarosa.core.util.externalizable.Externalizable;
 import java.util.Vector;
 
 public abstract class XPathExpression implements Externalizable {
+	/** static result types; an expression of known type always evaluates to a value of that type */
+	public static final int TYPE_UNKNOWN = 0;
+	public static final int TYPE_NUMERIC = 1;
+	public static final int TYPE_BOOLEAN = 2;
+	public static final int TYPE_STRING = 3;
 	
 	public abstract Object eval (FormInstance model, EvaluationContext evalContext);
 	
+	/**
+	 * Evaluate the expression and convert the result to a number, as XPathFuncExpr.toNumeric() would.
+	 * Expressions that compute a number override this so that nested arithmetic and comparisons don't
+	 * box every intermediate value; eval() remains the reference behaviour.
+	 */
+	public double evalNumeric (FormInstance model, EvaluationContext evalContext) {
+		return XPathFuncExpr.toDouble(eval(model, evalContext));
+	}
+	
+	/**
+	 * Evaluate the expression and convert the result to a boolean, as XPathFuncExpr.toBoolean() would.
+	 */
+	public boolean evalBoolean (FormInstance model, EvaluationContext evalContext) {
+		return XPathFuncExpr.toBoolean(eval(model, evalContext)).booleanValue();
+	}
+	
+	/**
+	 * @return the type eval() is known to return regardless of the instance, or TYPE_UNKNOWN (e.g. for
+	 * paths, whose value depends on the data)
+	 */
+	public int getStaticType () {
+		return TYPE_UNKNOWN;
+	}
+	
 	public final Vector<Object> pivot(FormInstance model, EvaluationContext evalContext) throws UnpivotableExpressionException {
 		try {
 			Vector<Object> pivots = new Vector<Object>();
@@ -28,6 +28,8 @@ import java.io.IOException;
 import java.util.Vector;
 
 public class XPathFilterExpr extends XPathExpression {
+	//parsed expressions are shared through XPathExpressionCache: never change these on an expression obtained from
+	//XPathParseTool.parseXPath; get a tree of your own from XPathParseTool.parseXPathCopy instead
 	public XPathExpression x;
 	public XPathExpression[] predicates;
 	
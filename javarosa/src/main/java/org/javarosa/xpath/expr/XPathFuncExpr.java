@@ -16,7 +16,6 @@
 
 package org.javarosa.xpath.expr;
 
-import org.apache.regexp.RE;
 import org.javarosa.core.model.condition.EvaluationContext;
 import org.javarosa.core.model.condition.IFunctionHandler;
 import org.javarosa.core.model.condition.pivot.UnpivotableExpressionException;
@@ -54,14 +53,107 @@ import java.util.Vector;
  *
  */
 public class XPathFuncExpr extends XPathExpression {
+	//parsed expressions are shared through XPathExpressionCache: never change these on an expression obtained from
+	//XPathParseTool.parseXPath; get a tree of your own from XPathParseTool.parseXPathCopy instead
 	public XPathQName id;			//name of the function
 	public XPathExpression[] args;	//argument list
 
+	//built-in functions; see bind()
+	private static final int FUNC_CUSTOM = -1;
+	private static final int FUNC_TRUE = 0;
+	private static final int FUNC_FALSE = 1;
+	private static final int FUNC_BOOLEAN = 2;
+	private static final int FUNC_NUMBER = 3;
+	private static final int FUNC_INT = 4;
+	private static final int FUNC_STRING = 5;
+	private static final int FUNC_DATE = 6;
+	private static final int FUNC_NOT = 7;
+	private static final int FUNC_BOOLEAN_FROM_STRING = 8;
+	private static final int FUNC_FORMAT_DATE = 9;
+	private static final int FUNC_IF = 10;
+	private static final int FUNC_SELECTED = 11;
+	private static final int FUNC_COUNT_SELECTED = 12;
+	private static final int FUNC_COALESCE = 13;
+	private static final int FUNC_COUNT = 14;
+	private static final int FUNC_SUM = 15;
+	private static final int FUNC_TODAY = 16;
+	private static final int FUNC_NOW = 17;
+	private static final int FUNC_CONCAT = 18;
+	private static final int FUNC_JOIN = 19;
+	private static final int FUNC_SUBSTR = 20;
+	private static final int FUNC_STRING_LENGTH = 21;
+	private static final int FUNC_CHECKLIST = 22;
+	private static final int FUNC_WEIGHTED_CHECKLIST = 23;
+	private static final int FUNC_REGEX = 24;
+	private static final int FUNC_DEPEND = 25;
+	private static final int FUNC_RANDOM = 26;
+	private static final int FUNC_UUID = 27;
+
+	private static final Hashtable<String, Integer> BUILT_INS = new Hashtable<String, Integer>();
+	static {
+		String[] names = {"true", "false", "boolean", "number", "int", "string", "date", "not", "boolean-from-string",
+				"format-date", "if", "selected", "count-selected", "coalesce", "count", "sum", "today", "now", "concat",
+				"join", "substr", "string-length", "checklist", "weighted-checklist", "regex", "depend", "random", "uuid"};
+		for (int i = 0; i < names.length; i++) {
+			BUILT_INS.put(names[i], new Integer(i));
+		}
+		BUILT_INS.put("is-selected", new Integer(FUNC_SELECTED));
+	}
+
+	//the built-in function this call resolves to, or FUNC_CUSTOM; bound for the current id and argument count
+	private int function = FUNC_CUSTOM;
+	private XPathQName boundId;
+	private int boundArity = -1;
+
 	public XPathFuncExpr () { } //for deserialization
 	
 	public XPathFuncExpr (XPathQName id, XPathExpression[] args) {
 		this.id = id;
 		this.args = args;
+		bind();
+	}
+
+	/**
+	 * Resolve the function name and check the argument count against the built-in function suite, once. A
+	 * built-in name called with an argument count it doesn't support falls through to the custom handlers,
+	 * just like an unknown name.
+	 */
+	private void bind () {
+		Integer builtIn = BUILT_INS.get(id.toString());
+		int n = args.length;
+		int f = FUNC_CUSTOM;
+		if (builtIn != null) {
+			f = builtIn.intValue();
+			boolean arityOk;
+			switch (f) {
+			case FUNC_TRUE: case FUNC_FALSE: case FUNC_TODAY: case FUNC_NOW: case FUNC_RANDOM:
+				arityOk = (n == 0); break;
+			case FUNC_FORMAT_DATE: case FUNC_SELECTED: case FUNC_COALESCE: case FUNC_REGEX:
+				arityOk = (n == 2); break;
+			case FUNC_IF:
+				arityOk = (n == 3); break;
+			case FUNC_CONCAT:
+				arityOk = true; break;
+			case FUNC_JOIN: case FUNC_DEPEND:
+				arityOk = (n >= 1); break;
+			case FUNC_SUBSTR:
+				arityOk = (n == 2 || n == 3); break;
+			case FUNC_CHECKLIST:
+				arityOk = (n >= 2); break;
+			case FUNC_WEIGHTED_CHECKLIST:
+				arityOk = (n >= 2 && n % 2 == 0); break;
+			case FUNC_UUID:
+				arityOk = (n == 0 || n == 1); break;
+			default:
+				arityOk = (n == 1); break;
+			}
+			if (!arityOk) {
+				f = FUNC_CUSTOM;
+			}
+		}
+		function = f;
+		boundId = id;
+		boundArity = n;
 	}
 	
 	public String toString () {
@@ -101,7 +193,8 @@ public class XPathFuncExpr extends XPathExpression {
 		
 		args = new XPathExpression[v.size()];
 		for (int i = 0; i < args.length; i++)
-			args[i] = (XPathExpression)v.elementAt(i);		
+			args[i] = (XPathExpression)v.elementAt(i);
+		bind();
 	}
 
 	public void writeExternal(DataOutputStream out) throws IOException {
@@ -113,6 +206,65 @@ public class XPathFuncExpr extends XPathExpression {
 		ExtUtil.write(out, new ExtWrapListPoly(v));
 	}
 
+	/**
+	 * true for built-in functions whose result depends on nothing but their arguments
+	 */
+	public static boolean isPureFunction (String name) {
+		Integer builtIn = BUILT_INS.get(name);
+		if (builtIn == null) {
+			return false;
+		}
+		switch (builtIn.intValue()) {
+		case FUNC_TODAY: case FUNC_NOW: case FUNC_RANDOM: case FUNC_UUID: return false;
+		default: return true;
+		}
+	}
+
+	private int boundFunction () {
+		if (boundId != id || boundArity != args.length) {
+			bind(); //id or args were replaced since the last call
+		}
+		return function;
+	}
+	
+	public int getStaticType () {
+		switch (boundFunction()) {
+		case FUNC_NUMBER: case FUNC_INT: case FUNC_COUNT_SELECTED: case FUNC_COUNT: case FUNC_SUM:
+		case FUNC_STRING_LENGTH: case FUNC_RANDOM:
+			return TYPE_NUMERIC;
+		case FUNC_TRUE: case FUNC_FALSE: case FUNC_BOOLEAN: case FUNC_NOT: case FUNC_BOOLEAN_FROM_STRING:
+		case FUNC_SELECTED: case FUNC_CHECKLIST: case FUNC_WEIGHTED_CHECKLIST: case FUNC_REGEX:
+			return TYPE_BOOLEAN;
+		case FUNC_STRING: case FUNC_FORMAT_DATE: case FUNC_CONCAT: case FUNC_JOIN: case FUNC_SUBSTR: case FUNC_UUID:
+			return TYPE_STRING;
+		default:
+			return TYPE_UNKNOWN;
+		}
+	}
+	
+	public double evalNumeric (FormInstance model, EvaluationContext evalContext) {
+		switch (boundFunction()) {
+		case FUNC_NUMBER: return args[0].evalNumeric(model, evalContext);
+		case FUNC_IF:
+			return args[0].evalBoolean(model, evalContext) ?
+					args[1].evalNumeric(model, evalContext) : args[2].evalNumeric(model, evalContext);
+		default: return super.evalNumeric(model, evalContext);
+		}
+	}
+	
+	public boolean evalBoolean (FormInstance model, EvaluationContext evalContext) {
+		switch (boundFunction()) {
+		case FUNC_TRUE: return true;
+		case FUNC_FALSE: return false;
+		case FUNC_BOOLEAN: return args[0].evalBoolean(model, evalContext);
+		case FUNC_NOT: return !args[0].evalBoolean(model, evalContext);
+		case FUNC_IF:
+			return args[0].evalBoolean(model, evalContext) ?
+					args[1].evalBoolean(model, evalContext) : args[2].evalBoolean(model, evalContext);
+		default: return super.evalBoolean(model, evalContext);
+		}
+	}
+	
 	/**
 	 * Evaluate the function call.
 	 * 
@@ -125,79 +277,67 @@ public class XPathFuncExpr extends XPathExpression {
 	 * 
 	 */
 	public Object eval (FormInstance model, EvaluationContext evalContext) {
-		String name = id.toString();
-		Object[] argVals = new Object[args.length];
-		
-		Hashtable funcHandlers = evalContext.getFunctionHandlers();
+		int f = boundFunction();
+		
+		//functions that only evaluate the arguments they need
+		switch (f) {
+		case FUNC_TRUE: return Boolean.TRUE;
+		case FUNC_FALSE: return Boolean.FALSE;
+		case FUNC_IF: //non-standard
+			return args[0].evalBoolean(model, evalContext) ?
+					args[1].eval(model, evalContext) : args[2].eval(model, evalContext);
+		case FUNC_COALESCE:
+			Object first = args[0].eval(model, evalContext);
+			return (!isNull(first) ? first : args[1].eval(model, evalContext));
+		}
 		
+		Object[] argVals = new Object[args.length];
 		for (int i = 0; i < args.length; i++) {
 			argVals[i] = args[i].eval(model, evalContext);
 		}
 		
 		//check built-in functions
-		if (name.equals("true") && args.length == 0) {
-			return Boolean.TRUE;
-		} else if (name.equals("false") && args.length == 0) {
-			return Boolean.FALSE;
-		} else if (name.equals("boolean") && args.length == 1) {
-			return toBoolean(argVals[0]);
-		} else if (name.equals("number") && args.length == 1) {
-			return toNumeric(argVals[0]);
-		} else if (name.equals("int") && args.length == 1) { //non-standard
-			return toInt(argVals[0]);
-		} else if (name.equals("string") && args.length == 1) {
-			return toString(argVals[0]);			
-		} else if (name.equals("date") && args.length == 1) { //non-standard
-			return toDate(argVals[0]);				
-		} else if (name.equals("not") && args.length == 1) {
-			return boolNot(argVals[0]);
-		} else if (name.equals("boolean-from-string") && args.length == 1) {
-			return boolStr(argVals[0]);
-		} else if (name.equals("format-date") && args.length == 2) {
-			return dateStr(argVals[0], argVals[1]);
-		} else if (name.equals("if") && args.length == 3) { //non-standard
-			return ifThenElse(argVals[0], argVals[1], argVals[2]);	
-		} else if ((name.equals("selected") || name.equals("is-selected")) && args.length == 2) { //non-standard
-			return multiSelected(argVals[0], argVals[1]);
-		} else if (name.equals("count-selected") && args.length == 1) { //non-standard
-			return countSelected(argVals[0]);		
-		} else if (name.equals("coalesce") && args.length == 2) {
-			return (!isNull(argVals[0]) ? argVals[0] : argVals[1]);
-		} else if (name.equals("count") && args.length == 1) {
-			return count(argVals[0]);
-		} else if (name.equals("sum") && args.length == 1) {
+		switch (f) {
+		case FUNC_BOOLEAN: return toBoolean(argVals[0]);
+		case FUNC_NUMBER: return toNumeric(argVals[0]);
+		case FUNC_INT: return toInt(argVals[0]); //non-standard
+		case FUNC_STRING: return toString(argVals[0]);
+		case FUNC_DATE: return toDate(argVals[0]); //non-standard
+		case FUNC_NOT: return boolNot(argVals[0]);
+		case FUNC_BOOLEAN_FROM_STRING: return boolStr(argVals[0]);
+		case FUNC_FORMAT_DATE: return dateStr(argVals[0], argVals[1]);
+		case FUNC_SELECTED: return multiSelected(argVals[0], argVals[1]); //non-standard
+		case FUNC_COUNT_SELECTED: return countSelected(argVals[0]); //non-standard
+		case FUNC_COUNT: return count(argVals[0]);
+		case FUNC_SUM:
 			if (argVals[0] instanceof XPathNodeset) {
 				return sum(((XPathNodeset)argVals[0]).toArgList());
 			} else {
 				throw new XPathTypeMismatchException("not a nodeset");				
 			}
-		} else if (name.equals("today") && args.length == 0) {
-			return DateUtils.roundDate(new Date());
-		} else if (name.equals("now") && args.length == 0) {
-			return new Date();
-		} else if (name.equals("concat")) {
+		case FUNC_TODAY: return DateUtils.roundDate(new Date());
+		case FUNC_NOW: return new Date();
+		case FUNC_CONCAT:
 			if (args.length == 1 && argVals[0] instanceof XPathNodeset) {
 				return join("", ((XPathNodeset)argVals[0]).toArgList());
 			} else {
 				return join("", argVals);
 			}
-		} else if (name.equals("join") && args.length >= 1) {
+		case FUNC_JOIN:
 			if (args.length == 2 && argVals[1] instanceof XPathNodeset) {
 				return join(argVals[0], ((XPathNodeset)argVals[1]).toArgList());
 			} else {
 				return join(argVals[0], subsetArgList(argVals, 1));
 			}
-		} else if (name.equals("substr") && (args.length == 2 || args.length == 3)) {
-			return substring(argVals[0], argVals[1], args.length == 3 ? argVals[2] : null);
-		} else if (name.equals("string-length") && args.length == 1) {
-			return stringLength(argVals[0]);
-		} else if (name.equals("checklist") && args.length >= 2) { //non-standard
+		case FUNC_SUBSTR: return substring(argVals[0], argVals[1], args.length == 3 ? argVals[2] : null);
+		case FUNC_STRING_LENGTH: return stringLength(argVals[0]);
+		case FUNC_CHECKLIST: //non-standard
 			if (args.length == 3 && argVals[2] instanceof XPathNodeset) {
 				return checklist(argVals[0], argVals[1], ((XPathNodeset)argVals[2]).toArgList());
 			} else {
 				return checklist(argVals[0], argVals[1], subsetArgList(argVals, 2));
 			}
-		} else if (name.equals("weighted-checklist") && args.length >= 2 && args.length % 2 == 0) { //non-standard
+		case FUNC_WEIGHTED_CHECKLIST: //non-standard
 			if (args.length == 4 && argVals[2] instanceof XPathNodeset && argVals[3] instanceof XPathNodeset) {
 				Object[] factors = ((XPathNodeset)argVals[2]).toArgList();
 				Object[] weights = ((XPathNodeset)argVals[3]).toArgList();
@@ -208,14 +348,12 @@ public class XPathFuncExpr extends XPathExpression {
 			} else {
 				return checklistWeighted(argVals[0], argVals[1], subsetArgList(argVals, 2, 2), subsetArgList(argVals, 3, 2));
 			}
-		} else if (name.equals("regex") && args.length == 2) { //non-standard
-			return regex(argVals[0], argVals[1]);
-		} else if (name.equals("depend") && args.length >= 1) { //non-standard
-			return argVals[0];
-		} else if (name.equals("random") && args.length == 0) { //non-standard
+		case FUNC_REGEX: return regex(argVals[0], argVals[1]); //non-standard
+		case FUNC_DEPEND: return argVals[0]; //non-standard
+		case FUNC_RANDOM: //non-standard
 			//calculated expressions may be recomputed w/o warning! use with caution!!
 			return new Double(MathUtils.getRand().nextDouble());
-		} else if (name.equals("uuid") && (args.length == 0 || args.length == 1)) { //non-standard
+		case FUNC_UUID: //non-standard
 			//calculated expressions may be recomputed w/o warning! use with caution!!
 			if(args.length == 0) {
 				return PropertyUtils.genUUID();
@@ -223,9 +361,10 @@ public class XPathFuncExpr extends XPathExpression {
 			
 			int len = toInt(argVals[0]).intValue();			
 			return PropertyUtils.genGUID(len);
-		} else {
+		default:
 			//check for custom handler
-			IFunctionHandler handler = (IFunctionHandler)funcHandlers.get(name);
+			String name = id.toString();
+			IFunctionHandler handler = (IFunctionHandler)evalContext.getFunctionHandlers().get(name);
 			if (handler != null) {
 				return evalCustomFunction(handler, argVals);
 			} else {
@@ -363,10 +502,10 @@ public class XPathFuncExpr extends XPathExpression {
 			val = (Boolean)o;
 		} else if (o instanceof Double) {
 			double d = ((Double)o).doubleValue();
-			val = new Boolean(Math.abs(d) > 1.0e-12 && !Double.isNaN(d));
+			val = Boolean.valueOf(Math.abs(d) > 1.0e-12 && !Double.isNaN(d));
 		} else if (o instanceof String) {
 			String s = (String)o;
-			val = new Boolean(s.length() > 0);
+			val = Boolean.valueOf(s.length() > 0);
 		} else if (o instanceof Date) {
 			val = Boolean.TRUE;
 		} else if (o instanceof IExprDataType) {
@@ -388,45 +527,58 @@ public class XPathFuncExpr extends XPathExpression {
 	 * @return
 	 */
 	public static Double toNumeric (Object o) {
-		Double val = null;
+		o = unpack(o);
 		
+		if (o instanceof Double) {
+			return (Double)o;
+		} else if (o instanceof IExprDataType) {
+			Double val = ((IExprDataType)o).toNumeric();
+			if (val != null) {
+				return val;
+			}
+		}
+		return new Double(toDouble(o));
+	}
+	
+	/**
+	 * same as toNumeric(), without boxing the result
+	 * 
+	 * @param o
+	 * @return
+	 */
+	public static double toDouble (Object o) {
 		o = unpack(o);
 		
-		if (o instanceof Boolean) {
-			val = new Double(((Boolean)o).booleanValue() ? 1 : 0);
-		} else if (o instanceof Double) {
-			val = (Double)o;
+		if (o instanceof Double) {
+			return ((Double)o).doubleValue();
+		} else if (o instanceof Boolean) {
+			return ((Boolean)o).booleanValue() ? 1 : 0;
 		} else if (o instanceof String) {
 			/* annoying, but the xpath spec doesn't recognize scientific notation, or +/-Infinity
 			 * when converting a string to a number
 			 */
 			
-			String s = (String)o;
-			double d;
+			String s = ((String)o).trim();
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c != '-' && c != '.' && (c < '0' || c > '9'))
+					return Double.NaN;
+			}
 			try {
-				s = s.trim();
-				for (int i = 0; i < s.length(); i++) {
-					char c = s.charAt(i);
-					if (c != '-' && c != '.' && (c < '0' || c > '9'))
-						throw new NumberFormatException();
-				}
-				
-				d = Double.parseDouble(s);
-				val = new Double(d);
+				return Double.parseDouble(s);
 			} catch (NumberFormatException nfe) {
-				val = new Double(Double.NaN);
+				return Double.NaN;
 			}
 		} else if (o instanceof Date) {
-			val = new Double(DateUtils.daysSinceEpoch((Date) o));
+			return DateUtils.daysSinceEpoch((Date) o);
 		} else if (o instanceof IExprDataType) {
-			val = ((IExprDataType)o).toNumeric();
+			Double val = ((IExprDataType)o).toNumeric();
+			if (val != null) {
+				return val.doubleValue();
+			}
 		}
 		
-		if (val != null) {
-			return val;
-		} else {
-			throw new XPathTypeMismatchException("converting to numeric");
-		}
+		throw new XPathTypeMismatchException("converting to numeric");
 	}
 
 	/**
@@ -548,7 +700,7 @@ public class XPathFuncExpr extends XPathExpression {
 
 	public static Boolean boolNot (Object o) {
 		boolean b = toBoolean(o).booleanValue();
-		return new Boolean(!b);
+		return Boolean.valueOf(!b);
 	}
 	
 	public static Boolean boolStr (Object o) {
@@ -734,9 +886,7 @@ public class XPathFuncExpr extends XPathExpression {
 		String str = toString(o1);
 		String re = toString(o2);
 		
-		RE regexp = new RE(re);
-		boolean result = regexp.match(str);
-		return new Boolean(result);
+		return Boolean.valueOf(RegexCache.getShared().matches(re, str));
 	}
 
 	private static Object[] subsetArgList (Object[] args, int start) {
@@ -33,8 +33,15 @@ public class XPathNumNegExpr extends XPathUnaryOpExpr {
 	}
 	
 	public Object eval (FormInstance model, EvaluationContext evalContext) {
-		double aval = XPathFuncExpr.toNumeric(a.eval(model, evalContext)).doubleValue();
-		return new Double(-aval);
+		return new Double(evalNumeric(model, evalContext));
+	}
+	
+	public double evalNumeric (FormInstance model, EvaluationContext evalContext) {
+		return -a.evalNumeric(model, evalContext);
+	}
+	
+	public int getStaticType () {
+		return TYPE_NUMERIC;
 	}
 
 	public String toString () {
@@ -38,6 +38,14 @@ public class XPathNumericLiteral extends XPathExpression {
 	public Object eval (FormInstance model, EvaluationContext evalContext) {
 		return new Double(d);
 	}
+	
+	public double evalNumeric (FormInstance model, EvaluationContext evalContext) {
+		return d;
+	}
+	
+	public int getStaticType () {
+		return TYPE_NUMERIC;
+	}
 
 	public String toString () {
 		return "{num:" + Double.toString(d) + "}";
@@ -42,6 +42,8 @@ public class XPathPathExpr extends XPathExpression {
 	public static final int INIT_CONTEXT_RELATIVE = 1;
 	public static final int INIT_CONTEXT_EXPR = 2;
 
+	//parsed expressions are shared through XPathExpressionCache: never change these on an expression obtained from
+	//XPathParseTool.parseXPath; get a tree of your own from XPathParseTool.parseXPathCopy instead
 	public int init_context;
 	public XPathStep[] steps;
 
@@ -72,16 +74,16 @@ public class XPathPathExpr extends XPathExpression {
 	 *   all '..' steps must come before anything else
 	 */
 	public TreeReference getReference (boolean allowPredicates) throws XPathUnsupportedException {
-		TreeReference ref = new TreeReference();
+		TreeReference ref;
 		boolean parentsAllowed;
 		
 		switch (init_context) {
 		case XPathPathExpr.INIT_CONTEXT_ROOT:
-			ref.setRefLevel(TreeReference.REF_ABSOLUTE);
+			ref = TreeReference.rootRef();
 			parentsAllowed = false;
 			break;
 		case XPathPathExpr.INIT_CONTEXT_RELATIVE:
-			ref.setRefLevel(0);
+			ref = TreeReference.selfRef();
 			parentsAllowed = true;
 			break;
 		default: throw new XPathUnsupportedException("filter expression");
@@ -102,11 +104,11 @@ public class XPathPathExpr extends XPathExpression {
 				if (!parentsAllowed || step.test != XPathStep.TEST_TYPE_NODE) {
 					throw new XPathUnsupportedException("step other than 'child::name', '.', '..'");
 				} else {
-					ref.incrementRefLevel();
+					ref = ref.getParentRef();
 				}
 			} else if (step.axis == XPathStep.AXIS_ATTRIBUTE) {
 				if (step.test == XPathStep.TEST_NAME) {
-					ref.add(step.name.toString(), TreeReference.INDEX_ATTRIBUTE);
+					ref = ref.extendRef(step.name.toString(), TreeReference.INDEX_ATTRIBUTE);
 					parentsAllowed = false;
 					//TODO: Can you step back from an attribute, or should this always be
 					//the last step?
@@ -115,10 +117,10 @@ public class XPathPathExpr extends XPathExpression {
 				}
 			}else if (step.axis == XPathStep.AXIS_CHILD) {
 				if (step.test == XPathStep.TEST_NAME) {
-					ref.add(step.name.toString(), TreeReference.INDEX_UNBOUND);
+					ref = ref.extendRef(step.name.toString(), TreeReference.INDEX_UNBOUND);
 					parentsAllowed = false;
 				} else if(step.test == XPathStep.TEST_NAME_WILDCARD) {
-					ref.add(TreeReference.NAME_WILDCARD, TreeReference.INDEX_UNBOUND);
+					ref = ref.extendRef(TreeReference.NAME_WILDCARD, TreeReference.INDEX_UNBOUND);
 					parentsAllowed = false;
 				} else {
 					throw new XPathUnsupportedException("step other than 'child::name', '.', '..'");
@@ -132,13 +134,14 @@ public class XPathPathExpr extends XPathExpression {
 	}
 
 	public XPathNodeset eval (FormInstance m, EvaluationContext evalContext) {
-		TreeReference genericRef = getReference();
+		boolean filtered = hasPredicates();
+		TreeReference genericRef = getReference(filtered);
 		if (genericRef.isAbsolute() && m.getTemplatePath(genericRef) == null) {
 			throw new XPathTypeMismatchException("Node " + genericRef.toString() + " does not exist!");
 		}
 		
 		TreeReference ref = genericRef.contextualize(evalContext.getContextRef());
-		Vector<TreeReference> nodesetRefs = m.expandReference(ref);
+		Vector<TreeReference> nodesetRefs = (filtered ? expandFiltered(m, evalContext, ref) : m.expandReference(ref));
 		
 		//to fix conditions based on non-relevant data, filter the nodeset by relevancy
 		for (int i = 0; i < nodesetRefs.size(); i++) {
@@ -151,6 +154,151 @@ public class XPathPathExpr extends XPathExpression {
 		return new XPathNodeset(nodesetRefs, m, evalContext);
 	}
 
+	private boolean hasPredicates () {
+		for (int i = 0; i < steps.length; i++) {
+			if (steps[i].predicates.length > 0)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * expandReference(ref), keeping at each step only the nodes that pass its predicates. ref is the contextualized
+	 * reference of this path; its last levels are the steps that go down a level, since '.' adds no level and '..'
+	 * may only lead the path.
+	 */
+	private Vector<TreeReference> expandFiltered (FormInstance m, EvaluationContext evalContext, TreeReference ref) {
+		int down = 0;
+		for (int i = 0; i < steps.length; i++) {
+			XPathStep step = steps[i];
+			if (step.axis == XPathStep.AXIS_CHILD || step.axis == XPathStep.AXIS_ATTRIBUTE) {
+				down++;
+			} else if (step.predicates.length > 0) {
+				throw new XPathUnsupportedException("predicates on '.' or '..'");
+			}
+		}
+		
+		int level = ref.size() - down;
+		String[] names = new String[level];
+		int[] mults = new int[level];
+		for (int i = 0; i < level; i++) {
+			names[i] = ref.getName(i);
+			mults[i] = ref.getMultiplicity(i);
+		}
+		Vector<TreeReference> nodes = m.expandReference(new TreeReference(ref.getRefLevel(), names, mults));
+		
+		for (int i = 0; i < steps.length; i++) {
+			XPathStep step = steps[i];
+			if (step.axis != XPathStep.AXIS_CHILD && step.axis != XPathStep.AXIS_ATTRIBUTE)
+				continue;
+			
+			String name = ref.getName(level);
+			int mult = ref.getMultiplicity(level);
+			level++;
+			
+			Vector<TreeReference> next = new Vector<TreeReference>();
+			for (int j = 0; j < nodes.size(); j++) {
+				TreeReference parentRef = nodes.elementAt(j);
+				Vector<TreeReference> candidates = null;
+				int first = 0;
+				
+				//an equality test on a child's value is looked up in an index of the children rather than tested on each
+				if (step.predicates.length > 0 && mult == TreeReference.INDEX_UNBOUND && step.axis == XPathStep.AXIS_CHILD
+						&& step.test == XPathStep.TEST_NAME) {
+					candidates = lookup(m, evalContext, parentRef, name, step.predicates[0]);
+					if (candidates != null)
+						first = 1;
+				}
+				if (candidates == null) {
+					candidates = m.expandReference(parentRef.extendRef(name, mult));
+				}
+				
+				for (int k = first; k < step.predicates.length; k++) {
+					candidates = filter(m, evalContext, candidates, step.predicates[k]);
+				}
+				for (int k = 0; k < candidates.size(); k++) {
+					next.addElement(candidates.elementAt(k));
+				}
+			}
+			nodes = next;
+		}
+		return nodes;
+	}
+	
+	//the nodes that pass the predicate, which is evaluated with each node as the context; a number selects by
+	//position and a nodeset passes if it has any nodes
+	private static Vector<TreeReference> filter (FormInstance m, EvaluationContext evalContext, Vector<TreeReference> nodes, XPathExpression predicate) {
+		Vector<TreeReference> passed = new Vector<TreeReference>();
+		for (int i = 0; i < nodes.size(); i++) {
+			TreeReference node = nodes.elementAt(i);
+			Object result = predicate.eval(m, new EvaluationContext(evalContext, node));
+			boolean pass;
+			if (result instanceof XPathNodeset) {
+				pass = ((XPathNodeset)result).size() > 0;
+			} else if (result instanceof Double) {
+				pass = (((Double)result).doubleValue() == i + 1);
+			} else {
+				pass = XPathFuncExpr.toBoolean(result).booleanValue();
+			}
+			if (pass)
+				passed.addElement(node);
+		}
+		return passed;
+	}
+	
+	/**
+	 * The children of parentRef named name that pass the predicate, looked up in an index if the predicate compares
+	 * the text of a child with something that does not depend on the node being tested, e.g. [district = /data/district].
+	 * 
+	 * @return null if the predicate has to be tested on each node
+	 */
+	private static Vector<TreeReference> lookup (FormInstance m, EvaluationContext evalContext, TreeReference parentRef, String name, XPathExpression predicate) {
+		if (!(predicate instanceof XPathEqExpr) || !((XPathEqExpr)predicate).equal)
+			return null;
+		
+		XPathEqExpr eq = (XPathEqExpr)predicate;
+		String keyName = childName(eq.a);
+		XPathExpression other = eq.b;
+		if (keyName == null) {
+			keyName = childName(eq.b);
+			other = eq.a;
+		}
+		if (keyName == null || !isContextFree(other))
+			return null;
+		
+		Object value = XPathFuncExpr.unpack(other.eval(m, evalContext));
+		if (!(value instanceof String))
+			return null;
+		return ChildValueIndex.lookup(m, parentRef, name, keyName, (String)value);
+	}
+	
+	//the name of the child that x selects, if x is a bare 'name' path
+	private static String childName (XPathExpression x) {
+		if (!(x instanceof XPathPathExpr))
+			return null;
+		
+		XPathPathExpr path = (XPathPathExpr)x;
+		if (path.init_context != INIT_CONTEXT_RELATIVE || path.steps.length != 1)
+			return null;
+		
+		XPathStep step = path.steps[0];
+		if (step.axis != XPathStep.AXIS_CHILD || step.test != XPathStep.TEST_NAME || step.predicates.length > 0)
+			return null;
+		return step.name.toString();
+	}
+	
+	//whether x has the same value whichever node is the context
+	private static boolean isContextFree (XPathExpression x) {
+		if (x instanceof XPathStringLiteral) {
+			return true;
+		} else if (x instanceof XPathPathExpr) {
+			XPathPathExpr path = (XPathPathExpr)x;
+			return path.init_context == INIT_CONTEXT_ROOT && !path.hasPredicates();
+		} else {
+			return false;
+		}
+	}
+
 //	
 //	boolean nodeset = forceNodeset;
 //	if (!nodeset) {
@@ -199,7 +347,9 @@ public class XPathPathExpr extends XPathExpression {
 		} else if (val instanceof SelectOneData) {
 			return ((Selection)val.getValue()).getValue();
 		} else if (val instanceof SelectMultiData) {
-			return (new XFormAnswerDataSerializer()).serializeAnswerData(val);
+			StringBuilder sb = new StringBuilder();
+			(new XFormAnswerDataSerializer()).appendAnswerData(val, sb);
+			return sb.toString();
 		} else if (val instanceof DateData) {
 			return val.getValue();
 		} else if (val instanceof BooleanData) {
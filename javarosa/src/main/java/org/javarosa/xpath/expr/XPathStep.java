@@ -58,6 +58,8 @@ public class XPathStep implements Externalizable {
 		return new XPathStep(AXIS_DESCENDANT_OR_SELF, TEST_TYPE_NODE);
 	}
 
+	//steps of parsed expressions are shared through XPathExpressionCache: never change these on a step of an
+	//expression obtained from XPathParseTool.parseXPath; get a tree of your own from XPathParseTool.parseXPathCopy
 	public int axis;
 	public int test;
 	public XPathExpression[] predicates;
@@ -38,6 +38,10 @@ public class XPathStringLiteral extends XPathExpression {
 	public Object eval (FormInstance model, EvaluationContext evalContext) {
 		return s;
 	}
+	
+	public int getStaticType () {
+		return TYPE_STRING;
+	}
 
 	public String toString () {
 		return "{str:\'" + s + "\'}"; //TODO: s needs to be escaped (' -> \'; \ -> \\)
@@ -24,145 +24,168 @@ public class Lexer {
 	public static final int LEX_CONTEXT_VAL = 1;
 	public static final int LEX_CONTEXT_OP = 2;	
 	
+	//tokens that carry no value are immutable once lexed, so one instance of each is shared
+	private static final Token[] SHARED = new Token[Token.POW + 1];
+	
+	static {
+		for (int type = 1; type < SHARED.length; type++) {
+			switch (type) {
+			case Token.NSWILDCARD: case Token.NUM: case Token.QNAME: case Token.STR: case Token.VAR:
+				break;
+			default:
+				SHARED[type] = new Token(type);
+			}
+		}
+	}
+	
 	public static Vector lex (String expr) throws XPathSyntaxException {
-		Vector tokens = new Vector();
+		char[] chars = expr.toCharArray();
+		int length = chars.length;
+		Vector tokens = new Vector(length / 4 + 4);
 		
 		int i = 0;
 		int context = LEX_CONTEXT_VAL;
 		
-		while (i < expr.length()) {
-			int c = expr.charAt(i);
-			int d = getChar(expr, i + 1);
+		while (i < length) {
+			int c = chars[i];
+			int d = (i + 1 < length ? chars[i + 1] : -1);
 			
-			Token token = null;
+			int type = 0;
+			Object val = null;
 			int skip = 1;
 			
-			if (" \n\t\f\r".indexOf(c) >= 0) {
+			switch (c) {
+			case ' ': case '\n': case '\t': case '\f': case '\r':
 				/* whitespace; do nothing */
-			} else if (c == '=') {
-				token = new Token(Token.EQ);
-			} else if (c == '!' && d == '=') {
-				token = new Token(Token.NEQ);
-				skip = 2;
-			} else if (c == '<') {
-				if (d == '=') {
-					token = new Token(Token.LTE);
-					skip = 2;
-				} else {
-					token = new Token(Token.LT);
-				}
-			} else if (c == '>') {
-				if (d == '=') {
-					token = new Token(Token.GTE);
-					skip = 2;
-				} else {
-					token = new Token(Token.GT);
-				}
-			} else if (c == '+') {
-				token = new Token(Token.PLUS);
-			} else if (c == '-') {
-				token = new Token(context == LEX_CONTEXT_VAL ? Token.UMINUS : Token.MINUS); //not sure this is entirely correct
-			} else if (c == '*') {
-				token = new Token(context == LEX_CONTEXT_VAL ? Token.WILDCARD : Token.MULT);
-			} else if (c == '|') {
-				token = new Token(Token.UNION);
-			} else if (c == '/') {
-				if (d == '/') {
-					token = new Token(Token.DBL_SLASH);
-					skip = 2;
-				} else {
-					token = new Token(Token.SLASH);
-				}
-			} else if (c == '[') {
-				token = new Token(Token.LBRACK);
-			} else if (c == ']') {
-				token = new Token(Token.RBRACK);
-			} else if (c == '(') {
-				token = new Token(Token.LPAREN);
-			} else if (c == ')') {
-				token = new Token(Token.RPAREN);
-			} else if (c == '.') {
+				break;
+			case '=':
+				type = Token.EQ;
+				break;
+			case '<':
+				type = (d == '=' ? Token.LTE : Token.LT);
+				break;
+			case '>':
+				type = (d == '=' ? Token.GTE : Token.GT);
+				break;
+			case '+':
+				type = Token.PLUS;
+				break;
+			case '-':
+				type = (context == LEX_CONTEXT_VAL ? Token.UMINUS : Token.MINUS); //not sure this is entirely correct
+				break;
+			case '*':
+				type = (context == LEX_CONTEXT_VAL ? Token.WILDCARD : Token.MULT);
+				break;
+			case '|':
+				type = Token.UNION;
+				break;
+			case '/':
+				type = (d == '/' ? Token.DBL_SLASH : Token.SLASH);
+				break;
+			case '[':
+				type = Token.LBRACK;
+				break;
+			case ']':
+				type = Token.RBRACK;
+				break;
+			case '(':
+				type = Token.LPAREN;
+				break;
+			case ')':
+				type = Token.RPAREN;
+				break;
+			case '@':
+				type = Token.AT;
+				break;
+			case ',':
+				type = Token.COMMA;
+				break;
+			case '.':
 				if (d == '.') {
-					token = new Token(Token.DBL_DOT);
-					skip = 2;
+					type = Token.DBL_DOT;
 				} else if (isDigit(d)) {
-					skip = matchNumeric(expr, i);
-					token = new Token(Token.NUM, Double.valueOf(expr.substring(i, i + skip)));
-				} else {
-					token = new Token(Token.DOT);					
-				}
-			} else if (c == '@') {
-				token = new Token(Token.AT);
-			} else if (c == ',') {
-				token = new Token(Token.COMMA);
-			} else if (c == ':' && d == ':') {
-				token = new Token(Token.DBL_COLON);
-				skip = 2;
-			} else if (context == LEX_CONTEXT_OP && i + 3 <= expr.length() && "and".equals(expr.substring(i, i + 3))) {
-				token = new Token(Token.AND);
-				skip = 3;
-			} else if (context == LEX_CONTEXT_OP && i + 2 <= expr.length() && "or".equals(expr.substring(i, i + 2))) {
-				token = new Token(Token.OR);
-				skip = 2;
-			} else if (context == LEX_CONTEXT_OP && i + 3 <= expr.length() && "div".equals(expr.substring(i, i + 3))) {
-				token = new Token(Token.DIV);
-				skip = 3;
-			} else if (context == LEX_CONTEXT_OP && i + 3 <= expr.length() && "mod".equals(expr.substring(i, i + 3))) {
-				token = new Token(Token.MOD);
-				skip = 3;				
-			}else if (context == LEX_CONTEXT_OP && i + 3 <= expr.length() && "pow".equals(expr.substring(i, i + 3))) {
-                token = new Token(Token.POW);
-                skip = 3;
-            } else if (c == '$') {
-				int len = matchQName(expr, i + 1);
-				if (len == 0) {
-					throw new XPathSyntaxException();
+					skip = matchNumeric(chars, i);
+					type = Token.NUM;
+					val = Double.valueOf(new String(chars, i, skip));
 				} else {
-					token = new Token(Token.VAR, new XPathQName(expr.substring(i + 1, i + len + 1)));
-					skip = len + 1;
+					type = Token.DOT;
 				}
-			} else if (c == '\'' || c == '\"') {
+				break;
+			case '\'': case '\"':
 				int end = expr.indexOf(c, i + 1);
 				if (end == -1) {
 					throw new XPathSyntaxException();
-				} else {
-					token = new Token(Token.STR, expr.substring(i + 1, end));
-					skip = (end - i) + 1;
 				}
-			} else if (isDigit(c)) {
-				skip = matchNumeric(expr, i);
-				token = new Token(Token.NUM, Double.valueOf(expr.substring(i, i + skip)));
-			} else if (context == LEX_CONTEXT_VAL && (isAlpha(c) || c == '_')) {
-				int len = matchQName(expr, i);
-				String name = expr.substring(i, i + len);
-				if (name.indexOf(':') == -1 && getChar(expr, i + len) == ':' && getChar(expr, i + len + 1) == '*') {
-					token = new Token(Token.NSWILDCARD, name);
-					skip = len + 2;
+				type = Token.STR;
+				val = expr.substring(i + 1, end);
+				skip = (end - i) + 1;
+				break;
+			case '$':
+				int len = matchQName(chars, i + 1);
+				if (len == 0) {
+					throw new XPathSyntaxException();
+				}
+				type = Token.VAR;
+				val = new XPathQName(new String(chars, i + 1, len));
+				skip = len + 1;
+				break;
+			default:
+				if (c == '!' && d == '=') {
+					type = Token.NEQ;
+				} else if (c == ':' && d == ':') {
+					type = Token.DBL_COLON;
+				} else if (context == LEX_CONTEXT_OP && expr.startsWith("and", i)) {
+					type = Token.AND;
+				} else if (context == LEX_CONTEXT_OP && expr.startsWith("or", i)) {
+					type = Token.OR;
+				} else if (context == LEX_CONTEXT_OP && expr.startsWith("div", i)) {
+					type = Token.DIV;
+				} else if (context == LEX_CONTEXT_OP && expr.startsWith("mod", i)) {
+					type = Token.MOD;
+				} else if (context == LEX_CONTEXT_OP && expr.startsWith("pow", i)) {
+					type = Token.POW;
+				} else if (isDigit(c)) {
+					skip = matchNumeric(chars, i);
+					type = Token.NUM;
+					val = Double.valueOf(new String(chars, i, skip));
+				} else if (context == LEX_CONTEXT_VAL && (isAlpha(c) || c == '_')) {
+					int qlen = matchQName(chars, i);
+					String name = new String(chars, i, qlen);
+					if (name.indexOf(':') == -1 && getChar(chars, i + qlen) == ':' && getChar(chars, i + qlen + 1) == '*') {
+						type = Token.NSWILDCARD;
+						val = name;
+						skip = qlen + 2;
+					} else {
+						type = Token.QNAME;
+						val = new XPathQName(name);
+						skip = qlen;
+					}
 				} else {
-					token = new Token(Token.QNAME, new XPathQName(name));
-					skip = len;
+					throw new XPathSyntaxException();
 				}
-			} else {
-				throw new XPathSyntaxException();
 			}
 			
-			if (token != null) {
-				if (token.type == Token.WILDCARD ||
-					token.type == Token.NSWILDCARD ||
-					token.type == Token.QNAME ||
-					token.type == Token.VAR ||
-					token.type == Token.NUM ||
-					token.type == Token.STR ||
-					token.type == Token.RBRACK ||
-					token.type == Token.RPAREN ||
-					token.type == Token.DOT ||
-					token.type == Token.DBL_DOT) {
+			if (type != 0) {
+				switch (type) {
+				case Token.NEQ: case Token.LTE: case Token.GTE: case Token.DBL_SLASH: case Token.DBL_DOT:
+				case Token.DBL_COLON: case Token.OR:
+					skip = 2;
+					break;
+				case Token.AND: case Token.DIV: case Token.MOD: case Token.POW:
+					skip = 3;
+					break;
+				}
+				
+				switch (type) {
+				case Token.WILDCARD: case Token.NSWILDCARD: case Token.QNAME: case Token.VAR: case Token.NUM:
+				case Token.STR: case Token.RBRACK: case Token.RPAREN: case Token.DOT: case Token.DBL_DOT:
 					context = LEX_CONTEXT_OP;
-				} else {
+					break;
+				default:
 					context = LEX_CONTEXT_VAL;
-				}		
+				}
 				
-				tokens.addElement(token);
+				tokens.addElement(SHARED[type] != null ? SHARED[type] : new Token(type, val));
 			}
 			i += skip;
 		}
@@ -170,13 +193,13 @@ public class Lexer {
 		return tokens;
 	}
 	
-	private static int matchNumeric (String expr, int i) {
+	private static int matchNumeric (char[] expr, int i) {
 		boolean seenDecimalPoint = false;
 		int start = i;
 		int c;
 		
-		for (; i < expr.length(); i++) {
-			c = expr.charAt(i);
+		for (; i < expr.length; i++) {
+			c = expr[i];
 			
 			if (!(isDigit(c) || (!seenDecimalPoint && c == '.')))
 				break;
@@ -188,7 +211,7 @@ public class Lexer {
 		return i - start;
 	}
 
-	private static int matchQName (String expr, int i) {
+	private static int matchQName (char[] expr, int i) {
 		int len = matchNCName(expr, i);
 
 		if (len > 0 && getChar(expr, i + len) == ':') {
@@ -201,12 +224,12 @@ public class Lexer {
 		return len;
 	}
 	
-	private static int matchNCName (String expr, int i) {
+	private static int matchNCName (char[] expr, int i) {
 		int start = i;
 		int c;
 		
-		for (; i < expr.length(); i++) {
-			c = expr.charAt(i);
+		for (; i < expr.length; i++) {
+			c = expr[i];
 			
 			if (!(isAlpha(c) || c == '_' || (i > start && (isDigit(c) || c == '.' || c == '-'))))
 				break;
@@ -216,8 +239,8 @@ public class Lexer {
 	}
 	
 	//get char from string, return -1 for EOF
-	private static int getChar (String expr, int i) {
-		return (i < expr.length() ? expr.charAt(i) : -1);
+	private static int getChar (char[] expr, int i) {
+		return (i < expr.length ? expr[i] : -1);
 	}
 	
 	private static boolean isDigit (int c) {
@@ -53,8 +53,9 @@ public class Token {
 	public static final int WILDCARD = 32;
     public static final int POW = 33;
 
-    public int type;
-	public Object val;
+	//final, as the lexer hands out one shared instance of each token type that carries no value
+	public final int type;
+	public final Object val;
 	
 	public Token (int type) {
 		this(type, null);
@@ -0,0 +1,83 @@
+package org.javarosa.core.model;
+
+import org.javarosa.core.model.condition.Triggerable;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xform.parse.XFormParser;
+import org.javarosa.xpath.XPathConditional;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class FormDefTest {
+    private FormDef formDef;
+
+    @Before
+    public void setUp() throws Exception {
+        XFormParser parser = new XFormParser(getFile("javarosa/sampleForm.xml"));
+        parser.validate();
+        formDef = parser.getFormDef();
+        formDef.initialize(true);
+    }
+
+    @Test
+    public void setValue_shouldRecalculateEverythingThatDependsOnTheAnswer() {
+        formDef.setValue(new IntegerData(20), ref("age"));
+
+        assertThat(value("age_months"), is("240"));
+        assertThat(value("adult"), is("yes"));
+        assertThat(formDef.getInstance().resolveReference(ref("phone")).isRelevant(), is(true));
+
+        formDef.setValue(new IntegerData(10), ref("age"));
+
+        assertThat(value("age_months"), is("120"));
+        assertThat(value("adult"), is("no"));
+        assertThat(formDef.getInstance().resolveReference(ref("phone")).isRelevant(), is(false));
+    }
+
+    @Test
+    public void triggerTriggerables_shouldNotRewriteCalculatesWhoseInputsAreUnchanged() {
+        formDef.setValue(new IntegerData(20), ref("age"));
+        long version = formDef.getInstance().resolveReference(ref("age_months")).getVersion();
+
+        formDef.triggerTriggerables(ref("age"));
+        assertThat(formDef.getInstance().resolveReference(ref("age_months")).getVersion(), is(version));
+
+        formDef.setValue(new IntegerData(30), ref("age"));
+        assertThat(value("age_months"), is("360"));
+    }
+
+    @Test
+    public void finalizeTriggerables_shouldOrderTriggerablesAfterTheOnesTheyDependOn() {
+        int adult = -1;
+        int childAgeRelevance = -1;
+        for (int i = 0; i < formDef.triggerables.size(); i++) {
+            Triggerable t = (Triggerable) formDef.triggerables.elementAt(i);
+            String expr = ((XPathConditional) t.expr).xpath;
+            if (expr.startsWith("if(")) {
+                adult = i;
+            } else if (expr.contains("'yes'")) {
+                childAgeRelevance = i;
+            }
+        }
+
+        assertThat(adult >= 0 && adult < childAgeRelevance, is(true));
+    }
+
+    private TreeReference ref(String name) {
+        return TreeReference.rootRef().extendRef("data", 0).extendRef(name, 0);
+    }
+
+    private String value(String name) {
+        return formDef.getInstance().resolveReference(ref(name)).getValue().uncast().getString();
+    }
+
+    private FileReader getFile(String file) throws FileNotFoundException {
+        return new FileReader(this.getClass().getClassLoader().getResource(file).getFile());
+    }
+}
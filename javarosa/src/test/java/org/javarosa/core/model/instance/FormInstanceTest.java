@@ -0,0 +1,65 @@
+package org.javarosa.core.model.instance;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FormInstanceTest {
+    @Test
+    public void resolveReference_shouldFollowNodesAddedRemovedAndRenumbered() {
+        TreeElement data = new TreeElement("data");
+        TreeElement first = new TreeElement("child", 0);
+        TreeElement second = new TreeElement("child", 1);
+        data.addChild(first);
+        data.addChild(second);
+        FormInstance instance = new FormInstance(data);
+        TreeReference firstRef = TreeReference.rootRef().extendRef("data", 0).extendRef("child", 0);
+        TreeReference secondRef = TreeReference.rootRef().extendRef("data", 0).extendRef("child", 1);
+
+        assertThat(instance.resolveReference(firstRef), is(first));
+        assertThat(instance.resolveReference(firstRef), is(first));
+        assertThat(instance.resolveReference(secondRef), is(second));
+
+        data.removeChild(first);
+        second.setMult(0);
+        assertThat(instance.resolveReference(firstRef), is(second));
+        assertThat(instance.resolveReference(secondRef), is(nullValue()));
+
+        TreeElement third = new TreeElement("child", 1);
+        data.addChild(third);
+        assertThat(instance.resolveReference(secondRef), is(third));
+    }
+
+    @Test
+    public void resolveReference_shouldGiveTheNodesOfANewRoot() {
+        TreeElement data = new TreeElement("data");
+        data.addChild(new TreeElement("name"));
+        FormInstance instance = new FormInstance(data);
+        TreeReference nameRef = TreeReference.rootRef().extendRef("data", 0).extendRef("name", 0);
+        assertThat(instance.resolveReference(nameRef), is(data.getChildAt(0)));
+
+        TreeElement replacement = new TreeElement("data");
+        replacement.addChild(new TreeElement("name"));
+        instance.setRoot(replacement);
+
+        assertThat(instance.resolveReference(nameRef), is(replacement.getChildAt(0)));
+    }
+
+    @Test
+    public void resolveReference_shouldGiveTheNodesOfACloneNotOfItsTemplate() {
+        TreeElement data = new TreeElement("data");
+        data.addChild(new TreeElement("name"));
+        FormInstance template = new FormInstance(data);
+        template.freeze();
+        TreeReference nameRef = TreeReference.rootRef().extendRef("data", 0).extendRef("name", 0);
+        TreeElement templateName = template.resolveReference(nameRef);
+
+        FormInstance clone = template.clone();
+        TreeElement cloneName = clone.resolveReference(nameRef);
+        assertThat(cloneName == templateName, is(false));
+        assertThat(clone.resolveReference(nameRef), is(cloneName));
+        assertThat(template.resolveReference(nameRef), is(templateName));
+    }
+}
@@ -0,0 +1,187 @@
+package org.javarosa.core.model.instance;
+
+import org.javarosa.core.model.data.StringData;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TreeElementTest {
+    @Test
+    public void getChild_shouldFindRepeatInstancesByNameAndMultiplicity() {
+        TreeElement parent = new TreeElement("data");
+        parent.addChild(new TreeElement("name"));
+        TreeElement template = new TreeElement("child", TreeReference.INDEX_TEMPLATE);
+        parent.addChild(template);
+        for (int i = 0; i < 3; i++) {
+            parent.addChild(new TreeElement("child", i));
+        }
+        parent.addChild(new TreeElement("age"));
+
+        assertThat(parent.getChild("child", TreeReference.INDEX_TEMPLATE), is(template));
+        assertThat(parent.getChild("child", 2).getMult(), is(2));
+        assertThat(parent.getChild("child", 3), nullValue());
+        assertThat(parent.getChild("missing", 0), nullValue());
+        assertThat(parent.getChildMultiplicity("child"), is(3));
+        assertThat(parent.getChildrenWithName("child").size(), is(3));
+        assertThat(parent.getChildAt(1), is(template));
+        assertThat(parent.getChildAt(5).getName(), is("age"));
+    }
+
+    @Test
+    public void getChild_shouldFollowRemovalsAndRenumbering() {
+        TreeElement parent = new TreeElement("data");
+        for (int i = 0; i < 3; i++) {
+            parent.addChild(new TreeElement("child", i));
+        }
+
+        parent.removeChild(parent.getChild("child", 0));
+        parent.getChild("child", 1).setMult(0);
+        parent.getChild("child", 2).setMult(1);
+
+        assertThat(parent.getChildMultiplicity("child"), is(2));
+        assertThat(parent.getChild("child", 1), is(parent.getChildAt(1)));
+
+        parent.removeChildAt(0);
+        assertThat(parent.getChild("child", 0), nullValue());
+        assertThat(parent.getChildMultiplicity("child"), is(1));
+    }
+
+    @Test
+    public void getChild_shouldSeeChildrenAddedThroughAShallowCopy() {
+        TreeElement parent = new TreeElement("data");
+        parent.addChild(new TreeElement("child", 0));
+        TreeElement copy = parent.shallowCopy();
+
+        copy.addChild(new TreeElement("child", 1));
+
+        assertThat(parent.getChildMultiplicity("child"), is(2));
+        assertThat(parent.getChild("child", 1), is(copy.getChild("child", 1)));
+    }
+
+    @Test
+    public void getChild_shouldFollowRenamesOfChildrenSharedWithAShallowCopy() {
+        TreeElement parent = new TreeElement("data");
+        parent.addChild(new TreeElement("child", 0));
+        TreeElement copy = parent.shallowCopy();
+        // both indexes are built before the rename
+        assertThat(copy.getChildMultiplicity("child"), is(1));
+        assertThat(parent.getChildMultiplicity("child"), is(1));
+
+        copy.addChild(new TreeElement("child", 1));
+        copy.getChild("child", 1).setName("other");
+        parent.getChild("child", 0).setName("renamed");
+
+        assertThat(copy.getChild("child", 0), nullValue());
+        assertThat(copy.getChild("renamed", 0), is(parent.getChildAt(0)));
+        assertThat(parent.getChild("other", 1), is(copy.getChildAt(1)));
+    }
+
+    @Test
+    public void clone_shouldGiveFrozenInstancesIndependentCopies() {
+        TreeElement data = new TreeElement("data");
+        TreeElement group = new TreeElement("group");
+        TreeElement name = new TreeElement("name");
+        name.setValue(new StringData("blank"));
+        group.addChild(name);
+        data.addChild(group);
+        data.addChild(new TreeElement("child", TreeReference.INDEX_TEMPLATE));
+        FormInstance template = new FormInstance(data);
+        template.freeze();
+
+        FormInstance first = template.clone();
+        FormInstance second = template.clone();
+        first.getRoot().getChild("group", 0).getChild("name", 0).setValue(new StringData("first"));
+
+        assertThat(first.isFrozen(), is(false));
+        assertThat(first.getRoot().getChild("group", 0).getChild("name", 0).getValue().getValue(), is((Object) "first"));
+        assertThat(second.getRoot().getChild("group", 0).getChild("name", 0).getValue().getValue(), is((Object) "blank"));
+        assertThat(name.getValue().getValue(), is((Object) "blank"));
+        assertThat(first.getRoot().getChild("group", 0).getParent(), is(first.getRoot()));
+        assertThat(first.getRoot().getChild("child", TreeReference.INDEX_TEMPLATE) == data.getChild("child", TreeReference.INDEX_TEMPLATE), is(false));
+    }
+
+    @Test
+    public void deepCopy_shouldLeaveOutTemplatesOfAFrozenElementWhenAsked() {
+        TreeElement data = new TreeElement("data");
+        data.addChild(new TreeElement("child", TreeReference.INDEX_TEMPLATE));
+        data.addChild(new TreeElement("child", 0));
+        data.freeze();
+
+        TreeElement withTemplates = data.deepCopy(true);
+        TreeElement withoutTemplates = withTemplates.deepCopy(false);
+
+        assertThat(withoutTemplates.getNumChildren(), is(1));
+        assertThat(withoutTemplates.getChildAt(0).getMult(), is(0));
+        assertThat(withTemplates.getNumChildren(), is(2));
+    }
+
+    @Test
+    public void getStructureVersion_shouldOnlyChangeForTheTreeThatChanged() {
+        TreeElement first = new TreeElement("data");
+        TreeElement group = new TreeElement("group");
+        first.addChild(group);
+        TreeElement second = new TreeElement("data");
+        long firstVersion = first.getStructureVersion();
+        long secondVersion = second.getStructureVersion();
+
+        group.addChild(new TreeElement("name"));
+
+        assertThat(first.getStructureVersion() == firstVersion, is(false));
+        assertThat(group.getStructureVersion(), is(first.getStructureVersion()));
+        assertThat(second.getStructureVersion(), is(secondVersion));
+    }
+
+    @Test
+    public void getStructureVersion_shouldChangeWhenTheRootOfAnInstanceIsReplaced() {
+        FormInstance instance = new FormInstance(new TreeElement("data"));
+        long version = instance.getStructureVersion();
+
+        instance.setRoot(new TreeElement("data"));
+
+        assertThat(instance.getStructureVersion() > version, is(true));
+    }
+
+    @Test
+    public void deepCopy_shouldNotChangeTheStructureVersionOfTheCopiedTree() {
+        TreeElement data = new TreeElement("data");
+        TreeElement group = new TreeElement("group");
+        group.setAttribute(null, "id", "first");
+        group.addChild(new TreeElement("name"));
+        data.addChild(group);
+        FormInstance instance = new FormInstance(data);
+        instance.freeze();
+        long version = instance.getStructureVersion();
+
+        TreeElement copy = data.deepCopy(true);
+        copy.getChild("group", 0).getChild("name", 0).setValue(new StringData("changed"));
+
+        assertThat(instance.getStructureVersion(), is(version));
+        assertThat(copy.getChild("group", 0).getAttributeValue(null, "id"), is("first"));
+    }
+
+    @Test
+    public void shallowCopy_shouldGiveACopyOfAFrozenElementAChildListOfItsOwn() {
+        TreeElement data = new TreeElement("data");
+        data.addChild(new TreeElement("child", 0));
+        data.freeze();
+
+        TreeElement copy = data.shallowCopy();
+        copy.addChild(new TreeElement("child", 1));
+
+        assertThat(copy.getChildMultiplicity("child"), is(2));
+        assertThat(data.getChildMultiplicity("child"), is(1));
+        assertThat(copy.isFrozen(), is(false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setValue_shouldFailOnAFrozenElement() {
+        TreeElement data = new TreeElement("data");
+        TreeElement name = new TreeElement("name");
+        data.addChild(name);
+        data.freeze();
+
+        name.setValue(new StringData("changed"));
+    }
+}
@@ -0,0 +1,67 @@
+package org.javarosa.core.model.instance;
+
+import org.javarosa.core.util.externalizable.ExtUtil;
+import org.javarosa.core.util.externalizable.ExtWrapList;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.Vector;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThat;
+
+public class TreeReferenceTest {
+    @Test
+    public void extendRef_shouldLeaveTheOriginalReferenceUntouched() {
+        TreeReference data = TreeReference.rootRef().extendRef("data", 0);
+        TreeReference child = data.extendRef("child", 2);
+
+        assertThat(data.size(), is(1));
+        assertThat(child.toString(), is("/data/child[3]"));
+        assertThat(child.withMultiplicity(1, 0).toString(), is("/data/child[1]"));
+        assertThat(child.toString(), is("/data/child[3]"));
+        assertThat(child.getParentRef(), is(data));
+    }
+
+    @Test
+    public void equals_shouldTreatAnUnboundRootStepAsTheFirstInstance() {
+        TreeReference unbound = TreeReference.rootRef().extendRef("data", TreeReference.INDEX_UNBOUND).extendRef("age", 0);
+        TreeReference bound = new TreeReference(TreeReference.REF_ABSOLUTE, new String[]{"data", "age"}, new int[]{0, 0});
+
+        assertThat(unbound, is(bound));
+        assertThat(unbound.hashCode(), is(bound.hashCode()));
+        assertThat(bound.extendRef("x", 0), not(bound.extendRef("x", 1)));
+    }
+
+    @Test
+    public void contextualize_shouldTakeMultiplicitiesAndWildcardsFromTheContext() {
+        TreeReference context = new TreeReference(TreeReference.REF_ABSOLUTE, new String[]{"data", "child", "name"}, new int[]{0, 4, 0});
+        TreeReference relative = new TreeReference(1, new String[]{"age"}, new int[]{TreeReference.INDEX_UNBOUND});
+        TreeReference wildcard = new TreeReference(TreeReference.REF_ABSOLUTE, new String[]{"data", "*"}, new int[]{TreeReference.INDEX_UNBOUND, TreeReference.INDEX_UNBOUND});
+
+        assertThat(relative.contextualize(context).toString(), is("/data/child[5]/age"));
+        assertThat(wildcard.contextualize(context).toString(), is("/data/child[5]"));
+    }
+
+    @Test
+    public void writeExternal_shouldKeepTheVectorBasedLayout() throws Exception {
+        TreeReference ref = new TreeReference(TreeReference.REF_ABSOLUTE, new String[]{"data", "child"}, new int[]{0, TreeReference.INDEX_TEMPLATE});
+
+        Vector names = new Vector();
+        names.addElement("data");
+        names.addElement("child");
+        Vector mults = new Vector();
+        mults.addElement(new Integer(0));
+        mults.addElement(new Integer(TreeReference.INDEX_TEMPLATE));
+        ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(legacy);
+        ExtUtil.writeNumeric(out, TreeReference.REF_ABSOLUTE);
+        ExtUtil.write(out, new ExtWrapList(names));
+        ExtUtil.write(out, new ExtWrapList(mults));
+
+        assertThat(ExtUtil.serialize(ref), is(legacy.toByteArray()));
+        assertThat(ExtUtil.deserialize(legacy.toByteArray(), TreeReference.class), is((Object) ref));
+    }
+}
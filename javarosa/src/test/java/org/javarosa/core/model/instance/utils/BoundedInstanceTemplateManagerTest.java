@@ -0,0 +1,58 @@
+package org.javarosa.core.model.instance.utils;
+
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class BoundedInstanceTemplateManagerTest {
+    private int loads;
+
+    private BoundedInstanceTemplateManager manager(int maxSize) {
+        return new BoundedInstanceTemplateManager(maxSize) {
+            @Override
+            protected FormInstance loadTemplate(int formID) {
+                loads++;
+                TreeElement data = new TreeElement("data");
+                data.addChild(new TreeElement("name"));
+                FormInstance instance = new FormInstance(data);
+                instance.setFormId(formID);
+                return instance;
+            }
+        };
+    }
+
+    @Test
+    public void getTemplateInstance_shouldLoadEachTemplateOnceAndHandOutSeparateCopies() throws Exception {
+        BoundedInstanceTemplateManager manager = manager(10);
+        FormInstance first = manager.getTemplateInstance(1);
+        first.getRoot().getChildAt(0).setValue(new StringData("Jane"));
+        FormInstance second = manager.getTemplateInstance(1);
+
+        assertThat(loads, is(1));
+        assertThat(second.getFormId(), is(1));
+        assertThat(second.getRoot().getChildAt(0).getValue(), is(nullValue()));
+        assertThat(manager.getHitCount(), is(1L));
+        assertThat(manager.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void getTemplateInstance_shouldEvictTheLeastRecentlyUsedTemplate() throws Exception {
+        BoundedInstanceTemplateManager manager = manager(2);
+        manager.getTemplateInstance(1);
+        manager.getTemplateInstance(2);
+        manager.getTemplateInstance(1);
+        manager.getTemplateInstance(3);
+        assertThat(manager.size(), is(2));
+        assertThat(manager.getEvictionCount(), is(1L));
+
+        manager.getTemplateInstance(1);
+        assertThat(loads, is(3));
+        manager.getTemplateInstance(2);
+        assertThat(loads, is(4));
+    }
+}
@@ -0,0 +1,89 @@
+package org.javarosa.core.model.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DateCodecTest {
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Africa/Nairobi"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void parseDate_shouldAgreeWithSimpleDateFormat() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        for (String date : new String[]{"2014-01-31", "2016-02-29", "1999-12-31", "2014-3-5"}) {
+            assertThat(date, DateCodec.parseDate(date), is(format.parse(date)));
+        }
+        assertThat(DateCodec.parseDate("2015-02-29"), is(nullValue()));
+        assertThat(DateCodec.parseDate("2015-13-01"), is(nullValue()));
+        assertThat(DateCodec.parseDate("2015-01-01T10:00"), is(nullValue()));
+        assertThat(DateCodec.parseDate("2015-01-01T10:00", new ParsePosition(0)), is(format.parse("2015-01-01")));
+    }
+
+    @Test
+    public void parseDayMonthYear_shouldAcceptEitherSeparator() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("dd-MM-yyyy");
+        assertThat(DateCodec.parseDayMonthYear("05-03-2014", new ParsePosition(0)), is(format.parse("05-03-2014")));
+        assertThat(DateCodec.parseDayMonthYear("05/03/2014", new ParsePosition(0)), is(format.parse("05-03-2014")));
+        assertThat(DateCodec.parseDayMonthYear("2014-03-05", new ParsePosition(0)), is(nullValue()));
+    }
+
+    @Test
+    public void parseDayMonthYear_shouldRejectMixedSeparators() throws Exception {
+        ParsePosition pos = new ParsePosition(0);
+        assertThat(DateCodec.parseDayMonthYear("15-01/2014", pos), is(nullValue()));
+        assertThat(pos.getIndex(), is(0));
+        assertThat(pos.getErrorIndex(), is(5));
+        assertThat(DateCodec.parseDayMonthYear("15/01-2014", new ParsePosition(0)), is(nullValue()));
+    }
+
+    @Test
+    public void parseDateTime_shouldApplyTheOffset() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+        Date expected = format.parse("2014-01-01T23:30:15.120+0300");
+        assertThat(DateCodec.parseDateTime("2014-01-01T23:30:15.120+03:00"), is(expected));
+        assertThat(DateCodec.parseDateTime("2014-01-01T23:30:15.12+0300"), is(expected));
+        assertThat(DateCodec.parseDateTime("2014-01-01T20:30:15.120Z"), is(expected));
+        assertThat(DateCodec.parseDateTime("2014-01-01T14:30:15.120-06"), is(expected));
+        // no offset means the default time zone, which is 3 hours ahead
+        assertThat(DateCodec.parseDateTime("2014-01-01T23:30:15.120"), is(expected));
+        assertThat(DateCodec.parseDateTime("2014-01-01T23:30"), is(format.parse("2014-01-01T23:30:00.000+0300")));
+        assertThat(DateCodec.parseDateTime("2014-01-01T24:30"), is(nullValue()));
+        assertThat(DateCodec.parseDateTime("2014-01-01T23:30+3"), is(nullValue()));
+    }
+
+    @Test
+    public void format_shouldAgreeWithSimpleDateFormat() throws Exception {
+        Date date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse("2014-07-04T01:02:03.004+0000");
+        assertThat(DateCodec.formatDate(date), is(new SimpleDateFormat("yyyy-MM-dd").format(date)));
+        assertThat(DateCodec.formatDayMonthYear(date), is(new SimpleDateFormat("dd-MM-yyyy").format(date)));
+        assertThat(DateCodec.formatDateTime(date), is("2014-07-04T04:02:03.004+03:00"));
+        assertThat(DateCodec.parseDateTime(DateCodec.formatDateTime(date)), is(date));
+    }
+
+    @Test
+    public void format_shouldFollowChangesToTheDefaultTimeZone() throws Exception {
+        Date date = DateCodec.parseDateTime("2014-07-04T01:02:03.004Z");
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        assertThat(DateCodec.formatDateTime(date), is("2014-07-03T21:02:03.004-04:00"));
+    }
+}
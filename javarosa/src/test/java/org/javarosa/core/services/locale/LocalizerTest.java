@@ -0,0 +1,58 @@
+package org.javarosa.core.services.locale;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class LocalizerTest {
+    private Localizer localizer;
+
+    @Before
+    public void setUp() {
+        localizer = new Localizer(true, true);
+        localizer.addAvailableLocale("English");
+        localizer.addAvailableLocale("Swahili");
+        localizer.setDefaultLocale("English");
+        localizer.registerLocaleResource("English", table("name", "Name", "age", "Age"));
+        localizer.registerLocaleResource("Swahili", table("name", "Jina"));
+        localizer.setLocale("English");
+    }
+
+    @Test
+    public void getText_shouldFallBackToTheDefaultLocale() throws Exception {
+        assertThat(localizer.getText("name", "Swahili"), is("Jina"));
+        assertThat(localizer.getText("age", "Swahili"), is("Age"));
+        assertThat(localizer.getText("other", "Swahili"), is(nullValue()));
+    }
+
+    @Test
+    public void getLocaleData_shouldBuildEachLocaleOnceAndShareTheTextIDs() throws Exception {
+        assertThat(localizer.getLocaleData("Swahili"), is(sameInstance(localizer.getLocaleData("Swahili"))));
+        assertThat(localizer.getLocaleData("Swahili").keyAt(0), is(sameInstance(localizer.getLocaleData("English").keyAt(0))));
+    }
+
+    @Test
+    public void getLocaleData_shouldBeRebuiltWhenAResourceIsRegistered() throws Exception {
+        assertThat(localizer.getText("age", "Swahili"), is("Age"));
+
+        localizer.registerLocaleResource("Swahili", table("age", "Umri"));
+        assertThat(localizer.getText("age", "Swahili"), is("Umri"));
+
+        localizer.registerLocaleResource("English", table("visit", "Visit"));
+        assertThat(localizer.getText("visit", "Swahili"), is("Visit"));
+        assertThat(localizer.getText("visit"), is("Visit"));
+    }
+
+    private TableLocaleSource table(String... mappings) {
+        TableLocaleSource source = new TableLocaleSource();
+        for (int i = 0; i < mappings.length; i += 2) {
+            // a separate instance of each text ID, as the parser produces
+            source.setLocaleMapping(new String(mappings[i]), mappings[i + 1]);
+        }
+        return source;
+    }
+}
@@ -0,0 +1,221 @@
+package org.javarosa.core.services.storage;
+
+import org.javarosa.core.util.InvalidIndexException;
+import org.javarosa.core.util.externalizable.DeserializationException;
+import org.javarosa.core.util.externalizable.ExtUtil;
+import org.javarosa.core.util.externalizable.PrototypeFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MappedFileStorageUtilityTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void read_shouldGiveTheCurrentVersionOfEachRecordAfterReopening() throws Exception {
+        File directory = folder.newFolder("forms");
+        MappedFileStorageUtility storage = new MappedFileStorageUtility(directory, Record.class);
+        Record jane = new Record("Jane", "adult");
+        Record john = new Record("John", "child");
+        storage.write(jane);
+        storage.write(john);
+        jane.group = "elder";
+        storage.write(jane);
+        storage.remove(john);
+        storage.close();
+
+        storage = new MappedFileStorageUtility(directory, Record.class);
+        assertThat(storage.getNumRecords(), is(1));
+        assertThat(((Record) storage.read(jane.getID())).group, is("elder"));
+        assertThat(storage.read(john.getID()), is(nullValue()));
+        assertThat(storage.add(new Record("Ann", "child")) > john.getID(), is(true));
+    }
+
+    @Test
+    public void getIDsForValue_shouldFollowUpdatesAndRemovals() throws Exception {
+        File directory = folder.newFolder("forms");
+        MappedFileStorageUtility storage = new MappedFileStorageUtility(directory, Record.class);
+        Record jane = new Record("Jane", "adult");
+        Record john = new Record("John", "adult");
+        storage.write(jane);
+        storage.write(john);
+        assertThat(storage.getIDsForValue("group", "adult").size(), is(2));
+
+        john.group = "child";
+        storage.write(john);
+        storage.close();
+
+        storage = new MappedFileStorageUtility(directory, Record.class);
+        assertThat(storage.getIDsForValue("group", "adult"), is(ids(jane.getID())));
+        assertThat(((Record) storage.getRecordForValue("name", "John")).group, is("child"));
+        storage.remove(jane.getID());
+        assertThat(storage.getIDsForValue("group", "adult").isEmpty(), is(true));
+    }
+
+    @Test(expected = InvalidIndexException.class)
+    public void getRecordForValue_shouldRejectAValueSharedByMoreThanOneRecord() throws Exception {
+        MappedFileStorageUtility storage = new MappedFileStorageUtility(folder.newFolder("forms"), Record.class);
+        storage.write(new Record("Jane", "adult"));
+        storage.write(new Record("John", "adult"));
+        storage.getRecordForValue("group", "adult");
+    }
+
+    @Test
+    public void repack_shouldDropSupersededRecordsAndKeepTheCurrentOnes() throws Exception {
+        File directory = folder.newFolder("forms");
+        MappedFileStorageUtility storage = new MappedFileStorageUtility(directory, Record.class, 256);
+        Record[] records = new Record[20];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new Record("name" + i, "group");
+            storage.write(records[i]);
+        }
+        for (int i = 0; i < records.length; i += 2) {
+            storage.remove(records[i]);
+            records[i + 1].group = "updated";
+            storage.write(records[i + 1]);
+        }
+        int size = storage.getTotalSize();
+        storage.repack();
+        assertThat(storage.getTotalSize() < size, is(true));
+        storage.close();
+
+        storage = new MappedFileStorageUtility(directory, Record.class, 256);
+        assertThat(storage.getNumRecords(), is(10));
+        for (int i = 0; i < records.length; i++) {
+            Record record = (Record) storage.read(records[i].getID());
+            assertThat(record == null ? null : record.group, is(i % 2 == 0 ? null : "updated"));
+        }
+    }
+
+    @Test
+    public void repair_shouldDropARecordThatWasNotWrittenInFull() throws Exception {
+        File directory = folder.newFolder("forms");
+        MappedFileStorageUtility storage = new MappedFileStorageUtility(directory, Record.class);
+        Record jane = new Record("Jane", "adult");
+        Record john = new Record("John", "adult");
+        storage.write(jane);
+        storage.write(john);
+        storage.close();
+
+        RandomAccessFile segment = new RandomAccessFile(new File(directory, "segment-0.dat"), "rw");
+        segment.setLength(segment.length() - 3);
+        segment.close();
+
+        storage = new MappedFileStorageUtility(directory, Record.class);
+        assertThat(storage.getNumRecords(), is(1));
+        assertThat(((Record) storage.read(jane.getID())).name, is("Jane"));
+        storage.write(new Record("Ann", "child"));
+        assertThat(((Record) storage.getRecordForValue("name", "Ann")).group, is("child"));
+    }
+
+    @Test
+    public void repair_shouldDropARecordThatDoesNotMatchItsChecksum() throws Exception {
+        File directory = folder.newFolder("forms");
+        MappedFileStorageUtility storage = new MappedFileStorageUtility(directory, Record.class);
+        Record jane = new Record("Jane", "adult");
+        storage.write(jane);
+        storage.write(new Record("John", "adult"));
+        storage.close();
+
+        // a torn write: the last record's data never made it, leaving zeros where it should be
+        RandomAccessFile segment = new RandomAccessFile(new File(directory, "segment-0.dat"), "rw");
+        segment.seek(segment.length() - 3);
+        segment.write(new byte[3]);
+        // and a header of zeros after it
+        segment.write(new byte[12]);
+        segment.close();
+
+        storage = new MappedFileStorageUtility(directory, Record.class);
+        assertThat(storage.getNumRecords(), is(1));
+        assertThat(((Record) storage.read(jane.getID())).name, is("Jane"));
+    }
+
+    @Test
+    public void read_shouldReadRecordsAppendedAfterTheSegmentWasMapped() throws Exception {
+        File directory = folder.newFolder("forms");
+        MappedFileStorageUtility storage = new MappedFileStorageUtility(directory, Record.class);
+        // about 60k a record, short enough to be written as one string
+        StringBuilder name = new StringBuilder();
+        while (name.length() < 60000) {
+            name.append("abcdefghij");
+        }
+        Record[] records = new Record[2 * MappedFileStorageUtility.MAP_CHUNK_SIZE / name.length()];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = new Record(name.toString() + i, "group");
+            storage.write(records[i]);
+            for (int j = 0; j <= i; j++) {
+                assertThat(((Record) storage.read(records[j].getID())).name, is(records[j].name));
+            }
+        }
+    }
+
+    private Vector<Integer> ids(int... ids) {
+        Vector<Integer> v = new Vector<Integer>();
+        for (int id : ids) {
+            v.addElement(id);
+        }
+        return v;
+    }
+
+    public static class Record implements Persistable, IMetaData {
+        private int id = -1;
+        String name;
+        String group;
+
+        public Record() {
+        }
+
+        Record(String name, String group) {
+            this.name = name;
+            this.group = group;
+        }
+
+        public void setID(int id) {
+            this.id = id;
+        }
+
+        public int getID() {
+            return id;
+        }
+
+        public void readExternal(DataInputStream in, PrototypeFactory pf) throws IOException, DeserializationException {
+            id = ExtUtil.readInt(in);
+            name = ExtUtil.readString(in);
+            group = ExtUtil.readString(in);
+        }
+
+        public void writeExternal(DataOutputStream out) throws IOException {
+            ExtUtil.writeNumeric(out, id);
+            ExtUtil.writeString(out, name);
+            ExtUtil.writeString(out, group);
+        }
+
+        public String[] getMetaDataFields() {
+            return new String[]{"name", "group"};
+        }
+
+        public Hashtable getMetaData() {
+            Hashtable metaData = new Hashtable();
+            metaData.put("name", name);
+            metaData.put("group", group);
+            return metaData;
+        }
+
+        public Object getMetaData(String fieldName) {
+            return "name".equals(fieldName) ? name : group;
+        }
+    }
+}
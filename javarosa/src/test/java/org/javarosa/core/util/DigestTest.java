@@ -0,0 +1,40 @@
+package org.javarosa.core.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class DigestTest {
+    @Test
+    public void hash_shouldGiveTheStandardDigests() throws Exception {
+        assertThat(MD5.toHex(MD5.hash("abc".getBytes("UTF-8"))), is("900150983cd24fb0d6963f7d28e17f72"));
+        assertThat(SHA1.encodeHex("abc"), is("a9993e364706816aba3e25717850c26c9cd0d89d"));
+        assertThat(SHA1.encodeBase64("abc"), is("qZk+NkcGgWq6PiVxeFDCbJzQ2J0="));
+        assertThat(SHA1.encodeHex("été"), is(Digest.toHex(SHA1.hash("été".getBytes("UTF-8")))));
+    }
+
+    @Test
+    public void update_shouldGiveTheSameDigestHoweverTheContentArrives() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("<name>Jäne ").append(i).append("</name>");
+        }
+        byte[] bytes = text.toString().getBytes("UTF-8");
+        String expected = MD5.toHex(MD5.hash(bytes));
+
+        assertThat(MD5.toHex(MD5.hash(new ByteArrayInputStream(bytes))), is(expected));
+        assertThat(MD5.toHex(Digest.md5().update(ByteBuffer.wrap(bytes)).digest()), is(expected));
+        assertThat(MD5.toHex(Digest.md5().update(text).digest()), is(expected));
+
+        MD5 md5 = new MD5();
+        md5.update(bytes, 0, 100);
+        md5.doFinal();
+        md5.update(bytes, 100, bytes.length - 100);
+        assertThat(MD5.toHex(md5.doFinal()), is(expected));
+        assertThat(MD5.toHex(md5.doFinal()), is(expected));
+    }
+}
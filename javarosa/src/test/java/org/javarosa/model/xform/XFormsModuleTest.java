@@ -0,0 +1,58 @@
+package org.javarosa.model.xform;
+
+import org.javarosa.core.model.FormDef;
+import org.javarosa.core.util.externalizable.ExtUtil;
+import org.javarosa.xform.parse.XFormParser;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class XFormsModuleTest {
+    @Test
+    public void deserialize_shouldRestoreASerializedFormDef() throws Exception {
+        XFormParser parser = new XFormParser(getFile("javarosa/sampleForm.xml"));
+        parser.validate();
+        FormDef formDef = parser.getFormDef();
+
+        FormDef restored = XFormsModule.deserialize(XFormsModule.serialize(formDef));
+
+        assertThat(restored.getTitle(), is(formDef.getTitle()));
+        assertThat(restored.getChildren().size(), is(formDef.getChildren().size()));
+        assertThat(restored.getInstance().getRoot().getNumChildren(), is(formDef.getInstance().getRoot().getNumChildren()));
+        assertThat(XFormsModule.serialize(restored), is(XFormsModule.serialize(formDef)));
+    }
+
+    @Test
+    public void deserializeCompact_shouldRestoreTheSameFormDefFromFewerBytes() throws Exception {
+        XFormParser parser = new XFormParser(getFile("javarosa/sampleForm.xml"));
+        parser.validate();
+        FormDef formDef = parser.getFormDef();
+
+        byte[] compact = XFormsModule.serializeCompact(formDef);
+        FormDef restored = XFormsModule.deserializeCompact(compact);
+
+        assertThat(XFormsModule.serialize(restored), is(XFormsModule.serialize(formDef)));
+        assertThat(compact.length < XFormsModule.serialize(formDef).length, is(true));
+    }
+
+    @Test
+    public void serialize_shouldGiveTheSameBytesAfterTheCachesAreCleared() throws Exception {
+        XFormParser parser = new XFormParser(getFile("javarosa/sampleForm.xml"));
+        parser.validate();
+        FormDef formDef = parser.getFormDef();
+        byte[] serialized = XFormsModule.serialize(formDef);
+
+        ExtUtil.clearCaches();
+
+        assertThat(XFormsModule.serialize(formDef), is(serialized));
+        assertThat(XFormsModule.serialize(XFormsModule.deserialize(serialized)), is(serialized));
+    }
+
+    private FileReader getFile(String file) throws FileNotFoundException {
+        return new FileReader(this.getClass().getClassLoader().getResource(file).getFile());
+    }
+}
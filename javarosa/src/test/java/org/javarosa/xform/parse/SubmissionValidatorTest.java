@@ -0,0 +1,95 @@
+package org.javarosa.xform.parse;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class SubmissionValidatorTest {
+    private SubmissionValidator validator;
+
+    @Before
+    public void setUp() throws Exception {
+        XFormParser parser = new XFormParser(getFile("javarosa/sampleForm.xml"));
+        parser.validate();
+        validator = new SubmissionValidator(parser.getFormDef());
+    }
+
+    @Test
+    public void validate_shouldAcceptACompleteSubmission() throws Exception {
+        SubmissionValidator.Result result = validator.validate(submission("Jane", "30", "0712345678"));
+        assertThat(result.isValid(), is(true));
+        assertThat(result.isMalformed(), is(false));
+    }
+
+    @Test
+    public void validate_shouldReportMissingRequiredValuesAndViolatedConstraints() throws Exception {
+        SubmissionValidator.Result result = validator.validate(submission("", "200", "12345"));
+        assertThat(result.isValid(), is(false));
+        assertThat(result.isMalformed(), is(false));
+        assertThat(result.getMessages().getList().size(), is(3));
+        assertThat(result.getMessages().getList().get(0).getMessage(), is("Required value missing: /data/name"));
+        assertThat(result.getMessages().getList().get(1).getMessage(), is("Constraint not satisfied: /data/age"));
+        assertThat(result.getMessages().getList().get(2).getMessage(), is("Constraint not satisfied: /data/phone"));
+    }
+
+    @Test
+    public void validate_shouldNotCheckNonRelevantQuestions() throws Exception {
+        // the phone number is only relevant for adults
+        assertThat(validator.validate(submission("Jane", "10", "12345")).isValid(), is(true));
+    }
+
+    @Test
+    public void validate_shouldRejectMalformedSubmissionsEarly() throws Exception {
+        assertThat(validator.validate(null).isMalformed(), is(true));
+        assertThat(validator.validate("  ").isMalformed(), is(true));
+        assertThat(validator.validate("{\"patient\": {}}").isMalformed(), is(true));
+        assertThat(validator.validate("<data><name>Jane</name>").isMalformed(), is(true));
+        assertThat(validator.validate("<other><name>Jane</name></other>").isMalformed(), is(true));
+    }
+
+    @Test
+    public void validateAll_shouldGiveTheSameResultsAsValidatingOneByOne() throws Exception {
+        List<String> submissions = new ArrayList<String>();
+        for (int i = 0; i < 40; i++) {
+            switch (i % 4) {
+                case 0: submissions.add(submission("Jane", "30", "0712345678")); break;
+                case 1: submissions.add(submission("", "30", "0712345678")); break;
+                case 2: submissions.add(submission("John", "10", "1")); break;
+                default: submissions.add("not xml"); break;
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<SubmissionValidator.Result> results;
+        try {
+            results = validator.validateAll(submissions, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(results.size(), is(submissions.size()));
+        for (int i = 0; i < submissions.size(); i++) {
+            SubmissionValidator.Result expected = validator.validate(submissions.get(i));
+            assertThat(results.get(i).isMalformed(), is(expected.isMalformed()));
+            assertThat(results.get(i).getMessages().getList(), is(expected.getMessages().getList()));
+        }
+    }
+
+    private String submission(String name, String age, String phone) {
+        return "<data id=\"sample_form\"><name>" + name + "</name><age>" + age + "</age><age_months/><adult/>"
+                + "<phone>" + phone + "</phone><district/><visit_date/></data>";
+    }
+
+    private FileReader getFile(String file) throws FileNotFoundException {
+        return new FileReader(this.getClass().getClassLoader().getResource(file).getFile());
+    }
+}
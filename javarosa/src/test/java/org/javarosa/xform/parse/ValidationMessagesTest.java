@@ -30,4 +30,25 @@ public class ValidationMessagesTest {
         messages.clear();
         assertThat(messages.getList().isEmpty(), is(true));
     }
+
+    @Test
+    public void ValidationMessages_shouldCopyTheMessagesSoTheCopyCanChangeOnItsOwn() throws Exception {
+        ValidationMessages messages = new ValidationMessages();
+        messages.addError("error");
+        ValidationMessages copy = new ValidationMessages(messages);
+        copy.clear();
+        assertThat(messages.getList().size(), is(1));
+    }
+
+    @Test
+    public void equals_shouldCompareTheMessages() throws Exception {
+        ValidationMessages messages = new ValidationMessages();
+        messages.addError("error");
+        ValidationMessages copy = new ValidationMessages(messages);
+        assertThat(copy.equals(messages), is(true));
+        assertThat(copy.hashCode(), is(messages.hashCode()));
+
+        copy.addWarning("warning");
+        assertThat(copy.equals(messages), is(false));
+    }
 }
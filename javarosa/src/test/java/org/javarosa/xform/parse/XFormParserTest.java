@@ -1,13 +1,16 @@
 package org.javarosa.xform.parse;
 
+import org.javarosa.model.xform.XFormsModule;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.StringReader;
 
 import static org.javarosa.xform.parse.ValidationMessage.Type;
 import static org.javarosa.xform.parse.ValidationMessageBuilder.validationMessage;
+import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.matchers.JUnitMatchers.hasItem;
 
@@ -35,6 +38,29 @@ public class XFormParserTest {
                 "    With element <xforms>\n").withType(Type.ERROR).instance()));
     }
 
+    @Test
+    public void validate_shouldParseTheSameFormFromAReaderAsFromADocument() throws Exception {
+        XFormParser streamed = new XFormParser(getFile("javarosa/sampleForm.xml"));
+        ValidationMessages streamedMessages = streamed.validate();
+        XFormParser fromDocument = new XFormParser(XFormParser.getXMLDocument(getFile("javarosa/sampleForm.xml")));
+        ValidationMessages documentMessages = fromDocument.validate();
+
+        assertThat(streamedMessages.getList(), is(documentMessages.getList()));
+        assertThat(XFormsModule.serialize(streamed.getFormDef()), is(XFormsModule.serialize(fromDocument.getFormDef())));
+    }
+
+    @Test
+    public void validate_shouldReportUnrecognizedElementsWhenParsingFromAReader() throws Exception {
+        XFormParser parser = new XFormParser(new StringReader("<html><unknown a=\"1\"><x><y>t</y></x></unknown></html>"));
+        ValidationMessages messages = parser.validate();
+        assertThat(messages.getList(), hasItem(validationMessage().withMessage("XForm Parse: Unrecognized element [unknown]. Ignoring and processing children...\n" +
+                "    Problem found at nodeset: /html/unknown\n" +
+                "    With element <unknown a=\"1\"><x><y>\n").withType(Type.ERROR).instance()));
+        assertThat(messages.getList(), hasItem(validationMessage().withMessage("XForm Parse: Unrecognized element [y]. Ignoring and processing children...\n" +
+                "    Problem found at nodeset: /html/unknown[@a=1]/x/y\n" +
+                "    With element <y>\n").withType(Type.ERROR).instance()));
+    }
+
     private FileReader getFile(String file) throws FileNotFoundException {
         return new FileReader(this.getClass().getClassLoader().getResource(file).getFile());
     }
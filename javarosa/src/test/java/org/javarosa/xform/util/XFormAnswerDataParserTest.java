@@ -0,0 +1,60 @@
+package org.javarosa.xform.util;
+
+import org.javarosa.core.model.Constants;
+import org.javarosa.core.model.QuestionDef;
+import org.javarosa.core.model.SelectChoice;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.data.LongData;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class XFormAnswerDataParserTest {
+    private final XFormAnswerDataSerializer serializer = new XFormAnswerDataSerializer();
+
+    @Test
+    public void getAnswerData_shouldParseNumbersOfAnyLength() throws Exception {
+        assertThat(text(" -42 ", Constants.DATATYPE_INTEGER), is("-42"));
+        assertThat(text("+7", Constants.DATATYPE_INTEGER), is("7"));
+        assertThat(text("2147483647", Constants.DATATYPE_INTEGER), is("2147483647"));
+        assertThat(XFormAnswerDataParser.getAnswerData("2147483648", Constants.DATATYPE_INTEGER), is(nullValue()));
+        assertThat(XFormAnswerDataParser.getAnswerData("12a", Constants.DATATYPE_INTEGER), is(nullValue()));
+        assertThat(XFormAnswerDataParser.getAnswerData("  ", Constants.DATATYPE_INTEGER), is(nullValue()));
+        assertThat(text("9223372036854775807", Constants.DATATYPE_LONG), is("9223372036854775807"));
+        assertThat(XFormAnswerDataParser.getAnswerData("5", Constants.DATATYPE_LONG), instanceOf(LongData.class));
+    }
+
+    @Test
+    public void getAnswerData_shouldParseSelectionsAgainstTheChoices() throws Exception {
+        QuestionDef q = new QuestionDef();
+        q.addSelectChoice(new SelectChoice("a", "red"));
+        q.addSelectChoice(new SelectChoice("b", "green"));
+
+        assertThat(serializer.serializeAnswerData(XFormAnswerDataParser.getAnswerData(" blue  green red", Constants.DATATYPE_CHOICE_LIST, q)), is((Object) "green red"));
+        assertThat(serializer.serializeAnswerData(XFormAnswerDataParser.getAnswerData("blue green", Constants.DATATYPE_CHOICE, q)), is((Object) "green"));
+        assertThat(XFormAnswerDataParser.getAnswerData("blue", Constants.DATATYPE_CHOICE, q), is(nullValue()));
+        assertThat(text("blue  green", Constants.DATATYPE_CHOICE_LIST), is("blue green"));
+    }
+
+    @Test
+    public void getAnswerData_shouldOnlyReadTheGivenSlice() throws Exception {
+        String xml = "<age>42</age><visit>2014-03-05</visit><ok>t</ok>";
+        IAnswerData age = XFormAnswerDataParser.getAnswerData(xml, 5, 7, Constants.DATATYPE_INTEGER, null);
+        assertThat(age, instanceOf(IntegerData.class));
+        assertThat((Integer) age.getValue(), is(42));
+        IAnswerData visit = XFormAnswerDataParser.getAnswerData(xml, 20, 30, Constants.DATATYPE_DATE, null);
+        assertThat(serializer.serializeAnswerData(visit), is((Object) "2014-03-05"));
+        IAnswerData ok = XFormAnswerDataParser.getAnswerData(xml, 42, 43, Constants.DATATYPE_BOOLEAN, null);
+        assertThat((Boolean) ok.getValue(), is(true));
+        IAnswerData text = XFormAnswerDataParser.getAnswerData(xml, 20, 30, Constants.DATATYPE_TEXT, null);
+        assertThat((String) text.getValue(), is("2014-03-05"));
+    }
+
+    private String text(String text, int dataType) {
+        return (String) serializer.serializeAnswerData(XFormAnswerDataParser.getAnswerData(text, dataType));
+    }
+}
@@ -0,0 +1,46 @@
+package org.javarosa.xform.util;
+
+import org.javarosa.core.model.data.BooleanData;
+import org.javarosa.core.model.data.DateData;
+import org.javarosa.core.model.data.DecimalData;
+import org.javarosa.core.model.data.GeoPointData;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.data.LongData;
+import org.javarosa.core.model.data.SelectMultiData;
+import org.javarosa.core.model.data.SelectOneData;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.data.UncastData;
+import org.javarosa.core.model.data.helper.Selection;
+import org.javarosa.core.model.utils.DateUtils;
+import org.junit.Test;
+
+import java.util.Vector;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class XFormAnswerDataSerializerTest {
+    private final XFormAnswerDataSerializer serializer = new XFormAnswerDataSerializer();
+
+    @Test
+    public void appendAnswerData_shouldAppendWhatSerializeAnswerDataGives() throws Exception {
+        Vector<Selection> selections = new Vector<Selection>();
+        selections.addElement(new Selection("red"));
+        selections.addElement(new Selection("green"));
+        IAnswerData[] answers = {
+                new StringData("Jane"), new IntegerData(-42), new LongData(1L << 40), new DecimalData(0.1),
+                new DecimalData(1e21), new BooleanData(true), new DateData(DateUtils.getDate(2014, 3, 5)),
+                new SelectOneData(new Selection("red")), new SelectMultiData(selections),
+                new GeoPointData(new double[]{1.5, -2.25, 10, 4}), new UncastData("raw")
+        };
+
+        StringBuilder sb = new StringBuilder();
+        for (IAnswerData answer : answers) {
+            sb.setLength(0);
+            sb.append('<');
+            assertThat(serializer.appendAnswerData(answer, sb), is(true));
+            assertThat(sb.toString(), is("<" + serializer.serializeAnswerData(answer)));
+        }
+    }
+}
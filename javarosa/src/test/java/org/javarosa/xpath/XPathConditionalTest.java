@@ -0,0 +1,17 @@
+package org.javarosa.xpath;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class XPathConditionalTest {
+    @Test
+    public void dependsOnlyOnTriggers_shouldBeFalseForExpressionsThatReadTheClockOrCustomFunctions() throws Exception {
+        assertThat(new XPathConditional("if(/data/age >= 18, 'yes', 'no')").dependsOnlyOnTriggers(), is(true));
+        assertThat(new XPathConditional("regex(../phone, '^[0-9]+$') and count(/data/child) > 1").dependsOnlyOnTriggers(), is(true));
+        assertThat(new XPathConditional("today() > /data/visit_date").dependsOnlyOnTriggers(), is(false));
+        assertThat(new XPathConditional("jr:itext('label')").dependsOnlyOnTriggers(), is(false));
+        assertThat(new XPathConditional("$var + 1").dependsOnlyOnTriggers(), is(false));
+    }
+}
@@ -0,0 +1,43 @@
+package org.javarosa.xpath;
+
+import org.javarosa.xpath.expr.XPathExpression;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class XPathExpressionCacheTest {
+    @Test
+    public void get_shouldParseEachExpressionOnce() throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache(10);
+        XPathExpression first = cache.get("/data/age > 18");
+
+        assertThat(cache.get("/data/age > 18"), is(sameInstance(first)));
+        assertThat(cache.get("/data/age > 21"), is(not(sameInstance(first))));
+        assertThat(first, is(XPathExpressionCache.parse("/data/age > 18")));
+    }
+
+    @Test
+    public void get_shouldKeepAtMostTheConfiguredNumberOfExpressions() throws Exception {
+        XPathExpressionCache cache = new XPathExpressionCache(2);
+        XPathExpression a = cache.get("1");
+        cache.get("2");
+        cache.get("1");
+        cache.get("3");
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("1"), is(sameInstance(a)));
+    }
+
+    @Test
+    public void parseXPathCopy_shouldGiveATreeThatIsNotShared() throws Exception {
+        XPathExpression shared = XPathParseTool.parseXPath("/data/age > 18");
+        XPathExpression copy = XPathParseTool.parseXPathCopy("/data/age > 18");
+
+        assertThat(copy, is(not(sameInstance(shared))));
+        assertThat(copy, is(shared));
+        assertThat(XPathParseTool.parseXPath("/data/age > 18"), is(sameInstance(shared)));
+    }
+}
@@ -0,0 +1,36 @@
+package org.javarosa.xpath.expr;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class RegexCacheTest {
+    @Test
+    public void matches_shouldGiveTheSameResultsWithEitherEngine() throws Exception {
+        RegexCache cache = new RegexCache(10);
+        for (boolean javaRegex : new boolean[]{false, true}) {
+            cache.setUseJavaRegex(javaRegex);
+            assertThat(cache.matches("^[0-9]{10}$", "0712345678"), is(true));
+            assertThat(cache.matches("^[0-9]{10}$", "071234567"), is(false));
+            assertThat(cache.matches("[a-z]+", "123abc456"), is(true));
+            assertThat(cache.matches("^[a-z]+$", "123abc456"), is(false));
+        }
+    }
+
+    @Test
+    public void matches_shouldKeepAtMostTheConfiguredNumberOfPatterns() throws Exception {
+        RegexCache cache = new RegexCache(2);
+        cache.matches("a", "a");
+        cache.matches("b", "b");
+        cache.matches("a", "a");
+        cache.matches("c", "c");
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void regex_shouldMatchAnywhereInTheString() throws Exception {
+        assertThat(XPathFuncExpr.regex("abc123", "[0-9]+"), is(Boolean.TRUE));
+        assertThat(XPathFuncExpr.regex("abc", "^[0-9]+$"), is(Boolean.FALSE));
+    }
+}
@@ -0,0 +1,73 @@
+package org.javarosa.xpath.expr;
+
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xpath.XPathParseTool;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class XPathExpressionTest {
+    private FormInstance instance;
+    private EvaluationContext context;
+
+    @Before
+    public void setUp() {
+        TreeElement data = new TreeElement("data");
+        data.addChild(value("a", new IntegerData(42)));
+        data.addChild(value("b", new IntegerData(7)));
+        data.addChild(value("s", new StringData("12")));
+        data.addChild(new TreeElement("empty"));
+        instance = new FormInstance(data);
+        context = new EvaluationContext(new EvaluationContext(), TreeReference.rootRef());
+    }
+
+    @Test
+    public void evalNumeric_shouldAgreeWithEval() throws Exception {
+        String[] expressions = {
+                "(/data/a + 3) * 2 div 7", "-/data/s", "/data/a mod /data/b", "number('1.5') + 1",
+                "if(/data/a > 1, 3, 'no') * 2", "/data/empty + 1", "true() + 1", "'x' * 2"
+        };
+        for (String expression : expressions) {
+            XPathExpression expr = XPathParseTool.parseXPath(expression);
+            Double expected = XPathFuncExpr.toNumeric(expr.eval(instance, context));
+            assertThat(expression, new Double(expr.evalNumeric(instance, context)), is(expected));
+        }
+    }
+
+    @Test
+    public void evalBoolean_shouldAgreeWithEval() throws Exception {
+        String[] expressions = {
+                "/data/a > 5 and /data/b != 5", "/data/a < /data/s or false()", "1 = true()", "0 = false()",
+                "2 = '2'", "'abc' = 'abc'", "'abc' != 'abd'", "/data/s = 12", "/data/s = '12'",
+                "not(/data/a = 42)", "count(/data/a) = 1", "/data/empty = ''", "(1 div 0) > 1"
+        };
+        for (String expression : expressions) {
+            XPathExpression expr = XPathParseTool.parseXPath(expression);
+            Boolean expected = XPathFuncExpr.toBoolean(expr.eval(instance, context));
+            assertThat(expression, Boolean.valueOf(expr.evalBoolean(instance, context)), is(expected));
+        }
+    }
+
+    @Test
+    public void getStaticType_shouldOnlyBeKnownForExpressionsThatDoNotDependOnTheData() throws Exception {
+        assertThat(XPathParseTool.parseXPath("/data/a * 2").getStaticType(), is(XPathExpression.TYPE_NUMERIC));
+        assertThat(XPathParseTool.parseXPath("/data/a = 2").getStaticType(), is(XPathExpression.TYPE_BOOLEAN));
+        assertThat(XPathParseTool.parseXPath("concat('a', /data/a)").getStaticType(), is(XPathExpression.TYPE_STRING));
+        assertThat(XPathParseTool.parseXPath("/data/a").getStaticType(), is(XPathExpression.TYPE_UNKNOWN));
+        assertThat(XPathParseTool.parseXPath("if(1, 2, 3)").getStaticType(), is(XPathExpression.TYPE_UNKNOWN));
+    }
+
+    private TreeElement value(String name, IAnswerData value) {
+        TreeElement element = new TreeElement(name);
+        element.setValue(value);
+        return element;
+    }
+}
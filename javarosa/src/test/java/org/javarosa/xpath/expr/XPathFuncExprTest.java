@@ -0,0 +1,61 @@
+package org.javarosa.xpath.expr;
+
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.condition.IFunctionHandler;
+import org.javarosa.xpath.XPathParseTool;
+import org.javarosa.xpath.XPathUnhandledException;
+import org.junit.Test;
+
+import java.util.Vector;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class XPathFuncExprTest {
+    @Test
+    public void eval_shouldOnlyEvaluateTheBranchesThatAreNeeded() throws Exception {
+        assertThat(eval("if(1 > 0, 'yes', unknown())", new EvaluationContext()), is((Object) "yes"));
+        assertThat(eval("coalesce('set', unknown())", new EvaluationContext()), is((Object) "set"));
+        assertThat(eval("true() or unknown()", new EvaluationContext()), is((Object) Boolean.TRUE));
+    }
+
+    @Test(expected = XPathUnhandledException.class)
+    public void eval_shouldFailForUnknownFunctionsThatAreEvaluated() throws Exception {
+        eval("if(1 > 0, unknown(), 'no')", new EvaluationContext());
+    }
+
+    @Test
+    public void eval_shouldPassBuiltInNamesWithOtherArgumentCountsToCustomHandlers() throws Exception {
+        EvaluationContext context = new EvaluationContext();
+        context.addFunctionHandler(new IFunctionHandler() {
+            public String getName() {
+                return "true";
+            }
+
+            public Vector getPrototypes() {
+                Vector prototypes = new Vector();
+                prototypes.addElement(new Class[]{String.class});
+                return prototypes;
+            }
+
+            public boolean rawArgs() {
+                return false;
+            }
+
+            public boolean realTime() {
+                return false;
+            }
+
+            public Object eval(Object[] args) {
+                return "custom " + args[0];
+            }
+        });
+
+        assertThat(eval("true()", context), is((Object) Boolean.TRUE));
+        assertThat(eval("true('x')", context), is((Object) "custom x"));
+    }
+
+    private Object eval(String xpath, EvaluationContext context) throws Exception {
+        return XPathFuncExpr.unpack(XPathParseTool.parseXPath(xpath).eval(null, context));
+    }
+}
@@ -0,0 +1,104 @@
+package org.javarosa.xpath.expr;
+
+import org.javarosa.core.model.condition.EvaluationContext;
+import org.javarosa.core.model.data.IAnswerData;
+import org.javarosa.core.model.data.IntegerData;
+import org.javarosa.core.model.data.StringData;
+import org.javarosa.core.model.instance.FormInstance;
+import org.javarosa.core.model.instance.TreeElement;
+import org.javarosa.core.model.instance.TreeReference;
+import org.javarosa.xpath.XPathNodeset;
+import org.javarosa.xpath.XPathParseTool;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class XPathPathExprTest {
+    private TreeElement data;
+    private FormInstance instance;
+    private EvaluationContext context;
+
+    @Before
+    public void setUp() {
+        data = new TreeElement("data");
+        data.addChild(value("district", new StringData("north")));
+        data.addChild(item(0, "clinic a", "north"));
+        data.addChild(item(1, "clinic b", "south"));
+        data.addChild(item(2, "clinic c", "north"));
+        instance = new FormInstance(data);
+        context = new EvaluationContext(new EvaluationContext(), TreeReference.rootRef());
+    }
+
+    @Test
+    public void eval_shouldFollowChangesToTheComparedValues() throws Exception {
+        String expression = "/data/item[district = /data/district]/name";
+        assertThat(names(expression), is(Arrays.asList("clinic a", "clinic c")));
+
+        data.getChild("district", 0).setValue(new StringData("south"));
+        assertThat(names(expression), is(Arrays.asList("clinic b")));
+
+        data.getChild("item", 2).getChild("district", 0).setValue(new StringData("south"));
+        assertThat(names(expression), is(Arrays.asList("clinic b", "clinic c")));
+
+        data.addChild(item(3, "clinic d", "south"));
+        assertThat(names(expression), is(Arrays.asList("clinic b", "clinic c", "clinic d")));
+        TreeReference dataRef = TreeReference.rootRef().extendRef("data", 0);
+        assertThat(ChildValueIndex.lookup(instance, dataRef, "item", "district", "south").size(), is(3));
+        assertThat(names("/data/item['south' = district][2]/name"), is(Arrays.asList("clinic c")));
+    }
+
+    @Test
+    public void lookup_shouldKeepTheIndexUntilAKeyChanges() throws Exception {
+        TreeReference dataRef = TreeReference.rootRef().extendRef("data", 0);
+        Vector<TreeReference> north = ChildValueIndex.lookup(instance, dataRef, "item", "district", "north");
+        assertThat(north.size(), is(2));
+
+        data.getChild("item", 1).getChild("name", 0).setValue(new StringData("clinic e"));
+        assertThat(ChildValueIndex.lookup(instance, dataRef, "item", "district", "north") == north, is(true));
+
+        data.getChild("item", 0).getChild("district", 0).setRelevant(false);
+        assertThat(ChildValueIndex.lookup(instance, dataRef, "item", "district", "north").size(), is(1));
+        assertThat(ChildValueIndex.lookup(instance, dataRef, "item", "district", "").size(), is(1));
+    }
+
+    @Test
+    public void eval_shouldFilterByPositionAndByAnyCondition() throws Exception {
+        assertThat(names("/data/item[2]/name"), is(Arrays.asList("clinic b")));
+        assertThat(names("/data/item[district != 'north']/name"), is(Arrays.asList("clinic b")));
+        assertThat(names("/data/item[district = 'north'][name != 'clinic a']/name"), is(Arrays.asList("clinic c")));
+        assertThat(names("/data/item[code]/name"), is(Arrays.<String>asList()));
+
+        data.getChild("item", 1).addChild(value("code", new IntegerData(7)));
+        assertThat(names("/data/item[code]/name"), is(Arrays.asList("clinic b")));
+        assertThat(names("/data/item[code = 7]/name"), is(Arrays.asList("clinic b")));
+    }
+
+    private List<String> names(String expression) throws Exception {
+        XPathNodeset nodes = (XPathNodeset) XPathParseTool.parseXPath(expression).eval(instance, context);
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < nodes.size(); i++) {
+            names.add((String) nodes.getValAt(i));
+        }
+        return names;
+    }
+
+    private TreeElement item(int mult, String name, String district) {
+        TreeElement item = new TreeElement("item", mult);
+        item.addChild(value("name", new StringData(name)));
+        item.addChild(value("district", new StringData(district)));
+        return item;
+    }
+
+    private TreeElement value(String name, IAnswerData value) {
+        TreeElement element = new TreeElement(name);
+        element.setValue(value);
+        return element;
+    }
+}
@@ -0,0 +1,28 @@
+package org.javarosa.xpath.parser;
+
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class LexerTest {
+    @Test
+    public void lex_shouldTellOperatorsFromNamesByContext() throws Exception {
+        assertThat(Lexer.lex("/data/a != 5 and -2 div 3.5 mod $v or .5 * ns:* | ../x[1] <= 'a b'").toString(),
+                is("[SLASH, QNAME(data), SLASH, QNAME(a), NEQ, NUM(5.0), AND, UMINUS, NUM(2.0), DIV, NUM(3.5), MOD, "
+                        + "VAR(v), OR, NUM(0.5), MULT, NSWILDCARD(ns), UNION, DBL_DOT, SLASH, QNAME(x), LBRACK, NUM(1.0), "
+                        + "RBRACK, LTE, STR(a b)]"));
+        assertThat(Lexer.lex("a>=b>c<d//e::f@g,h pow(2) - - 1").toString(),
+                is("[QNAME(a), GTE, QNAME(b), GT, QNAME(c), LT, QNAME(d), DBL_SLASH, QNAME(e), DBL_COLON, QNAME(f), AT, "
+                        + "QNAME(g), COMMA, QNAME(h), POW, LPAREN, NUM(2.0), RPAREN, MINUS, UMINUS, NUM(1.0)]"));
+        assertThat(Lexer.lex("if(/d/x = \"y\", today(), .)\n\t\r\f").toString(),
+                is("[QNAME(if), LPAREN, SLASH, QNAME(d), SLASH, QNAME(x), EQ, STR(y), COMMA, QNAME(today), LPAREN, "
+                        + "RPAREN, COMMA, DOT, RPAREN]"));
+        assertThat(Lexer.lex("x:y/*").toString(), is("[QNAME(x:y), SLASH, WILDCARD]"));
+    }
+
+    @Test(expected = XPathSyntaxException.class)
+    public void lex_shouldRejectAnUnterminatedString() throws Exception {
+        Lexer.lex("'abc");
+    }
+}
@@ -3,6 +3,7 @@ package org.openmrs.module.muzima.web.resource.muzima;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.javarosa.core.model.utils.DateCodec;
 import org.openmrs.annotation.Handler;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.muzima.api.service.MuzimaFormService;
@@ -22,8 +23,7 @@ import org.openmrs.module.webservices.rest.web.response.ResourceDoesNotSupportOp
 import org.openmrs.module.webservices.rest.web.response.ResponseException;
 
 import javax.servlet.http.HttpServletRequest;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -45,14 +45,9 @@ public class MuzimaFormResource extends MetadataDelegatingCrudResource<MuzimaFor
         if (!StringUtils.isNotBlank(iso8601String)) {
             return null;
         }
-        Date date = null;
-        try {
-//            String s = iso8601String.replace("Z", "+00:00");
-//            s = s.substring(0, 22) + s.substring(23);
-//            date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse(s);
-            String s = iso8601String.substring(0, 10);
-            date = new SimpleDateFormat("yyyy-MM-dd").parse(s);
-        } catch (ParseException e) {
+        // only the day of the sync date is used
+        Date date = DateCodec.parseDate(iso8601String, new ParsePosition(0));
+        if (date == null) {
             log.error("Unable to parse date information.");
         }
         return date;
@@ -110,7 +105,7 @@ public class MuzimaFormResource extends MetadataDelegatingCrudResource<MuzimaFor
     public DelegatingResourceDescription getRepresentationDescription(Representation rep) {
         DelegatingResourceDescription description = null;
 
-        if (rep instanceof DefaultRepresentation || rep instanceof RefRepresentation) {
+        if (rep instanceof DefaultRepresentation) {
             description = new DelegatingResourceDescription();
             description.addProperty("uuid");
             description.addProperty("id");
@@ -125,6 +120,18 @@ public class MuzimaFormResource extends MetadataDelegatingCrudResource<MuzimaFor
             description.addProperty("tags", new CustomRepresentation("(id,uuid,name)"));
             description.addProperty("version");
             description.addSelfLink();
+        } else if (rep instanceof RefRepresentation) {
+            // metadata only, so the lazily loaded form structure is never read
+            description = new DelegatingResourceDescription();
+            description.addProperty("uuid");
+            description.addProperty("id");
+            description.addProperty("name");
+            description.addProperty("discriminator");
+            description.addProperty("description");
+            description.addProperty("form");
+            description.addProperty("tags", new CustomRepresentation("(id,uuid,name)"));
+            description.addProperty("version");
+            description.addSelfLink();
         }
 
         return description;
@@ -13,8 +13,9 @@
  */
 package org.openmrs.module.muzima.web.resource.utils;
 
+import org.javarosa.core.model.utils.DateCodec;
+
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -22,6 +23,8 @@ import java.util.GregorianCalendar;
 /**
  * Helper class for handling ISO 8601 strings of the following format:
  * "2008-03-01T13:00:00+01:00". It also supports parsing the "Z" timezone.
+ *
+ * @see DateCodec
  */
 public class ISO8601Util {
 
@@ -29,9 +32,7 @@ public class ISO8601Util {
      * Transform Calendar to ISO 8601 string.
      */
     public static String fromCalendar(final Calendar calendar) {
-        Date date = calendar.getTime();
-        String formatted = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(date);
-        return formatted.substring(0, 22) + ":" + formatted.substring(22);
+        return DateCodec.formatDateTime(calendar.getTime());
     }
 
     /**
@@ -47,14 +48,23 @@ public class ISO8601Util {
     public static Calendar toCalendar(final String iso8601string)
             throws ParseException {
         Calendar calendar = GregorianCalendar.getInstance();
-        String s = iso8601string.replace("Z", "+00:00");
-        try {
-            s = s.substring(0, 22) + s.substring(23);
-        } catch (IndexOutOfBoundsException e) {
-            throw new ParseException("Invalid length", 0);
-        }
-        Date date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse(s);
-        calendar.setTime(date);
+        calendar.setTime(toDate(iso8601string));
         return calendar;
     }
+
+    /**
+     * Transform ISO 8601 string to Date.
+     */
+    public static Date toDate(final String iso8601string)
+            throws ParseException {
+        Date date = DateCodec.parseDateTime(iso8601string);
+        if (date == null && iso8601string.length() > 23 && iso8601string.charAt(22) == ':') {
+            // as written by earlier versions of fromCalendar, e.g. "2008-03-01T13:00:00.00:0+0100"
+            date = DateCodec.parseDateTime(iso8601string.substring(0, 22) + iso8601string.substring(23));
+        }
+        if (date == null) {
+            throw new ParseException("Invalid ISO 8601 date: " + iso8601string, 0);
+        }
+        return date;
+    }
 }
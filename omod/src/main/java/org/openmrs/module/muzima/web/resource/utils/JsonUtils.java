@@ -16,10 +16,11 @@ package org.openmrs.module.muzima.web.resource.utils;
 import com.jayway.jsonpath.JsonPath;
 import net.minidev.json.JSONObject;
 import org.slf4j.Logger;
+import org.javarosa.core.model.utils.DateCodec;
 import org.slf4j.LoggerFactory;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
@@ -32,7 +33,6 @@ public class JsonUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(JsonUtils.class.getSimpleName());
 
-    private static final String DATE_PATTERN = "dd-MM-yyyy";
 
     /**
      * Write boolean value into the json object. The method will only write the boolean value if the object passed
@@ -224,13 +224,13 @@ public class JsonUtils {
     public static void writeAsDate(final Object object, final String path, final Date date) {
         if (object instanceof JSONObject && date != null) {
             JSONObject jsonObject = (JSONObject) object;
-            jsonObject.put(path, new SimpleDateFormat(DATE_PATTERN).format(date));
+            jsonObject.put(path, DateCodec.formatDayMonthYear(date));
         }
     }
 
     /**
-     * Read date value from the json object. The value for the path must conform to the "yyyy-MM-dd"
-     * date format.
+     * Read date value from the json object. The value for the path must conform to the "dd-MM-yyyy"
+     * or "dd/MM/yyyy" date format.
      *
      * @param serialized the serialized json object.
      * @param path       the path inside the json object.
@@ -241,13 +241,10 @@ public class JsonUtils {
         if(dateAsString == null || dateAsString.length() == 0) {
             return null;
         }
-        try {
-            if(dateAsString.contains("/"))
-                return new SimpleDateFormat(DATE_PATTERN).parse(dateAsString.replace("/","-"));
-            return new SimpleDateFormat(DATE_PATTERN).parse(dateAsString);
-        } catch (ParseException e) {
+        Date date = DateCodec.parseDayMonthYear(dateAsString, new ParsePosition(0));
+        if (date == null) {
             logger.error("Unable to convert string value from path: " + path + " from: " + String.valueOf(serialized));
         }
-        return null;
+        return date;
     }
 }
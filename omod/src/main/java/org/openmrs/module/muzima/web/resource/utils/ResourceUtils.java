@@ -18,7 +18,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
 /**
@@ -34,9 +33,7 @@ public class ResourceUtils {
         }
         Date date = null;
         try {
-            String s = iso8601String.replace("Z", "+00:00");
-            s = s.substring(0, 22) + s.substring(23);
-            date = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").parse(s);
+            date = ISO8601Util.toDate(iso8601String);
         } catch (ParseException e) {
             log.error("Unable to parse date information.");
         }
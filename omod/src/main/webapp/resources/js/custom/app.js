@@ -113,7 +113,8 @@ muzimaCoreModule.factory('FormService', function ($http) {
         return $http.post('form.form', form);
     };
     var all = function () {
-        return $http.get('../../ws/rest/v1/muzima/form', {cache: false});
+        // metadata only; the form content is fetched through get when a form is opened or previewed
+        return $http.get('../../ws/rest/v1/muzima/form?v=ref', {cache: false});
     };
     var getForms = function() {
         return $http.get('../../ws/rest/v1/form?v=custom:(name,uuid,version,description)');
@@ -47,12 +47,17 @@ function FormsCtrl($location, $scope, $window, FormService, TagService, _) {
         return !_.isEmpty($scope.muzimaforms);
     };
 
-    $scope.showFormPreview = function (formHTML, formModel, formJSON) {
-        var previewWindow = $window.open("../../moduleResources/muzimacore/preview/enketo/template.html");
-
-        previewWindow.formHTML = formHTML;
-        previewWindow.formModel = formModel;
-        previewWindow.formJSON = formJSON;
+    $scope.showFormPreview = function (form) {
+        // the form list carries no form content; open the window now, while the click still allows it, and load
+        // the preview into it once the content has been fetched. The blank window's properties carry over to the
+        // same origin page it then loads, as they did when the page was opened directly.
+        var previewWindow = $window.open("");
+        FormService.get(form.uuid).then(function (result) {
+            previewWindow.formHTML = result.data.html;
+            previewWindow.formModel = result.data.modelXml;
+            previewWindow.formJSON = result.data.modelJson;
+            previewWindow.location.href = "../../moduleResources/muzimacore/preview/enketo/template.html";
+        });
     };
 
     $scope.editForm = function(muzimaform){